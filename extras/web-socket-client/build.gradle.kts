@@ -1,10 +1,17 @@
 plugins {
     id("java")
+    application // Para lanzar el generador de carga con ./gradlew run
 }
 
 group = "dev.joseluisgs"
 version = "1.0-SNAPSHOT"
 
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(25) // Hilos virtuales y HttpClient con WebSocket
+    }
+}
+
 repositories {
     mavenCentral()
 }
@@ -13,11 +20,18 @@ dependencies {
     implementation("javax.websocket:javax.websocket-api:1.1")
     implementation("org.glassfish.tyrus:tyrus-container-jdk-client:1.14")
     implementation("org.glassfish.tyrus:tyrus-core:1.14")
+    // Generador de carga: percentiles de latencia y lectura de las notificaciones
+    implementation("org.hdrhistogram:HdrHistogram:2.2.2")
+    implementation("com.fasterxml.jackson.core:jackson-databind:2.17.2")
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
 }
 
+application {
+    // ./gradlew run --args="--clients 5000 --rate 20 --duration 60 --insecure"
+    mainClass = "dev.joseluisgs.load.LoadGenerator"
+}
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+package dev.joseluisgs.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de la prueba de carga: latencia de difusión (del instante de la notificación en el servidor
+ * a su recepción en el cliente) en un HdrHistogram en microsegundos, y contadores de mensajes y conexiones
+ * <p>
+ * Perdidos: huecos en la secuencia de notificaciones de cada cliente, y al final las que le faltan respecto a la última enviada
+ * de la época actual (las secuencias vuelven a empezar si se reinicia el servidor o el contador del cluster)
+ * Tardíos: los que llegan con más latencia que el umbral configurado
+ */
+public class FanOutStats {
+    // Hasta 5 minutos de latencia con 3 cifras significativas
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final long lateThresholdMicros;
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private Histogram interval;
+
+    final AtomicInteger connected = new AtomicInteger();
+    final AtomicInteger connectFailures = new AtomicInteger();
+    final AtomicInteger closed = new AtomicInteger();
+    final LongAdder received = new LongAdder();
+    final LongAdder late = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+    final LongAdder duplicated = new LongAdder();
+    final LongAdder invalid = new LongAdder();
+    final LongAdder updatesSent = new LongAdder();
+    final LongAdder updatesFailed = new LongAdder();
+    private final Set<String> epochs = new HashSet<>();
+    private String epoch;
+    private long maxSequence;
+
+    public FanOutStats(long lateThresholdMillis) {
+        this.lateThresholdMicros = TimeUnit.MILLISECONDS.toMicros(lateThresholdMillis);
+    }
+
+    /**
+     * Registra una notificación recibida
+     *
+     * @param latencyMicros Latencia de difusión, negativa si los relojes no están sincronizados
+     */
+    public void recordLatency(long latencyMicros) {
+        received.increment();
+        long value = Math.clamp(latencyMicros, 0, HIGHEST_TRACKABLE_MICROS);
+        recorder.recordValue(value);
+        if (value > lateThresholdMicros) {
+            late.increment();
+        }
+    }
+
+    /**
+     * Registra la secuencia de una notificación nueva, una época que no se había visto pasa a ser la actual
+     *
+     * @param epoch    Época de la notificación
+     * @param sequence Secuencia de la notificación
+     */
+    public synchronized void recordSequence(String epoch, long sequence) {
+        if (!epoch.equals(this.epoch) && epochs.add(epoch)) {
+            this.epoch = epoch;
+            maxSequence = 0;
+        }
+        if (epoch.equals(this.epoch)) {
+            maxSequence = Math.max(maxSequence, sequence);
+        }
+    }
+
+    /**
+     * Última secuencia vista de una época
+     *
+     * @param epoch Época
+     * @return Última secuencia, 0 si no es la época actual
+     */
+    public synchronized long maxSequence(String epoch) {
+        return epoch != null && epoch.equals(this.epoch) ? maxSequence : 0;
+    }
+
+    /**
+     * Imprime las métricas del último intervalo
+     *
+     * @param out Salida
+     */
+    public synchronized void printInterval(PrintStream out) {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        out.printf("conectados=%d recibidos=%d (+%d) p50=%.1fms p99=%.1fms max=%.1fms perdidos=%d tardíos=%d updates=%d (fallidos %d)%n",
+                connected.get(), received.sum(), interval.getTotalCount(),
+                millis(interval.getValueAtPercentile(50)), millis(interval.getValueAtPercentile(99)), millis(interval.getMaxValue()),
+                dropped.sum(), late.sum(), updatesSent.sum(), updatesFailed.sum());
+    }
+
+    /**
+     * Imprime el resumen final con los percentiles de toda la prueba
+     *
+     * @param out Salida
+     */
+    public synchronized void printSummary(PrintStream out) {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        out.println();
+        out.println("=== Resumen ===");
+        out.printf("Conexiones: %d abiertas, %d fallidas, %d cerradas por el servidor%n", connected.get(), connectFailures.get(), closed.get());
+        out.printf("Actualizaciones enviadas: %d (fallidas %d), última secuencia vista %d%n", updatesSent.sum(), updatesFailed.sum(), maxSequence);
+        out.printf("Notificaciones recibidas: %d, perdidas: %d, tardías (> %d ms): %d, duplicadas: %d, no válidas: %d%n",
+                received.sum(), dropped.sum(), TimeUnit.MICROSECONDS.toMillis(lateThresholdMicros), late.sum(), duplicated.sum(), invalid.sum());
+        out.println("Latencia de difusión (servidor -> cliente):");
+        for (double percentile : new double[]{50, 90, 99, 99.9, 99.99}) {
+            out.printf("  p%-6s %10.2f ms%n", percentile, millis(total.getValueAtPercentile(percentile)));
+        }
+        out.printf("  max     %10.2f ms%n", millis(total.getMaxValue()));
+        out.println();
+        out.println("Distribución (ms):");
+        total.outputPercentileDistribution(out, 5, 1000.0);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,136 @@
+package dev.joseluisgs.load;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generador de carga de los WebSockets de productos, para dimensionar los nodos
+ * 1. Abre N conexiones a /ws/v1/productos (HttpClient del JDK, NIO: no hace falta un hilo por conexión)
+ * 2. Actualiza productos por la API REST al ritmo indicado, cada actualización genera una notificación
+ * 3. Mide la latencia de difusión de cada notificación en cada cliente y cuenta las perdidas y las tardías
+ * <p>
+ * ./gradlew run --args="--clients 5000 --rate 20 --duration 60 --insecure"
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            LoadOptions.usage();
+            System.exit(1);
+            return;
+        }
+
+        HttpClient httpClient = httpClient(options);
+        FanOutStats stats = new FanOutStats(options.lateThreshold());
+
+        // Sesión de admin y modelos de los productos antes de abrir las conexiones
+        ProductUpdater updater = new ProductUpdater(httpClient, options, stats);
+        updater.prepare();
+
+        System.out.printf("Abriendo %d conexiones a %s (%d por segundo)%n", options.clients(), options.wsUrl(), options.connectRate());
+        List<NotificationListener> listeners = new CopyOnWriteArrayList<>();
+        List<WebSocket> sockets = connect(httpClient, options, stats, listeners);
+        System.out.printf("Conectados %d clientes, %d fallidos%n", stats.connected.get(), stats.connectFailures.get());
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> stats.printInterval(System.out), 5, 5, TimeUnit.SECONDS);
+
+        System.out.printf("Actualizando %s a %.1f por segundo durante %d s%n", options.products(), options.updateRate(), options.duration().toSeconds());
+        Thread driver = Thread.ofVirtual().name("product-updater").start(() -> {
+            try {
+                updater.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(options.duration());
+        updater.stop();
+        driver.join();
+
+        // Margen para que lleguen las últimas notificaciones
+        Thread.sleep(Math.max(2000, options.lateThreshold()));
+        reporter.shutdown();
+        listeners.forEach(NotificationListener::countMissingTail);
+        sockets.forEach(socket -> socket.sendClose(WebSocket.NORMAL_CLOSURE, "fin de la prueba"));
+        stats.printSummary(System.out);
+        System.exit(0);
+    }
+
+    /**
+     * Abre las conexiones al ritmo indicado y espera a que terminen los handshakes
+     */
+    private static List<WebSocket> connect(HttpClient httpClient, LoadOptions options, FanOutStats stats,
+                                           List<NotificationListener> listeners) throws InterruptedException {
+        List<WebSocket> sockets = new CopyOnWriteArrayList<>();
+        CompletableFuture<?>[] handshakes = new CompletableFuture<?>[options.clients()];
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / options.connectRate();
+        long next = System.nanoTime();
+        for (int i = 0; i < options.clients(); i++) {
+            NotificationListener listener = new NotificationListener(stats);
+            handshakes[i] = httpClient.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .buildAsync(options.wsUrl(), listener)
+                    .whenComplete((socket, error) -> {
+                        if (error != null) {
+                            stats.connectFailures.incrementAndGet();
+                        } else {
+                            stats.connected.incrementAndGet();
+                            sockets.add(socket);
+                            listeners.add(listener);
+                        }
+                    });
+            next += periodNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+        CompletableFuture.allOf(handshakes).exceptionally(error -> null).join();
+        return sockets;
+    }
+
+    /**
+     * Cliente HTTP compartido por todas las conexiones
+     * Con --insecure acepta el certificado autofirmado de la API (solo para pruebas locales)
+     */
+    private static HttpClient httpClient(LoadOptions options) throws Exception {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(Executors.newVirtualThreadPerTaskExecutor());
+        if (options.insecure()) {
+            System.setProperty("jdk.internal.httpclient.disableHostnameVerification", "true");
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{new X509TrustManager() {
+                @Override
+                public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
+                }
+            }}, null);
+            builder.sslContext(sslContext);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,96 @@
+package dev.joseluisgs.load;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opciones del generador de carga, se leen de la línea de comandos
+ * Ejemplo: --clients 5000 --rate 20 --duration 60 --products 1,2,3 --insecure
+ */
+public record LoadOptions(
+        URI apiUrl,          // URL base de la API REST
+        URI wsUrl,           // Endpoint WebSocket
+        int clients,         // Conexiones WebSocket concurrentes
+        int connectRate,     // Conexiones nuevas por segundo al arrancar
+        double updateRate,   // Actualizaciones de productos por segundo
+        Duration duration,   // Duración de la prueba, sin contar la conexión
+        List<Long> products, // Ids de los productos que se actualizan
+        String username,     // Usuario admin para actualizar productos
+        String password,
+        long lateThreshold,  // Milisegundos a partir de los que un mensaje se considera tardío
+        boolean insecure     // Aceptar el certificado autofirmado del servidor
+) {
+
+    public static LoadOptions parse(String[] args) {
+        URI apiUrl = URI.create("https://localhost:3000/v1");
+        URI wsUrl = URI.create("wss://localhost:3000/ws/v1/productos");
+        int clients = 1000;
+        int connectRate = 500;
+        double updateRate = 10;
+        Duration duration = Duration.ofSeconds(60);
+        List<Long> products = List.of(1L, 2L, 3L, 4L, 5L);
+        String username = "admin";
+        String password = "Admin1";
+        long lateThreshold = 1000;
+        boolean insecure = false;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--api" -> apiUrl = URI.create(value(args, ++i, arg));
+                case "--ws" -> wsUrl = URI.create(value(args, ++i, arg));
+                case "--clients" -> clients = Integer.parseInt(value(args, ++i, arg));
+                case "--connect-rate" -> connectRate = Integer.parseInt(value(args, ++i, arg));
+                case "--rate" -> updateRate = Double.parseDouble(value(args, ++i, arg));
+                case "--duration" -> duration = Duration.ofSeconds(Long.parseLong(value(args, ++i, arg)));
+                case "--products" -> {
+                    List<Long> ids = new ArrayList<>();
+                    for (String id : value(args, ++i, arg).split(",")) {
+                        ids.add(Long.parseLong(id.trim()));
+                    }
+                    products = ids;
+                }
+                case "--user" -> username = value(args, ++i, arg);
+                case "--password" -> password = value(args, ++i, arg);
+                case "--late" -> lateThreshold = Long.parseLong(value(args, ++i, arg));
+                case "--insecure" -> insecure = true;
+                case "--help" -> {
+                    usage();
+                    System.exit(0);
+                }
+                default -> throw new IllegalArgumentException("Opción desconocida: " + arg);
+            }
+        }
+        if (clients <= 0 || connectRate <= 0 || updateRate <= 0 || products.isEmpty()) {
+            throw new IllegalArgumentException("clients, connect-rate y rate deben ser positivos y debe haber algún producto");
+        }
+        return new LoadOptions(apiUrl, wsUrl, clients, connectRate, updateRate, duration, List.copyOf(products),
+                username, password, lateThreshold, insecure);
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Falta el valor de " + option);
+        }
+        return args[index];
+    }
+
+    public static void usage() {
+        System.out.println("""
+                Generador de carga de WebSockets de Tienda API
+                  --api URL           URL base de la API REST (https://localhost:3000/v1)
+                  --ws URL            Endpoint WebSocket (wss://localhost:3000/ws/v1/productos)
+                  --clients N         Conexiones concurrentes (1000)
+                  --connect-rate N    Conexiones nuevas por segundo (500)
+                  --rate N            Actualizaciones de productos por segundo (10)
+                  --duration S        Segundos de prueba (60)
+                  --products 1,2,3    Productos a actualizar (1,2,3,4,5)
+                  --user U            Usuario admin (admin)
+                  --password P        Contraseña (Admin1)
+                  --late MS           Latencia a partir de la que un mensaje es tardío (1000)
+                  --insecure          Acepta el certificado autofirmado del servidor
+                """);
+    }
+}
@@ -0,0 +1,132 @@
+package dev.joseluisgs.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.http.WebSocket;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Cliente WebSocket de la prueba de carga: lee cada notificación y registra su latencia y su secuencia
+ * La latencia se mide desde createdAt (hora local del servidor), así que servidor y generador deben
+ * estar en la misma máquina o con los relojes sincronizados
+ */
+public class NotificationListener implements WebSocket.Listener {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final FanOutStats stats;
+    private final StringBuilder text = new StringBuilder();
+    // Las secuencias son de una época, que cambia si se reinicia el servidor o el contador del cluster
+    private volatile String epoch;
+    private volatile long lastSequence;
+
+    public NotificationListener(FanOutStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        text.append(data);
+        if (last) {
+            onMessage(text.toString());
+            text.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    /**
+     * Procesa un mensaje completo, los que no son notificaciones (saludo, respuestas) se ignoran
+     *
+     * @param message Mensaje de texto
+     */
+    void onMessage(String message) {
+        Instant receivedAt = Instant.now();
+        if (!message.startsWith("{")) {
+            return;
+        }
+        try {
+            JsonNode notificacion = MAPPER.readTree(message);
+            if (!notificacion.has("sequence") || !notificacion.has("createdAt")) {
+                return;
+            }
+            // Sin secuencia (0) si el servidor no pudo reservarla en el cluster, no cuenta para los huecos
+            long sequence = notificacion.get("sequence").asLong();
+            String notificacionEpoch = notificacion.hasNonNull("epoch") ? notificacion.get("epoch").asText() : "";
+            if (sequence > 0 && !trackSequence(notificacionEpoch, sequence)) {
+                // Repetida, ya se contó su latencia
+                return;
+            }
+            stats.recordLatency(ChronoUnit.MICROS.between(createdAt(notificacion.get("createdAt")), receivedAt));
+        } catch (Exception e) {
+            stats.invalid.increment();
+        }
+    }
+
+    private Instant createdAt(JsonNode createdAt) {
+        // Texto con LocalDateTime.toString() o milisegundos desde epoch
+        return createdAt.isNumber()
+                ? Instant.ofEpochMilli(createdAt.asLong())
+                : LocalDateTime.parse(createdAt.asText()).atZone(ZONE).toInstant();
+    }
+
+    /**
+     * Cuenta los huecos y repetidas en la secuencia de este cliente
+     *
+     * @param epoch    Época de la notificación
+     * @param sequence Secuencia de la notificación
+     * @return true si es nueva, false si está repetida
+     */
+    private boolean trackSequence(String epoch, long sequence) {
+        if (!epoch.equals(this.epoch)) {
+            // Época nueva (servidor o contador reiniciado): se empieza a contar de nuevo desde esta notificación
+            this.epoch = epoch;
+            lastSequence = 0;
+        }
+        // La primera notificación marca desde dónde contamos, el cliente se puede conectar con la prueba empezada
+        if (lastSequence > 0) {
+            if (sequence <= lastSequence) {
+                stats.duplicated.increment();
+                return false;
+            }
+            if (sequence > lastSequence + 1) {
+                stats.dropped.add(sequence - lastSequence - 1);
+            }
+        }
+        lastSequence = sequence;
+        stats.recordSequence(epoch, sequence);
+        return true;
+    }
+
+    /**
+     * Al terminar la prueba, las notificaciones que le faltan a este cliente respecto a la última enviada
+     */
+    void countMissingTail() {
+        // Solo se compara con la última enviada si este cliente ha llegado a la época actual
+        long max = stats.maxSequence(epoch);
+        if (lastSequence > 0 && max > lastSequence) {
+            stats.dropped.add(max - lastSequence);
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        stats.closed.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        stats.closed.incrementAndGet();
+    }
+}
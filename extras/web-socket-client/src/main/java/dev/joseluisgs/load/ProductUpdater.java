@@ -0,0 +1,120 @@
+package dev.joseluisgs.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Genera las notificaciones: actualiza el stock de los productos por la API REST al ritmo indicado
+ * Cada actualización se lanza en un hilo virtual, así una respuesta lenta no frena el ritmo
+ */
+public class ProductUpdater {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient httpClient;
+    private final LoadOptions options;
+    private final FanOutStats stats;
+    private final Map<Long, String> modelos = new HashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private String token;
+    // Una vez parado no se vuelve a arrancar, aunque stop llegue antes que run
+    private volatile boolean stopped;
+
+    public ProductUpdater(HttpClient httpClient, LoadOptions options, FanOutStats stats) {
+        this.httpClient = httpClient;
+        this.options = options;
+        this.stats = stats;
+    }
+
+    /**
+     * Inicia sesión como admin y lee el modelo de cada producto, el PATCH lo necesita
+     */
+    public void prepare() throws IOException, InterruptedException {
+        String body = MAPPER.writeValueAsString(Map.of("username", options.username(), "password", options.password()));
+        HttpResponse<String> signIn = httpClient.send(HttpRequest.newBuilder(api("/auth/signin"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (signIn.statusCode() != 200) {
+            throw new IOException("No se ha podido iniciar sesión con " + options.username() + ": " + signIn.statusCode());
+        }
+        token = MAPPER.readTree(signIn.body()).get("token").asText();
+
+        for (Long id : options.products()) {
+            HttpResponse<String> producto = httpClient.send(HttpRequest.newBuilder(api("/productos/" + id)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (producto.statusCode() != 200) {
+                throw new IOException("No existe el producto " + id + ": " + producto.statusCode());
+            }
+            JsonNode json = MAPPER.readTree(producto.body());
+            modelos.put(id, json.get("modelo").asText());
+        }
+    }
+
+    /**
+     * Actualiza productos al ritmo de la prueba hasta que se llame a stop
+     */
+    public void run() throws InterruptedException {
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.updateRate());
+        List<Long> products = options.products();
+        long next = System.nanoTime();
+        int i = 0;
+        while (!stopped) {
+            long id = products.get(i++ % products.size());
+            try {
+                executor.execute(() -> update(id));
+            } catch (RejectedExecutionException e) {
+                // stop ha cerrado el executor entre la comprobación y el envío
+                break;
+            }
+            // Ritmo fijo: si una vuelta se retrasa, la siguiente sale antes
+            next += periodNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+
+    private void update(long id) {
+        try {
+            String body = MAPPER.writeValueAsString(Map.of(
+                    "modelo", modelos.get(id),
+                    "stock", ThreadLocalRandom.current().nextInt(1, 1000)));
+            HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(api("/productos/" + id))
+                    .header("Content-Type", "application/json")
+                    .header("Authorization", "Bearer " + token)
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 200) {
+                stats.updatesSent.increment();
+            } else {
+                stats.updatesFailed.increment();
+            }
+        } catch (IOException | InterruptedException e) {
+            stats.updatesFailed.increment();
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        executor.shutdown();
+    }
+
+    private URI api(String path) {
+        return URI.create(options.apiUrl() + path);
+    }
+}
@@ -62,6 +62,8 @@ dependencies {
     implementation("com.fasterxml.jackson.datatype:jackson-datatype-jsr310")
     // Jackson XML support
     implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-xml")
+    // Jackson CBOR para las notificaciones binarias por WebSocket
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
     
     // WebSocket
     implementation("org.springframework:spring-websocket")
@@ -92,6 +94,55 @@ dependencies {
     testImplementation("org.mockito:mockito-junit-jupiter")
 }
 
+// Recursos estáticos con huella: copia cada fichero de static con el hash de su contenido en el nombre
+// (static/assets/images/favicon-<hash>.png), una versión .gz de los que se comprimen bien y un manifiesto
+// con el nombre lógico y el nombre con huella, que usa AssetManifest para generar los enlaces de las plantillas
+val staticAssets = tasks.register("staticAssets") {
+    description = "Genera los recursos estáticos con huella y precomprimidos"
+    group = "build"
+
+    val source = layout.projectDirectory.dir("src/main/resources/static")
+    val output = layout.buildDirectory.dir("generated/assets")
+    val compressible = setOf("css", "js", "mjs", "map", "svg", "html", "json", "txt", "xml", "ico")
+    inputs.dir(source)
+    outputs.dir(output)
+
+    doLast {
+        val assetsDir = output.get().dir("static/assets").asFile
+        assetsDir.deleteRecursively()
+        assetsDir.mkdirs()
+        val manifest = sortedMapOf<String, String>()
+        source.asFileTree.visit {
+            if (isDirectory) return@visit
+            val bytes = file.readBytes()
+            val hash = java.security.MessageDigest.getInstance("SHA-256").digest(bytes)
+                .joinToString("") { "%02x".format(it) }.take(16)
+            val extension = if (file.extension.isEmpty()) "" else "." + file.extension
+            val parent = relativePath.parent?.pathString?.takeIf { it.isNotEmpty() }?.let { "$it/" } ?: ""
+            val fingerprinted = parent + file.nameWithoutExtension + "-" + hash + extension
+            val target = File(assetsDir, fingerprinted)
+            target.parentFile.mkdirs()
+            target.writeBytes(bytes)
+            // Solo se guarda el .gz si ocupa menos, las imágenes ya vienen comprimidas
+            if (file.extension.lowercase() in compressible) {
+                val gzip = java.io.ByteArrayOutputStream()
+                java.util.zip.GZIPOutputStream(gzip).use { it.write(bytes) }
+                if (gzip.size() < bytes.size) {
+                    File(assetsDir, "$fingerprinted.gz").writeBytes(gzip.toByteArray())
+                }
+            }
+            manifest[path] = fingerprinted
+        }
+        // Fuera de static para que no se publique
+        output.get().file("assets-manifest.properties").asFile
+            .writeText(manifest.entries.joinToString("") { "${it.key}=${it.value}\n" })
+    }
+}
+
+tasks.processResources {
+    from(staticAssets)
+}
+
 tasks.withType<Test> {
     useJUnitPlatform()
     
@@ -101,16 +152,22 @@ tasks.withType<Test> {
         showStandardStreams = false
     }
     
-    // Separate integration tests
+    // Separate integration tests and benchmarks
     if (project.hasProperty("integrationTest")) {
         filter {
             includeTestsMatching("*IntegrationTest")
             includeTestsMatching("*IT")
         }
+    } else if (project.hasProperty("benchmark")) {
+        filter {
+            includeTestsMatching("*Benchmark")
+        }
+        testLogging.showStandardStreams = true
     } else {
         filter {
             excludeTestsMatching("*IntegrationTest")
             excludeTestsMatching("*IT")
+            excludeTestsMatching("*Benchmark")
         }
     }
 }
@@ -0,0 +1,153 @@
+package dev.joseluisgs.tiendaapidaw.config.auth;
+
+import dev.joseluisgs.tiendaapidaw.rest.auth.exceptions.PasswordHashingUnavailable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Codificador de contraseñas que calcula los hashes (BCrypt, ~100 ms de CPU cada uno) en un pool de hilos propio y acotado
+ * <p>
+ * Así una avalancha de inicios de sesión (ataques de credenciales, todos los clientes reconectando tras una caída)
+ * solo puede ocupar los hilos del pool y no deja sin CPU al resto de la API
+ * Si el pool está ocupado y la cola llena no se espera: se lanza PasswordHashingUnavailable (503 con Retry-After)
+ * <p>
+ * El hilo de la petición espera el resultado sin consumir CPU, como mucho hay hilos + cola peticiones esperando
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final int queueSize;
+    private final long retryAfter;
+
+    // Métricas
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hashTotal = new LongAdder();
+    private final AtomicLong hashMax = new AtomicLong();
+    private final LongAdder waitTotal = new LongAdder();
+
+    /**
+     * Crea el codificador
+     *
+     * @param delegate   Codificador real (BCrypt)
+     * @param threads    Hilos del pool, con 0 o menos uno por núcleo
+     * @param queueSize  Peticiones que pueden esperar en cola a que haya un hilo libre
+     * @param retryAfter Segundos que se indican al cliente para reintentar cuando se rechaza
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueSize, long retryAfter) {
+        this.delegate = delegate;
+        this.queueSize = Math.max(1, queueSize);
+        this.retryAfter = retryAfter;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // Solo mira el prefijo del hash, no hace falta llevarlo al pool
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T execute(Callable<T> task) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                waitTotal.add(start - queuedAt);
+                try {
+                    return task.call();
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    hashTotal.add(elapsed);
+                    hashMax.accumulateAndGet(elapsed, Math::max);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Pool de hashes de contraseñas saturado ({} en cola), se rechaza la petición", executor.getQueue().size());
+            throw new PasswordHashingUnavailable("Demasiadas peticiones de autenticación, inténtalo más tarde", retryAfter);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new PasswordHashingUnavailable("Petición de autenticación interrumpida", retryAfter);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Error al calcular el hash de la contraseña", e.getCause());
+        }
+    }
+
+    /**
+     * Métricas del pool de hashes
+     *
+     * @return Estadísticas actuales
+     */
+    public PasswordHashingStats getStats() {
+        long done = completed.sum();
+        return new PasswordHashingStats(
+                executor.getCorePoolSize(),
+                executor.getActiveCount(),
+                executor.getQueue().size(),
+                queueSize,
+                done,
+                rejected.sum(),
+                done == 0 ? 0 : toMillis(hashTotal.sum() / done),
+                toMillis(hashMax.get()),
+                done == 0 ? 0 : toMillis(waitTotal.sum() / done)
+        );
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Detiene el pool, Spring lo llama al cerrar el contexto
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Estadísticas del pool de hashes, los tiempos en milisegundos
+     */
+    public record PasswordHashingStats(int threads, int active, int queued, int queueSize, long completed,
+                                       long rejected, double avgHashTime, double maxHashTime, double avgQueueWait) {
+    }
+}
@@ -1,13 +1,19 @@
 package dev.joseluisgs.tiendaapidaw.config.auth;
 
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.jwt.JwtClaims;
 import dev.joseluisgs.tiendaapidaw.rest.auth.services.jwt.JwtService;
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.AuthPrincipalCache;
 import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.AuthUsersService;
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.RevokedUserVersions;
+import dev.joseluisgs.tiendaapidaw.rest.users.models.Role;
+import dev.joseluisgs.tiendaapidaw.rest.users.models.User;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
@@ -19,63 +25,89 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final AuthUsersService authUsersService;
+    private final AuthPrincipalCache principalCache;
+    private final RevokedUserVersions revokedUserVersions;
+    private final boolean stateless;
 
     @Autowired
-    public JwtAuthenticationFilter(JwtService jwtService, AuthUsersService authUsersService) {
+    public JwtAuthenticationFilter(JwtService jwtService, AuthUsersService authUsersService, AuthPrincipalCache principalCache,
+                                   RevokedUserVersions revokedUserVersions, @Value("${jwt.stateless.enabled:false}") boolean stateless) {
         this.jwtService = jwtService;
         this.authUsersService = authUsersService;
+        this.principalCache = principalCache;
+        this.revokedUserVersions = revokedUserVersions;
+        this.stateless = stateless;
     }
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,
                                     @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
             throws ServletException, IOException {
-        log.info("Iniciando el filtro de autenticación");
+        log.debug("Iniciando el filtro de autenticación");
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
         UserDetails userDetails = null;
-        String userName = null;
+        JwtClaims claims;
 
         // Si no tenemos cabecera o no empieza por Bearer, no hacemos nada
         if (!StringUtils.hasText(authHeader) || !StringUtils.startsWithIgnoreCase(authHeader, "Bearer ")) {
-            log.info("No se ha encontrado cabecera de autenticación, se ignora");
+            log.debug("No se ha encontrado cabecera de autenticación, se ignora");
             filterChain.doFilter(request, response);
             return;
         }
 
-        log.info("Se ha encontrado cabecera de autenticación, se procesa");
+        log.debug("Se ha encontrado cabecera de autenticación, se procesa");
         // Si tenemos cabecera, la extraemos y comprobamos que sea válida
         jwt = authHeader.substring(7);
-        // Lo primero que debemos ver es que el token es válido
+        // Lo primero que debemos ver es que el token es válido: firma y caducidad, se decodifica una sola vez
         try {
-            userName = jwtService.extractUserName(jwt);
+            claims = jwtService.verifyToken(jwt);
         } catch (Exception e) {
-            log.info("Token no válido");
+            log.info("Token no válido: {}", e.getMessage());
             response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token no autorizado o no válido");
             return;
         }
-        log.info("Usuario autenticado: {}", userName);
+        String userName = claims.username();
+        log.debug("Usuario autenticado: {}", userName);
         if (StringUtils.hasText(userName)
                 && SecurityContextHolder.getContext().getAuthentication() == null) {
-            // Comprobamos que el usuario existe y que el token es válido
-            log.info("Comprobando usuario y token");
-            try {
-                userDetails = authUsersService.loadUserByUsername(userName);
-            } catch (Exception e) {
-                log.info("Usuario no encontrado: {}", userName);
-                response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Usuario no autorizado");
-                return;
+            if (stateless && claims.isStateless()) {
+                // Modo sin estado: el usuario sale del propio token, solo comprobamos que no se haya revocado
+                if (revokedUserVersions.isRevoked(claims.userId(), claims.version())) {
+                    log.info("Token revocado: {}", userName);
+                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token revocado");
+                    return;
+                }
+                try {
+                    userDetails = toUser(claims);
+                } catch (IllegalArgumentException e) {
+                    log.info("Token con roles no válidos: {}", userName);
+                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token no autorizado o no válido");
+                    return;
+                }
+            } else {
+                // Comprobamos que el usuario existe
+                log.debug("Comprobando usuario");
+                // Primero en la caché, solo vamos a la base de datos si no está o ha caducado
+                try {
+                    userDetails = principalCache.getOrLoad(userName, claims.expiresAt(), authUsersService::loadUserByUsername);
+                } catch (Exception e) {
+                    log.info("Usuario no encontrado: {}", userName);
+                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Usuario no autorizado");
+                    return;
+                }
             }
-            authUsersService.loadUserByUsername(userName);
-            log.info("Usuario encontrado: {}", userDetails);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
-                log.info("JWT válido");
+            log.debug("Usuario encontrado: {}", userDetails.getUsername());
+            // El token ya está verificado, solo falta que sea de este usuario
+            if (userName.equals(userDetails.getUsername())) {
+                log.debug("JWT válido");
                 // Si es válido, lo autenticamos en el contexto de seguridad
                 SecurityContext context = SecurityContextHolder.createEmptyContext();
                 // Añadimos los detalles de la petición
@@ -91,4 +123,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         // Y seguimos con la petición
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Crea el usuario autenticado con los datos del token, solo tiene id, username y roles
+     *
+     * @param claims Datos del token sin estado
+     * @return Usuario
+     * @throws IllegalArgumentException si algún rol no existe
+     */
+    private User toUser(JwtClaims claims) {
+        return User.builder()
+                .id(claims.userId())
+                .username(claims.username())
+                .roles(claims.roles().stream().map(Role::valueOf).collect(Collectors.toSet()))
+                .build();
+    }
 }
\ No newline at end of file
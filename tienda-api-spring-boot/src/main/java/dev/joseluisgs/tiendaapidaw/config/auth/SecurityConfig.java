@@ -1,9 +1,12 @@
 package dev.joseluisgs.tiendaapidaw.config.auth;
 
+import dev.joseluisgs.tiendaapidaw.config.ratelimit.RateLimitFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -14,7 +17,6 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -27,17 +29,58 @@ public class SecurityConfig {
     // private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final UserDetailsService userService;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
 
     @Value("${api.version}")
     private String apiVersion;
 
+    // Pool acotado para los hashes de contraseñas
+    @Value("${auth.password-hashing.threads:0}")
+    private int passwordHashingThreads;
+    @Value("${auth.password-hashing.queue-size:32}")
+    private int passwordHashingQueueSize;
+    @Value("${auth.password-hashing.retry-after:2}")
+    private long passwordHashingRetryAfter;
+
     @Autowired
-    public SecurityConfig(UserDetailsService userService, JwtAuthenticationFilter jwtAuthenticationFilter) {
+    public SecurityConfig(UserDetailsService userService, JwtAuthenticationFilter jwtAuthenticationFilter,
+                          RateLimitFilter rateLimitFilter) {
         this.userService = userService;
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.rateLimitFilter = rateLimitFilter;
     }
 
+    /**
+     * Cadena mínima para recursos estáticos, imágenes, la web de productos y WebSockets
+     * Es la mayor parte del tráfico y no necesita el usuario de la API: sin filtro JWT, sin límite de peticiones,
+     * sin caché de peticiones ni contexto de seguridad en sesión
+     * La web de productos tiene su propio login con HttpSession, que no depende de Spring Security
+     */
     @Bean
+    @Order(1)
+    public SecurityFilterChain publicResourcesFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher(
+                        // Recursos estáticos (también los precomprimidos con huella), imágenes y webjars
+                        "/static/**", "/assets/**", "/images/**", "/webjars/**",
+                        // Ficheros del almacenamiento
+                        "/storage/**",
+                        // Web de productos
+                        "/productos/**",
+                        // Websockets para notificaciones
+                        "/ws/**")
+                .csrf(AbstractHttpConfigurer::disable)
+                .requestCache(AbstractHttpConfigurer::disable)
+                .sessionManagement(manager -> manager.sessionCreationPolicy(STATELESS))
+                .authorizeHttpRequests(request -> request.anyRequest().permitAll());
+        return http.build();
+    }
+
+    /**
+     * Cadena de la API (y el resto de rutas) con el filtro JWT y el límite de peticiones
+     */
+    @Bean
+    @Order(2)
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 // Podemos decir que forzamos el uso de HTTPS, para algunas rutas de la API o todas
@@ -55,18 +98,7 @@ public class SecurityConfig {
                         .requestMatchers("/error/**").permitAll()
                         // Abrimos a Swagger -- Quitar en producción
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
-                        // Permitimos el acceso a los recursos estáticos
-                        .requestMatchers("/static/**").permitAll()
-                        // Permitimos el acceso a las imagenes
-                        .requestMatchers("/images/**").permitAll()
-                        // Permitimos lso accesos a los webjars
-                        .requestMatchers("/webjars/**").permitAll()
-                        // Permitimos el acceso a la web de productos
-                        .requestMatchers("/productos/**").permitAll()
-                        // Websockets para notificaciones
-                        .requestMatchers("/ws/**").permitAll()
-                        // Storage
-                        .requestMatchers("/storage/**").permitAll()
+                        // Los recursos estáticos, imágenes, storage, web y websockets van por publicResourcesFilterChain
                         // Otras rutas de la API podemos permitiras o no....
                         .requestMatchers("/" + apiVersion + "/**").permitAll()
                         // graphql
@@ -82,15 +114,30 @@ public class SecurityConfig {
 
                 // Añadimos el filtro de autenticación
                 .authenticationProvider(authenticationProvider()).addFilterBefore(
-                        jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                        jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                // Y el de límite de peticiones, después del JWT para saber ya quién es el usuario
+                .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
 
         // Devolvemos la configuración
         return http.build();
     }
 
+    /**
+     * El filtro JWT es un @Component y Spring Boot lo registraría también como filtro del servidor para todas las rutas,
+     * solo debe ejecutarse dentro de la cadena de la API
+     */
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthenticationFilterRegistration() {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(jwtAuthenticationFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder() {
+        // BCrypt en su propio pool, para que los inicios de sesión no se coman los hilos de Tomcat
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(),
+                passwordHashingThreads, passwordHashingQueueSize, passwordHashingRetryAfter);
     }
 
     @Bean
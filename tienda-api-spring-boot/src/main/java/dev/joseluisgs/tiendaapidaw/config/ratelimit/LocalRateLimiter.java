@@ -0,0 +1,109 @@
+package dev.joseluisgs.tiendaapidaw.config.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Limitador en memoria, cada nodo lleva sus propios cubos
+ * <p>
+ * Los cubos se reparten en varios mapas (stripes) según el hash de la clave, así el barrido de cubos inactivos
+ * y las altas de clientes nuevos no compiten todos en el mismo mapa
+ * Cada cubo se actualiza sin bloqueos con compare-and-set sobre su estado inmutable
+ * <p>
+ * Un cubo que lleva sin usarse el tiempo de llenarse está lleno, es igual que uno nuevo, así que se puede borrar
+ */
+@Slf4j
+public class LocalRateLimiter implements RateLimiter {
+    private final ConcurrentHashMap<String, Bucket>[] stripes;
+    private final LongSupplier clock;
+
+    /**
+     * Crea el limitador
+     *
+     * @param stripes Número de mapas en los que se reparten los cubos, se redondea a potencia de 2
+     */
+    public LocalRateLimiter(int stripes) {
+        this(stripes, System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    LocalRateLimiter(int stripes, LongSupplier clock) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new ConcurrentHashMap[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ConcurrentHashMap<>();
+        }
+        this.clock = clock;
+    }
+
+    @Override
+    public RateLimitDecision tryConsume(String key, RateLimitRule rule) {
+        long now = clock.getAsLong();
+        Bucket bucket = stripe(key).computeIfAbsent(key, k -> new Bucket(rule, now));
+        while (true) {
+            State current = bucket.state.get();
+            // Otro hilo puede haber leído el reloj un poco después, el tiempo nunca va hacia atrás
+            long elapsed = Math.max(0, now - current.updatedAt);
+            double tokens = Math.min(rule.capacity(), current.tokens + elapsed / 1_000_000_000.0 * rule.refillPerSecond());
+            boolean allowed = tokens >= 1;
+            State next = new State(allowed ? tokens - 1 : tokens, Math.max(now, current.updatedAt));
+            if (bucket.state.compareAndSet(current, next)) {
+                return RateLimitDecision.of(rule, allowed, next.tokens);
+            }
+        }
+    }
+
+    /**
+     * Borra los cubos que ya se han vuelto a llenar
+     */
+    @Scheduled(fixedDelayString = "${ratelimit.eviction-interval:60000}")
+    public void evictIdle() {
+        long now = clock.getAsLong();
+        int evicted = 0;
+        for (ConcurrentHashMap<String, Bucket> stripe : stripes) {
+            for (var entry : stripe.entrySet()) {
+                Bucket bucket = entry.getValue();
+                if (now - bucket.state.get().updatedAt >= bucket.idleAfter && stripe.remove(entry.getKey(), bucket)) {
+                    evicted++;
+                }
+            }
+        }
+        log.debug("Limitador de peticiones: {} cubos inactivos borrados, quedan {}", evicted, size());
+    }
+
+    /**
+     * Número de cubos en memoria
+     *
+     * @return Cubos
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, Bucket> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private ConcurrentHashMap<String, Bucket> stripe(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    // Cubo de un cliente con el tiempo tras el que, sin usarse, vuelve a estar lleno
+    private static final class Bucket {
+        private final AtomicReference<State> state;
+        private final long idleAfter;
+
+        private Bucket(RateLimitRule rule, long now) {
+            this.state = new AtomicReference<>(new State(rule.capacity(), now));
+            this.idleAfter = (long) Math.ceil(rule.secondsToFill() * 1_000_000_000.0);
+        }
+    }
+
+    private record State(double tokens, long updatedAt) {
+    }
+}
@@ -0,0 +1,64 @@
+package dev.joseluisgs.tiendaapidaw.config.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuración del límite de peticiones por usuario e IP
+ * Los límites por ruta se leen de ratelimit.routes y al final se añade el límite por defecto para el resto de rutas
+ * Con ratelimit.redis.enabled=true los cubos se guardan en Redis y el límite es común a todos los nodos
+ */
+@Configuration
+public class RateLimitConfig {
+
+    @Value("${ratelimit.enabled:true}")
+    private boolean enabled;
+
+    // Límites por ruta: patrón=capacidad:fichas por segundo, separados por comas
+    @Value("${ratelimit.routes:}")
+    private String routes;
+
+    // Límite del resto de rutas: capacidad:fichas por segundo
+    @Value("${ratelimit.default:100:50}")
+    private String defaultLimit;
+
+    @Value("${ratelimit.stripes:16}")
+    private int stripes;
+
+    @Bean
+    public LocalRateLimiter localRateLimiter() {
+        return new LocalRateLimiter(stripes);
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "ratelimit.redis.enabled", havingValue = "true")
+    public RedisRateLimiter redisRateLimiter(StringRedisTemplate redisTemplate, LocalRateLimiter localRateLimiter) {
+        return new RedisRateLimiter(redisTemplate, localRateLimiter);
+    }
+
+    @Bean
+    public RateLimitFilter rateLimitFilter(RateLimiter rateLimiter) {
+        List<RateLimitRule> rules = new ArrayList<>(RateLimitRule.parseAll(routes));
+        rules.add(RateLimitRule.parse("/**", defaultLimit));
+        return new RateLimitFilter(rateLimiter, rules, enabled);
+    }
+
+    /**
+     * El filtro solo debe ejecutarse dentro de la cadena de seguridad (después del JWT), no como filtro del servidor
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter rateLimitFilter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(rateLimitFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+}
@@ -0,0 +1,27 @@
+package dev.joseluisgs.tiendaapidaw.config.ratelimit;
+
+/**
+ * Resultado de pedir una ficha al limitador, con lo necesario para las cabeceras RateLimit-*
+ *
+ * @param allowed    Si la petición puede pasar
+ * @param limit      Capacidad del cubo
+ * @param remaining  Fichas que quedan
+ * @param reset      Segundos hasta que el cubo vuelve a estar lleno
+ * @param retryAfter Segundos hasta que haya una ficha, 0 si se ha permitido
+ */
+public record RateLimitDecision(boolean allowed, long limit, long remaining, long reset, long retryAfter) {
+
+    /**
+     * Calcula el resultado a partir de las fichas que quedan en el cubo
+     *
+     * @param rule    Límite aplicado
+     * @param allowed Si se ha gastado una ficha
+     * @param tokens  Fichas que quedan (con decimales)
+     * @return Resultado
+     */
+    public static RateLimitDecision of(RateLimitRule rule, boolean allowed, double tokens) {
+        long reset = (long) Math.ceil((rule.capacity() - tokens) / rule.refillPerSecond());
+        long retryAfter = allowed ? 0 : Math.max(1, (long) Math.ceil((1 - tokens) / rule.refillPerSecond()));
+        return new RateLimitDecision(allowed, rule.capacity(), (long) Math.floor(tokens), reset, retryAfter);
+    }
+}
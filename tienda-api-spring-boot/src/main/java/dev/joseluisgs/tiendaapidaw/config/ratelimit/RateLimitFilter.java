@@ -0,0 +1,109 @@
+package dev.joseluisgs.tiendaapidaw.config.ratelimit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Filtro de límite de peticiones, va en la cadena de seguridad justo después del filtro JWT
+ * <p>
+ * Cada cliente tiene un cubo por ruta: los autenticados por su usuario y los anónimos por su IP
+ * Se aplica el primer límite cuyo patrón coincide con la ruta, si ninguno coincide la petición pasa sin límite
+ * <p>
+ * Todas las respuestas llevan las cabeceras RateLimit-Limit, RateLimit-Remaining, RateLimit-Reset y RateLimit-Policy
+ * Si no quedan fichas se responde 429 Too Many Requests con Retry-After
+ */
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+    private final RateLimiter rateLimiter;
+    private final List<RateLimitRule> rules;
+    private final boolean enabled;
+    private final AntPathMatcher matcher = new AntPathMatcher();
+
+    /**
+     * Crea el filtro
+     *
+     * @param rateLimiter Limitador (local o Redis)
+     * @param rules       Límites por ruta, en orden de prioridad
+     * @param enabled     Si está desactivado todas las peticiones pasan
+     */
+    public RateLimitFilter(RateLimiter rateLimiter, List<RateLimitRule> rules, boolean enabled) {
+        this.rateLimiter = rateLimiter;
+        this.rules = List.copyOf(rules);
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        RateLimitRule rule = findRule(request.getRequestURI().substring(request.getContextPath().length()));
+        if (rule == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String client = clientKey(request);
+        RateLimitDecision decision = rateLimiter.tryConsume(rule.pattern() + "|" + client, rule);
+
+        response.setHeader("RateLimit-Limit", String.valueOf(decision.limit()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(decision.remaining()));
+        response.setHeader("RateLimit-Reset", String.valueOf(decision.reset()));
+        response.setHeader("RateLimit-Policy", rule.capacity() + ";w=" + (long) Math.ceil(rule.secondsToFill()));
+        if (!decision.allowed()) {
+            log.debug("Límite de peticiones superado en {} por {}", rule.pattern(), client);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfter()));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Demasiadas peticiones, inténtalo más tarde");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Primer límite cuyo patrón coincide con la ruta
+     *
+     * @param path Ruta de la petición sin el contexto
+     * @return Límite, null si no hay ninguno
+     */
+    RateLimitRule findRule(String path) {
+        for (RateLimitRule rule : rules) {
+            if (matcher.match(rule.pattern(), path)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cliente de la petición: el usuario si está autenticado y si no la IP
+     * La IP es la de la conexión, detrás de un proxy hay que configurar server.forward-headers-strategy
+     *
+     * @param request Petición
+     * @return Clave del cliente
+     */
+    private String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,75 @@
+package dev.joseluisgs.tiendaapidaw.config.ratelimit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Límite de peticiones de una ruta: cubo de fichas (token bucket) con una capacidad que se rellena a un ritmo fijo
+ * Cada petición gasta una ficha, la capacidad es la ráfaga máxima y el ritmo las peticiones por segundo sostenidas
+ *
+ * @param pattern         Patrón de la ruta (estilo Ant: /v1/productos/**)
+ * @param capacity        Fichas del cubo
+ * @param refillPerSecond Fichas que se recuperan por segundo
+ */
+public record RateLimitRule(String pattern, long capacity, double refillPerSecond) {
+
+    public RateLimitRule {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Límite no válido para " + pattern + ": capacidad y ritmo deben ser positivos");
+        }
+    }
+
+    /**
+     * Segundos que tarda el cubo vacío en llenarse, también es la ventana de la política
+     *
+     * @return Segundos
+     */
+    public double secondsToFill() {
+        return capacity / refillPerSecond;
+    }
+
+    /**
+     * Lee los límites de la configuración, separados por comas con el formato patrón=capacidad:fichas por segundo
+     * Por ejemplo: /v1/productos/**=50:10,/graphql=20:5
+     *
+     * @param routes Límites de la configuración (puede estar vacío)
+     * @return Límites en el mismo orden
+     * @throws IllegalArgumentException si alguno no tiene el formato correcto
+     */
+    public static List<RateLimitRule> parseAll(String routes) {
+        List<RateLimitRule> rules = new ArrayList<>();
+        if (routes == null || routes.isBlank()) {
+            return rules;
+        }
+        for (String route : routes.split(",")) {
+            if (!route.isBlank()) {
+                int equals = route.lastIndexOf('=');
+                if (equals <= 0) {
+                    throw new IllegalArgumentException("Límite no válido, se espera patrón=capacidad:fichas por segundo: " + route);
+                }
+                rules.add(parse(route.substring(0, equals).trim(), route.substring(equals + 1).trim()));
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Crea el límite de una ruta
+     *
+     * @param pattern Patrón de la ruta
+     * @param limit   Límite con el formato capacidad:fichas por segundo
+     * @return Límite
+     * @throws IllegalArgumentException si el límite no tiene el formato correcto
+     */
+    public static RateLimitRule parse(String pattern, String limit) {
+        String[] parts = limit.split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Límite no válido para " + pattern + ", se espera capacidad:fichas por segundo: " + limit);
+        }
+        try {
+            return new RateLimitRule(pattern, Long.parseLong(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Límite no válido para " + pattern + ": " + limit, e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package dev.joseluisgs.tiendaapidaw.config.ratelimit;
+
+/**
+ * Limitador de peticiones con cubos de fichas, uno por cliente y ruta
+ */
+public interface RateLimiter {
+
+    /**
+     * Gasta una ficha del cubo de un cliente si la hay
+     *
+     * @param key  Clave del cubo (ruta y cliente)
+     * @param rule Límite de la ruta
+     * @return Si se permite la petición y el estado del cubo
+     */
+    RateLimitDecision tryConsume(String key, RateLimitRule rule);
+}
@@ -0,0 +1,69 @@
+package dev.joseluisgs.tiendaapidaw.config.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.List;
+
+/**
+ * Limitador compartido entre todos los nodos: los cubos están en Redis y se actualizan con un script Lua atómico
+ * El script usa el reloj de Redis, así no importa que los relojes de los nodos no vayan a la par
+ * Cada cubo caduca en Redis cuando ya se habría vuelto a llenar
+ * <p>
+ * Si Redis falla se usa el limitador local para no dejar la API sin límites ni tirarla
+ */
+@Slf4j
+public class RedisRateLimiter implements RateLimiter {
+    private static final String KEY_PREFIX = "tienda:ratelimit:";
+    private static final DefaultRedisScript<List> SCRIPT = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local refill = tonumber(ARGV[2])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+            local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(state[1])
+            local ts = tonumber(state[2])
+            if tokens == nil or ts == nil then
+                tokens = capacity
+                ts = now
+            end
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) / 1000000 * refill)
+            local allowed = 0
+            if tokens >= 1 then
+                tokens = tokens - 1
+                allowed = 1
+            end
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', string.format('%.0f', now))
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / refill * 1000) + 1000)
+            return {allowed, tostring(tokens)}
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RateLimiter fallback;
+
+    /**
+     * Crea el limitador
+     *
+     * @param redisTemplate Cliente de Redis
+     * @param fallback      Limitador que se usa si Redis no responde
+     */
+    public RedisRateLimiter(StringRedisTemplate redisTemplate, RateLimiter fallback) {
+        this.redisTemplate = redisTemplate;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public RateLimitDecision tryConsume(String key, RateLimitRule rule) {
+        try {
+            List<?> result = redisTemplate.execute(SCRIPT, List.of(KEY_PREFIX + key),
+                    String.valueOf(rule.capacity()), String.valueOf(rule.refillPerSecond()));
+            boolean allowed = ((Number) result.get(0)).longValue() == 1;
+            double tokens = Double.parseDouble(result.get(1).toString());
+            return RateLimitDecision.of(rule, allowed, tokens);
+        } catch (RuntimeException e) {
+            log.warn("Error al consultar el límite de peticiones en Redis, se usa el local: {}", e.getMessage());
+            return fallback.tryConsume(key, rule);
+        }
+    }
+}
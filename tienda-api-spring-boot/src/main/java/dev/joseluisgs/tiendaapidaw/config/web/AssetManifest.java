@@ -0,0 +1,79 @@
+package dev.joseluisgs.tiendaapidaw.config.web;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Enlaces a los recursos estáticos con huella
+ * <p>
+ * La tarea staticAssets de Gradle copia cada fichero de static con el hash de su contenido en el nombre
+ * y deja un manifiesto con el nombre lógico y el nombre con huella. En las plantillas se usa como
+ * {@code th:href="@{${@assets.url('images/favicon.png')}}"} y devuelve /assets/images/favicon-<hash>.png,
+ * que se sirve con caché inmutable porque si cambia el contenido cambia el nombre
+ * <p>
+ * Si no hay manifiesto (por ejemplo al arrancar desde el IDE sin pasar por Gradle) devuelve la ruta normal del fichero
+ */
+@Component("assets")
+@Slf4j
+public class AssetManifest {
+    public static final String ASSETS_PATH = "/assets/";
+
+    private final Map<String, String> fingerprinted;
+
+    /**
+     * Carga el manifiesto
+     *
+     * @param manifest Manifiesto generado por la tarea staticAssets
+     */
+    @Autowired
+    public AssetManifest(@Value("${assets.manifest:classpath:assets-manifest.properties}") Resource manifest) {
+        this.fingerprinted = load(manifest);
+        log.info("Recursos estáticos con huella: {}", fingerprinted.size());
+    }
+
+    /**
+     * Ruta de un recurso estático
+     *
+     * @param logicalName Ruta dentro de static, por ejemplo images/favicon.png
+     * @return Ruta con huella si está en el manifiesto, si no la ruta normal
+     */
+    public String url(String logicalName) {
+        String name = logicalName.startsWith("/") ? logicalName.substring(1) : logicalName;
+        String hashed = fingerprinted.get(name);
+        return hashed != null ? ASSETS_PATH + hashed : "/" + name;
+    }
+
+    /**
+     * Número de recursos con huella
+     *
+     * @return Recursos en el manifiesto
+     */
+    public int size() {
+        return fingerprinted.size();
+    }
+
+    private static Map<String, String> load(Resource manifest) {
+        if (manifest == null || !manifest.exists()) {
+            log.warn("No hay manifiesto de recursos estáticos, se enlazan sin huella");
+            return Map.of();
+        }
+        Properties properties = new Properties();
+        try (InputStream inputStream = manifest.getInputStream()) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            log.warn("No se puede leer el manifiesto de recursos estáticos: {}", e.getMessage());
+            return Map.of();
+        }
+        return properties.stringPropertyNames().stream()
+                .collect(Collectors.toUnmodifiableMap(name -> name, properties::getProperty));
+    }
+}
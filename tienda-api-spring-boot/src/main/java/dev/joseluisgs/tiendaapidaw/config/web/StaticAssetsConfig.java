@@ -0,0 +1,36 @@
+package dev.joseluisgs.tiendaapidaw.config.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+
+import java.time.Duration;
+
+/**
+ * Recursos estáticos con huella en /assets
+ * <p>
+ * Todo lo que hay en /assets tiene el hash del contenido en el nombre, así que se sirve con caché inmutable
+ * Si el navegador acepta br o gzip y existe el fichero .br o .gz generado al compilar, se envía ese
+ * con su Content-Encoding, Tomcat no lo vuelve a comprimir en cada petición
+ * Las rutas sin huella (/images...) siguen igual, con la caché por defecto
+ */
+@Configuration
+public class StaticAssetsConfig implements WebMvcConfigurer {
+    private final long maxAge;
+
+    public StaticAssetsConfig(@Value("${assets.cache.max-age:31536000}") long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler(AssetManifest.ASSETS_PATH + "**")
+                .addResourceLocations("classpath:/static" + AssetManifest.ASSETS_PATH)
+                .setCacheControl(CacheControl.maxAge(Duration.ofSeconds(maxAge)).cachePublic().immutable())
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
+    }
+}
@@ -0,0 +1,107 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.dto.ProductoNotificationResponse;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import org.springframework.web.socket.BinaryMessage;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Codifica las notificaciones en CBOR (RFC 8949), JSON binario: mismos campos pero sin comillas ni texto,
+ * y las fechas como milisegundos desde epoch en vez del texto de LocalDateTime.toString()
+ * Lo usan las sesiones que negocian el subprotocolo binario, se codifica una vez por notificación para todas ellas
+ */
+public class BinaryNotificationEncoder {
+    private static final List<String> TIMESTAMP_FIELDS = List.of("createdAt", "updatedAt");
+
+    private final ObjectMapper cbor;
+
+    public BinaryNotificationEncoder() {
+        cbor = new CBORMapper();
+        cbor.addMixIn(Notificacion.class, NotificacionMixin.class);
+        cbor.addMixIn(ProductoNotificationResponse.class, ProductoNotificationMixin.class);
+    }
+
+    /**
+     * Codifica una notificación como frame binario
+     *
+     * @param notificacion Notificación con su secuencia
+     * @return Frame binario inmutable para compartir entre sesiones
+     * @throws IOException Error al codificar
+     */
+    public BinaryMessage encode(Notificacion<?> notificacion) throws IOException {
+        // Las que llegan de otro nodo traen los datos como árbol JSON, también pasamos sus fechas a epoch
+        if (notificacion.data() instanceof ObjectNode data) {
+            notificacion = new Notificacion<>(notificacion.entity(), notificacion.type(), withEpochMillis(data),
+                    notificacion.createdAt(), notificacion.sequence(), notificacion.epoch());
+        }
+        return new BinaryMessage(cbor.writeValueAsBytes(notificacion));
+    }
+
+    private JsonNode withEpochMillis(ObjectNode data) {
+        ObjectNode copy = data.deepCopy();
+        for (String field : TIMESTAMP_FIELDS) {
+            JsonNode value = copy.get(field);
+            if (value != null && value.isTextual()) {
+                Long millis = toEpochMillis(value.asText());
+                if (millis != null) {
+                    copy.put(field, millis);
+                }
+            }
+        }
+        return copy;
+    }
+
+    private static Long toEpochMillis(String value) {
+        try {
+            return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Fecha en texto (LocalDateTime.toString()) como milisegundos desde epoch, si no se puede leer se deja el texto
+     */
+    static class EpochMillisSerializer extends StdSerializer<String> {
+        EpochMillisSerializer() {
+            super(String.class);
+        }
+
+        @Override
+        public void serialize(String value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            Long millis = toEpochMillis(value);
+            if (millis != null) {
+                gen.writeNumber(millis);
+            } else {
+                gen.writeString(value);
+            }
+        }
+    }
+
+    // Mixins: las fechas de la notificación y del producto se codifican con EpochMillisSerializer
+    abstract static class NotificacionMixin {
+        @JsonSerialize(using = EpochMillisSerializer.class)
+        abstract String createdAt();
+    }
+
+    abstract static class ProductoNotificationMixin {
+        @JsonSerialize(using = EpochMillisSerializer.class)
+        abstract String createdAt();
+
+        @JsonSerialize(using = EpochMillisSerializer.class)
+        abstract String updatedAt();
+    }
+}
@@ -0,0 +1,248 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sesión de WebSocket con un buffer de salida acotado, en la línea de ConcurrentWebSocketSessionDecorator
+ * pero sin que el hilo que difunde tenga que enviar nunca: el mensaje se encola y un hilo del executor
+ * lo vacía en segundo plano. Así un cliente lento solo se retrasa a sí mismo y no a los demás.
+ * <p>
+ * Límites:
+ * - sendTimeLimit: si un envío lleva más de este tiempo (ms) bloqueado, la sesión se cierra
+ * - bufferSizeLimit: bytes máximos pendientes de envío, si se superan se aplica la política de desbordamiento
+ */
+@Slf4j
+public class BufferedWebSocketSession extends WebSocketSessionDecorator {
+
+    /**
+     * Qué hacer cuando el buffer de salida de un cliente se llena
+     * - DROP_OLDEST: se descartan los mensajes más antiguos
+     * - COALESCE: un mensaje nuevo sustituye al pendiente con la misma clave y si aun así no cabe se descarta el más antiguo
+     * - DISCONNECT: se cierra la sesión del cliente
+     */
+    public enum OverflowPolicy {DROP_OLDEST, COALESCE, DISCONNECT}
+
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final OverflowPolicy overflowPolicy;
+    private final Executor executor;
+
+    // Mensajes pendientes de enviar y su tamaño en bytes, protegidos por el propio buffer
+    private final Deque<OutboundMessage> buffer = new ArrayDeque<>();
+    private int bufferSize;
+
+    // Solo un hilo vacía el buffer a la vez, así los mensajes salen en orden
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    // Momento en el que empezó el envío en curso (0 si no hay ninguno)
+    private volatile long sendStartTime;
+    private volatile boolean closing;
+    private final AtomicLong droppedMessages = new AtomicLong();
+
+    public BufferedWebSocketSession(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit,
+                                    OverflowPolicy overflowPolicy, Executor executor) {
+        super(delegate);
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.overflowPolicy = overflowPolicy;
+        this.executor = executor;
+    }
+
+    /**
+     * Encola un mensaje sin clave de coalescencia
+     *
+     * @param message Mensaje a enviar
+     */
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        enqueue(message, null);
+    }
+
+    /**
+     * Encola un mensaje para este cliente, nunca bloquea al hilo que llama
+     *
+     * @param message     Mensaje a enviar
+     * @param coalesceKey Clave para sustituir mensajes pendientes equivalentes con la política COALESCE (puede ser null)
+     */
+    public void enqueue(WebSocketMessage<?> message, String coalesceKey) {
+        enqueue(message, coalesceKey, null);
+    }
+
+    /**
+     * Encola un mensaje para este cliente con una acción que se ejecuta justo antes de enviarlo de verdad,
+     * no se ejecuta si el mensaje se descarta o se sustituye antes de salir
+     *
+     * @param message     Mensaje a enviar
+     * @param coalesceKey Clave para sustituir mensajes pendientes equivalentes con la política COALESCE (puede ser null)
+     * @param beforeSend  Acción a ejecutar justo antes del envío (puede ser null)
+     */
+    public void enqueue(WebSocketMessage<?> message, String coalesceKey, Runnable beforeSend) {
+        if (closing || !isOpen()) {
+            return;
+        }
+        // Si el envío en curso lleva demasiado tiempo, el cliente no es fiable
+        long start = sendStartTime;
+        if (start > 0 && System.currentTimeMillis() - start > sendTimeLimit) {
+            closeSlowSession("límite de tiempo de envío superado (" + sendTimeLimit + " ms)");
+            return;
+        }
+
+        boolean overflow = false;
+        synchronized (buffer) {
+            if (overflowPolicy == OverflowPolicy.COALESCE && coalesceKey != null) {
+                removePending(coalesceKey);
+            }
+            buffer.addLast(new OutboundMessage(coalesceKey, message, beforeSend));
+            bufferSize += message.getPayloadLength();
+            // Siempre dejamos al menos el último mensaje, aunque por sí solo supere el límite
+            while (bufferSize > bufferSizeLimit && buffer.size() > 1) {
+                if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    overflow = true;
+                    break;
+                }
+                OutboundMessage oldest = buffer.pollFirst();
+                bufferSize -= oldest.message().getPayloadLength();
+                droppedMessages.incrementAndGet();
+            }
+        }
+
+        if (overflow) {
+            closeSlowSession("límite de buffer superado (" + bufferSizeLimit + " bytes)");
+        } else {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Quita del buffer el mensaje pendiente con la misma clave, si lo hay
+     *
+     * @param coalesceKey Clave del mensaje
+     */
+    private void removePending(String coalesceKey) {
+        Iterator<OutboundMessage> it = buffer.iterator();
+        while (it.hasNext()) {
+            OutboundMessage pending = it.next();
+            if (coalesceKey.equals(pending.coalesceKey())) {
+                it.remove();
+                bufferSize -= pending.message().getPayloadLength();
+                droppedMessages.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lanza el vaciado del buffer si no hay ya un hilo haciéndolo
+     */
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                log.warn("No se puede vaciar el buffer de la sesión {}: executor no disponible", getId());
+            }
+        }
+    }
+
+    /**
+     * Envía los mensajes pendientes en orden hasta vaciar el buffer
+     */
+    private void drain() {
+        try {
+            while (true) {
+                OutboundMessage next;
+                synchronized (buffer) {
+                    next = buffer.pollFirst();
+                    if (next == null) {
+                        // Dentro del bloqueo, para que un enqueue posterior vuelva a lanzar el vaciado
+                        draining.set(false);
+                        return;
+                    }
+                    bufferSize -= next.message().getPayloadLength();
+                }
+                if (closing || !isOpen()) {
+                    continue;
+                }
+                if (next.beforeSend() != null) {
+                    next.beforeSend().run();
+                }
+                sendStartTime = System.currentTimeMillis();
+                try {
+                    getDelegate().sendMessage(next.message());
+                } finally {
+                    sendStartTime = 0;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Error al enviar a la sesión {}: {}", getId(), e.getMessage());
+            synchronized (buffer) {
+                buffer.clear();
+                bufferSize = 0;
+                draining.set(false);
+            }
+            closeSlowSession("error de envío");
+        }
+    }
+
+    /**
+     * Cierra la sesión de un cliente lento o que no responde sin bloquear al hilo que llama
+     *
+     * @param reason Motivo del cierre
+     */
+    void closeSlowSession(String reason) {
+        if (closing) {
+            return;
+        }
+        closing = true;
+        log.info("Cerrando sesión WebSocket {}: {}", getId(), reason);
+        Runnable close = () -> {
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Error al cerrar la sesión {}: {}", getId(), e.getMessage());
+            }
+        };
+        try {
+            executor.execute(close);
+        } catch (RejectedExecutionException e) {
+            close.run();
+        }
+    }
+
+    /**
+     * Bytes pendientes de envío
+     *
+     * @return Tamaño del buffer en bytes
+     */
+    public int getBufferSize() {
+        synchronized (buffer) {
+            return bufferSize;
+        }
+    }
+
+    /**
+     * Mensajes descartados por desbordamiento o coalescencia
+     *
+     * @return Número de mensajes descartados
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    // Mensaje pendiente con su clave de coalescencia y la acción previa a su envío
+    private record OutboundMessage(String coalesceKey, WebSocketMessage<?> message, Runnable beforeSend) {
+    }
+}
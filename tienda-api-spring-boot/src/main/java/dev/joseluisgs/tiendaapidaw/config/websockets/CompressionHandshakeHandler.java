@@ -0,0 +1,48 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
+
+/**
+ * Handshake que decide si se negocia la compresión permessage-deflate (RFC 7692)
+ * Tomcat ya implementa la extensión, aquí solo la aceptamos o no según la configuración
+ * y solo para los clientes que la piden en la cabecera Sec-WebSocket-Extensions
+ * <p>
+ * Ojo: el servidor comprime cada frame para cada sesión, ahorra ancho de banda a cambio de CPU
+ */
+@Slf4j
+public class CompressionHandshakeHandler extends DefaultHandshakeHandler {
+    public static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final boolean compressionEnabled;
+
+    public CompressionHandshakeHandler(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * Filtra las extensiones que pide el cliente con las que soporta el servidor
+     *
+     * @param request             Petición de handshake
+     * @param requestedExtensions Extensiones pedidas por el cliente
+     * @param supportedExtensions Extensiones soportadas por el servidor
+     * @return Extensiones aceptadas
+     */
+    @Override
+    protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                 List<WebSocketExtension> requestedExtensions,
+                                                                 List<WebSocketExtension> supportedExtensions) {
+        List<WebSocketExtension> accepted = super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+        if (compressionEnabled) {
+            log.debug("Extensiones WebSocket negociadas: {}", accepted);
+            return accepted;
+        }
+        return accepted.stream()
+                .filter(extension -> !PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName()))
+                .toList();
+    }
+}
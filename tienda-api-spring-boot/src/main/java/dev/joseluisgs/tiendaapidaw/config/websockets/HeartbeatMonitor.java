@@ -0,0 +1,220 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latido (heartbeat) de las sesiones WebSocket con frames de control ping/pong (RFC 6455)
+ * Los clientes responden al ping con un pong automáticamente, no hace falta código en el cliente
+ * <p>
+ * Para no hacer ping a todas las sesiones a la vez, se reparten en una rueda de tiempo (time wheel)
+ * con un número de huecos: en cada tic (intervalo / huecos) solo se hace ping a las sesiones de un hueco,
+ * así cada sesión recibe un ping por intervalo y la carga se reparte a lo largo de él
+ * <p>
+ * Si una sesión acumula maxMissedPongs pings sin contestar, se considera muerta y se cierra
+ * El ping lleva en su payload el instante de envío, así con el pong se calcula el tiempo de ida y vuelta (RTT)
+ * Tanto el instante como el ping sin contestar se apuntan cuando el ping sale de verdad del buffer de la sesión,
+ * no al encolarlo: un ping que sigue en cola o que se descarta no cuenta como perdido
+ */
+@Slf4j
+public class HeartbeatMonitor {
+    private final long interval;
+    private final int slots;
+    private final int maxMissedPongs;
+
+    // Rueda de tiempo: cada hueco tiene los ids de sus sesiones
+    private final List<Set<String>> wheel;
+    private final Map<String, HeartbeatSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private int currentSlot;
+
+    // Un único hilo propio, no usamos el planificador compartido de @Scheduled
+    private final ScheduledExecutorService scheduler;
+
+    // Métricas
+    private final LongAdder pingsSent = new LongAdder();
+    private final LongAdder pongsReceived = new LongAdder();
+    private final LongAdder sessionsReaped = new LongAdder();
+    private final LongAdder rttTotal = new LongAdder();
+    private final AtomicLong rttMax = new AtomicLong();
+    private volatile long lastRtt;
+
+    /**
+     * Crea el monitor y arranca la rueda de tiempo
+     *
+     * @param interval       Tiempo (ms) entre dos pings a la misma sesión
+     * @param slots          Huecos de la rueda en los que se reparten las sesiones
+     * @param maxMissedPongs Pings sin contestar seguidos tras los que se cierra la sesión
+     */
+    public HeartbeatMonitor(long interval, int slots, int maxMissedPongs) {
+        this.interval = interval;
+        this.slots = Math.max(1, slots);
+        this.maxMissedPongs = Math.max(1, maxMissedPongs);
+        this.wheel = new ArrayList<>(this.slots);
+        for (int i = 0; i < this.slots; i++) {
+            wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "websocket-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = Math.max(1, interval / this.slots);
+        scheduler.scheduleAtFixedRate(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Añade una sesión a la rueda, en el siguiente hueco para que queden repartidas
+     *
+     * @param session Sesión del cliente
+     */
+    public void register(BufferedWebSocketSession session) {
+        int slot = Math.floorMod(nextSlot.getAndIncrement(), slots);
+        sessions.put(session.getId(), new HeartbeatSession(session, slot));
+        wheel.get(slot).add(session.getId());
+    }
+
+    /**
+     * Quita una sesión de la rueda
+     *
+     * @param sessionId Id de la sesión
+     */
+    public void unregister(String sessionId) {
+        HeartbeatSession removed = sessions.remove(sessionId);
+        if (removed != null) {
+            wheel.get(removed.slot).remove(sessionId);
+        }
+    }
+
+    /**
+     * Procesa un hueco de la rueda: cierra las sesiones que no contestan y hace ping al resto
+     */
+    void tick() {
+        try {
+            Set<String> slot = wheel.get(currentSlot);
+            currentSlot = (currentSlot + 1) % slots;
+            for (String sessionId : slot) {
+                HeartbeatSession heartbeat = sessions.get(sessionId);
+                if (heartbeat != null) {
+                    ping(heartbeat);
+                }
+            }
+            if (currentSlot == 0) {
+                log.debug("Heartbeat WebSocket: {}", getStats());
+            }
+        } catch (RuntimeException e) {
+            // Si se escapa una excepción el ScheduledExecutorService deja de repetir la tarea
+            log.warn("Error en el heartbeat de WebSockets: {}", e.getMessage());
+        }
+    }
+
+    private void ping(HeartbeatSession heartbeat) {
+        BufferedWebSocketSession session = heartbeat.session;
+        if (!session.isOpen()) {
+            unregister(session.getId());
+            return;
+        }
+        if (heartbeat.missedPongs.get() >= maxMissedPongs) {
+            sessionsReaped.increment();
+            unregister(session.getId());
+            session.closeSlowSession(maxMissedPongs + " pings sin respuesta");
+            return;
+        }
+        // Con COALESCE un ping pendiente se sustituye por el nuevo, no tiene sentido enviar los dos
+        ByteBuffer payload = ByteBuffer.allocate(Long.BYTES);
+        session.enqueue(new PingMessage(payload), "heartbeat", () -> {
+            payload.putLong(0, System.nanoTime());
+            heartbeat.missedPongs.incrementAndGet();
+            pingsSent.increment();
+        });
+    }
+
+    /**
+     * Registra el pong de un cliente: ya no está en deuda y se calcula el RTT con el instante que iba en el ping
+     *
+     * @param sessionId Id de la sesión
+     * @param message   Pong recibido
+     */
+    public void pongReceived(String sessionId, PongMessage message) {
+        HeartbeatSession heartbeat = sessions.get(sessionId);
+        if (heartbeat == null) {
+            return;
+        }
+        heartbeat.missedPongs.set(0);
+        pongsReceived.increment();
+        ByteBuffer payload = message.getPayload();
+        // Los pong no solicitados pueden no llevar nuestro payload
+        if (payload.remaining() == Long.BYTES) {
+            long rtt = System.nanoTime() - payload.getLong(payload.position());
+            if (rtt >= 0) {
+                lastRtt = rtt;
+                rttTotal.add(rtt);
+                rttMax.accumulateAndGet(rtt, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Métricas del heartbeat
+     *
+     * @return Estadísticas actuales
+     */
+    public HeartbeatStats getStats() {
+        long pongs = pongsReceived.sum();
+        return new HeartbeatStats(
+                sessions.size(),
+                interval,
+                slots,
+                pingsSent.sum(),
+                pongs,
+                sessionsReaped.sum(),
+                toMillis(lastRtt),
+                pongs == 0 ? 0 : toMillis(rttTotal.sum() / pongs),
+                toMillis(rttMax.get())
+        );
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Detiene la rueda de tiempo
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Estadísticas del heartbeat, los tiempos de ida y vuelta en milisegundos
+     */
+    public record HeartbeatStats(int sessions, long interval, int slots, long pingsSent, long pongsReceived,
+                                 long sessionsReaped, double lastRtt, double avgRtt, double maxRtt) {
+    }
+
+    // Sesión en la rueda con los pings que lleva sin contestar
+    private static final class HeartbeatSession {
+        private final BufferedWebSocketSession session;
+        private final int slot;
+        private final AtomicInteger missedPongs = new AtomicInteger();
+
+        private HeartbeatSession(BufferedWebSocketSession session, int slot) {
+            this.session = session;
+            this.slot = slot;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Ventana de coalescencia de notificaciones: las que llegan durante la ventana se juntan en un lote
+ * y se entregan de una vez, así una ráfaga de cambios (pedidos, ediciones masivas) se envía en un único frame
+ * <p>
+ * Dentro de la ventana se fusionan las notificaciones con la misma clave (el mismo producto) quedándonos con su último estado:
+ * - CREATE + UPDATE: un CREATE con los datos del UPDATE
+ * - CREATE + DELETE: nada, el cliente nunca llegó a verlo
+ * - En el resto de casos la última notificación
+ */
+@Slf4j
+public class NotificationBatcher {
+    private final long window;
+    private final Consumer<List<PendingNotification>> flusher;
+    private final ScheduledExecutorService scheduler;
+
+    // Notificaciones pendientes por clave, en orden de llegada, protegidas por el propio batcher
+    private final Map<Object, PendingNotification> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    /**
+     * Crea el batcher
+     *
+     * @param window  Duración de la ventana (ms), con 0 cada notificación se entrega al momento en su propio lote
+     * @param flusher Quién entrega el lote de notificaciones fusionadas
+     */
+    public NotificationBatcher(long window, Consumer<List<PendingNotification>> flusher) {
+        this.window = window;
+        this.flusher = flusher;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "websocket-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Añade una notificación a la ventana actual, fusionándola con la pendiente de la misma clave si la hay
+     *
+     * @param notificacion Notificación
+     * @param key          Clave del elemento notificado (null si no se puede fusionar con otras)
+     * @param topics       Temas de la notificación (null para todos los clientes)
+     */
+    public void add(Notificacion<?> notificacion, String key, Collection<String> topics) {
+        if (window <= 0) {
+            flusher.accept(List.of(new PendingNotification(notificacion, topics)));
+            return;
+        }
+        synchronized (this) {
+            Object pendingKey = key != null ? key : new Object();
+            PendingNotification merged = merge(pending.get(pendingKey), new PendingNotification(notificacion, topics));
+            if (merged == null) {
+                pending.remove(pendingKey);
+            } else {
+                pending.put(pendingKey, merged);
+            }
+            if (!flushScheduled && !pending.isEmpty()) {
+                try {
+                    scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+                    flushScheduled = true;
+                } catch (RejectedExecutionException e) {
+                    log.warn("No se puede programar el envío del lote de notificaciones: batcher detenido");
+                }
+            }
+        }
+    }
+
+    /**
+     * Fusiona la notificación pendiente de un elemento con la nueva
+     *
+     * @param previous Notificación pendiente (puede ser null)
+     * @param current  Notificación nueva
+     * @return Notificación resultante, null si se anulan
+     */
+    static PendingNotification merge(PendingNotification previous, PendingNotification current) {
+        if (previous == null) {
+            return current;
+        }
+        Notificacion<?> before = previous.notificacion();
+        Notificacion<?> after = current.notificacion();
+        if (before.type() == Notificacion.Tipo.CREATE && after.type() == Notificacion.Tipo.DELETE) {
+            return null;
+        }
+        Notificacion<?> result = after;
+        if (before.type() == Notificacion.Tipo.CREATE && after.type() == Notificacion.Tipo.UPDATE) {
+            result = new Notificacion<>(after.entity(), Notificacion.Tipo.CREATE, after.data(), after.createdAt(), after.sequence(), after.epoch());
+        }
+        // Juntamos los temas, si ha cambiado de categoría también deben enterarse los de la anterior
+        Collection<String> topics = null;
+        if (previous.topics() != null && current.topics() != null) {
+            Set<String> union = new LinkedHashSet<>(previous.topics());
+            union.addAll(current.topics());
+            topics = union;
+        }
+        return new PendingNotification(result, topics);
+    }
+
+    /**
+     * Entrega el lote de la ventana que acaba de cerrarse
+     */
+    private void flush() {
+        List<PendingNotification> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flusher.accept(batch);
+        } catch (RuntimeException e) {
+            log.error("Error al enviar el lote de {} notificaciones", batch.size(), e);
+        }
+    }
+
+    /**
+     * Detiene el batcher, las notificaciones pendientes se descartan
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Notificación pendiente de entregar con sus temas
+     */
+    public record PendingNotification(Notificacion<?> notificacion, Collection<String> topics) {
+    }
+}
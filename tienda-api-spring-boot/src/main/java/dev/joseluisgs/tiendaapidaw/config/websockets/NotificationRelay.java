@@ -0,0 +1,15 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+
+import java.util.Collection;
+
+/**
+ * Difusión de notificaciones entre varios nodos de la API
+ * Si el handler tiene un relay, las notificaciones se publican a través de él y cada nodo
+ * (también el que la publica) las entrega a sus sesiones locales
+ */
+public interface NotificationRelay {
+
+    void publish(Notificacion<?> notificacion, String coalesceKey, Collection<String> topics);
+}
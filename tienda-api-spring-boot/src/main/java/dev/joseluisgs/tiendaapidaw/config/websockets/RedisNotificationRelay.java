@@ -0,0 +1,196 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Difusión de notificaciones entre nodos con Redis pub/sub (el mismo Redis de la caché de producción)
+ * <p>
+ * Publicar: las notificaciones se encolan y un hilo las publica en el canal. Si llegan más mientras publica
+ * se juntan y se publican en un único mensaje (batching bajo carga, sin añadir espera cuando hay poca)
+ * El número de secuencia es global, se reserva en Redis con HINCRBY para todo el lote, así un cliente
+ * que se reconecta a otro nodo puede seguir desde su última secuencia. Junto al contador se guarda su época,
+ * creada a la vez que él en el mismo script: si Redis pierde el contador la secuencia vuelve a empezar
+ * pero con otra época, y los clientes con secuencias anteriores se resincronizan
+ * <p>
+ * Recibir: cada mensaje lleva el id del nodo que lo publicó, el propio nodo lo ignora porque ya lo entregó
+ * a sus sesiones al publicarlo. La notificación va ya codificada, los demás nodos no la vuelven a serializar
+ */
+@Slf4j
+public class RedisNotificationRelay implements NotificationRelay, MessageListener, DisposableBean {
+    // Crea la época si el contador no existe, reserva las secuencias del lote y devuelve {época, última secuencia}
+    private static final RedisScript<List> RESERVE_SEQUENCES = new DefaultRedisScript<>("""
+            redis.call('HSETNX', KEYS[1], 'epoch', ARGV[2])
+            local last = redis.call('HINCRBY', KEYS[1], 'sequence', ARGV[1])
+            return {redis.call('HGET', KEYS[1], 'epoch'), tostring(last)}
+            """, List.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final WebSocketHandler handler;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper mapper;
+    private final String channel;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingPublish> queue = new LinkedBlockingQueue<>();
+    private final Thread publisher;
+
+    public RedisNotificationRelay(WebSocketHandler handler, StringRedisTemplate redisTemplate, ObjectMapper mapper,
+                                  String channel, int maxBatchSize) {
+        this.handler = handler;
+        this.redisTemplate = redisTemplate;
+        this.mapper = mapper;
+        this.channel = channel;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.publisher = Thread.ofVirtual().name("websocket-relay-" + channel).start(this::publishLoop);
+        handler.setRelay(this);
+        log.info("Nodo {} publicando notificaciones WebSocket en el canal Redis {}", nodeId, channel);
+    }
+
+    /**
+     * Encola una notificación para publicarla en el canal, nunca bloquea al que llama
+     *
+     * @param notificacion Notificación sin secuencia
+     * @param coalesceKey  Clave de coalescencia (puede ser null)
+     * @param topics       Temas de la notificación (null para todos)
+     */
+    @Override
+    public void publish(Notificacion<?> notificacion, String coalesceKey, Collection<String> topics) {
+        queue.add(new PendingPublish(notificacion, coalesceKey, topics));
+    }
+
+    private void publishLoop() {
+        List<PendingPublish> batch = new ArrayList<>(maxBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - 1);
+                publishBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Publica un lote: reserva sus secuencias, lo envía al canal en un único mensaje y lo entrega a las sesiones locales
+     *
+     * @param batch Notificaciones pendientes
+     */
+    private void publishBatch(List<PendingPublish> batch) {
+        List<ClusterNotification> items = new ArrayList<>(batch.size());
+        try {
+            List<?> reserved = redisTemplate.execute(RESERVE_SEQUENCES, List.of(sequenceKey()),
+                    String.valueOf(batch.size()), ReplayBuffer.newEpoch());
+            String epoch = String.valueOf(reserved.get(0));
+            long sequence = Long.parseLong(String.valueOf(reserved.get(1))) - batch.size();
+            for (PendingPublish pending : batch) {
+                Notificacion<?> sequenced = pending.notificacion().withSequence(epoch, ++sequence);
+                items.add(new ClusterNotification(pending.coalesceKey(), pending.topics(), mapper.writeValueAsString(sequenced)));
+            }
+            redisTemplate.convertAndSend(channel, mapper.writeValueAsString(new ClusterMessage(nodeId, items)));
+            log.debug("Publicadas {} notificaciones en el canal {}", items.size(), channel);
+        } catch (IOException | RuntimeException e) {
+            // Sin Redis al menos las reciben los clientes de este nodo, pero sin secuencia: una local chocaría
+            // con las del cluster, y los que se reconecten desde antes de este hueco tendrán que resincronizarse
+            log.error("Error al publicar {} notificaciones en Redis, se entregan solo en este nodo y sin secuencia: {}", batch.size(), e.getMessage());
+            for (PendingPublish pending : batch) {
+                try {
+                    handler.deliverUnsequenced(pending.notificacion(), pending.coalesceKey(), pending.topics());
+                } catch (IOException ex) {
+                    log.error("Error al enviar la notificación a las sesiones locales", ex);
+                }
+            }
+            return;
+        }
+        deliver(items);
+    }
+
+    /**
+     * Recibe los mensajes del canal publicados por otros nodos
+     *
+     * @param message Mensaje de Redis
+     * @param pattern Patrón de la suscripción
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            ClusterMessage clusterMessage = mapper.readValue(message.getBody(), ClusterMessage.class);
+            if (nodeId.equals(clusterMessage.node())) {
+                return;
+            }
+            deliver(clusterMessage.notifications());
+        } catch (IOException e) {
+            log.error("Mensaje no válido en el canal {}: {}", channel, new String(message.getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private void deliver(List<ClusterNotification> items) {
+        for (ClusterNotification item : items) {
+            try {
+                Notificacion<JsonNode> notificacion = mapper.readValue(item.payload(), new TypeReference<>() {
+                });
+                handler.deliver(notificacion, new TextMessage(item.payload().getBytes(StandardCharsets.UTF_8)), item.coalesceKey(), item.topics());
+            } catch (IOException e) {
+                log.error("Error al entregar la notificación del canal {}", channel, e);
+            }
+        }
+    }
+
+    /**
+     * Clave del hash de Redis con el contador de secuencias del canal y su época
+     *
+     * @return Clave
+     */
+    public String sequenceKey() {
+        return channel + ":sequence-epoch";
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Detiene el hilo de publicación al cerrar la aplicación
+     */
+    @Override
+    public void destroy() {
+        publisher.interrupt();
+    }
+
+    private record PendingPublish(Notificacion<?> notificacion, String coalesceKey, Collection<String> topics) {
+    }
+
+    /**
+     * Notificación publicada en el canal, ya codificada (payload) con su clave y sus temas
+     */
+    public record ClusterNotification(String coalesceKey, Collection<String> topics, String payload) {
+    }
+
+    /**
+     * Mensaje del canal: un lote de notificaciones del nodo que lo publica
+     */
+    public record ClusterMessage(String node, List<ClusterNotification> notifications) {
+    }
+}
@@ -0,0 +1,146 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Buffer circular con las últimas notificaciones enviadas, para reenviárselas a un cliente que se reconecta
+ * Cada notificación tiene un número de secuencia creciente, el cliente indica el último que recibió
+ * y se le envían solo las siguientes. Si ya no están en el buffer tiene que volver a cargarlo todo (resync)
+ * <p>
+ * Las secuencias son de una época (epoch): la de este servidor, que cambia en cada arranque, o la del cluster
+ * si llegan por el relay. Una secuencia de otra época no se puede comparar con las del buffer y también obliga al resync
+ * <p>
+ * No es thread-safe por sí mismo, el handler lo usa siempre dentro de su bloqueo de envío
+ * para que la secuencia, el buffer y el orden de envío a las sesiones coincidan
+ */
+public class ReplayBuffer {
+    private final Entry[] entries;
+    private String epoch;
+    private long lastSequence;
+    // Secuencia hasta la que (incluida) ya no se puede reanudar, -1 si se puede desde cualquiera
+    private long resyncBarrier = -1;
+
+    /**
+     * Crea el buffer con una época nueva
+     *
+     * @param capacity Número de notificaciones que se guardan
+     */
+    public ReplayBuffer(int capacity) {
+        this(capacity, newEpoch());
+    }
+
+    /**
+     * Crea el buffer
+     *
+     * @param capacity Número de notificaciones que se guardan
+     * @param epoch    Época de las secuencias locales
+     */
+    public ReplayBuffer(int capacity, String epoch) {
+        this.entries = new Entry[Math.max(1, capacity)];
+        this.epoch = epoch;
+    }
+
+    /**
+     * Genera una época nueva, distinta en cada arranque
+     *
+     * @return Época
+     */
+    public static String newEpoch() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Asigna el siguiente número de secuencia
+     *
+     * @return Número de secuencia, empieza en 1
+     */
+    public long nextSequence() {
+        return ++lastSequence;
+    }
+
+    /**
+     * Guarda una notificación enviada, sustituye a la más antigua si el buffer está lleno
+     *
+     * @param notificacion Notificación con su número de secuencia
+     * @param frame        Frame ya codificado, para reenviarlo tal cual
+     * @param topics       Temas de la notificación (null si es para todos)
+     */
+    public void add(Notificacion<?> notificacion, TextMessage frame, Collection<String> topics) {
+        if (notificacion.epoch() != null && !notificacion.epoch().equals(epoch)) {
+            // Ha cambiado la época (p.e. se ha reiniciado el contador del cluster), lo guardado ya no se puede reenviar
+            Arrays.fill(entries, null);
+            epoch = notificacion.epoch();
+            lastSequence = 0;
+            resyncBarrier = -1;
+        }
+        entries[(int) (notificacion.sequence() % entries.length)] = new Entry(notificacion, frame, topics);
+        // Con varios nodos la secuencia viene de fuera y pueden llegar algo desordenadas
+        lastSequence = Math.max(lastSequence, notificacion.sequence());
+    }
+
+    /**
+     * Marca un hueco que no se puede reenviar, por ejemplo una notificación que se ha entregado sin secuencia
+     * Un cliente que se quedó en la última secuencia actual o antes puede habérsela perdido, así que tiene que resincronizarse
+     */
+    public void invalidate() {
+        resyncBarrier = lastSequence;
+    }
+
+    /**
+     * Notificaciones posteriores a una secuencia
+     *
+     * @param epoch    Época de la secuencia del cliente
+     * @param sequence Última secuencia recibida por el cliente
+     * @return Notificaciones en orden, vacío si el hueco ya no está en el buffer o la secuencia no es de esta época
+     */
+    public Optional<List<Entry>> since(String epoch, long sequence) {
+        if (!this.epoch.equals(epoch) || sequence <= resyncBarrier) {
+            return Optional.empty();
+        }
+        long oldest = Math.max(1, lastSequence - entries.length + 1);
+        if (sequence > lastSequence || sequence < oldest - 1) {
+            return Optional.empty();
+        }
+        List<Entry> missed = new ArrayList<>((int) (lastSequence - sequence));
+        for (long seq = sequence + 1; seq <= lastSequence; seq++) {
+            Entry entry = entries[(int) (seq % entries.length)];
+            // Si falló la codificación de una notificación su hueco no se llegó a rellenar
+            if (entry != null && entry.notificacion().sequence() == seq) {
+                missed.add(entry);
+            }
+        }
+        return Optional.of(missed);
+    }
+
+    /**
+     * Última secuencia asignada
+     *
+     * @return Secuencia, 0 si aún no se ha enviado nada
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Época actual de las secuencias
+     *
+     * @return Época
+     */
+    public String getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Notificación guardada con su frame y sus temas
+     */
+    public record Entry(Notificacion<?> notificacion, TextMessage frame, Collection<String> topics) {
+    }
+}
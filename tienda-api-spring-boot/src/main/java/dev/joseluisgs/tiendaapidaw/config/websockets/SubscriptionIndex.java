@@ -0,0 +1,196 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice de suscripciones de los clientes WebSocket: de cada tema (categoría, producto...) a las sesiones interesadas
+ * Así al notificar un cambio solo se recorren las sesiones que lo quieren recibir y no todas
+ * <p>
+ * Un cliente que no se ha suscrito a nada, o que se suscribe a "*", es comodín y lo recibe todo (comportamiento de siempre)
+ * Los temas tienen la forma tipo:valor, por ejemplo categoria:deportes o producto:42, y no distinguen mayúsculas
+ * Los temas los manda el cliente: se validan y cada sesión puede tener como mucho maxTopicsPerSession
+ */
+public class SubscriptionIndex {
+    public static final String WILDCARD = "*";
+    public static final int DEFAULT_MAX_TOPICS_PER_SESSION = 100;
+    public static final int MAX_TOPIC_LENGTH = 128;
+
+    private final int maxTopicsPerSession;
+
+    // Sesiones comodín, reciben todos los mensajes
+    private final Set<String> wildcardSessions = ConcurrentHashMap.newKeySet();
+    // Tema -> sesiones suscritas
+    private final Map<String, Set<String>> topicSessions = new ConcurrentHashMap<>();
+    // Sesión -> temas suscritos, para poder limpiar el índice cuando se desconecta
+    private final Map<String, Set<String>> sessionTopics = new ConcurrentHashMap<>();
+
+    public SubscriptionIndex() {
+        this(DEFAULT_MAX_TOPICS_PER_SESSION);
+    }
+
+    /**
+     * Crea el índice
+     *
+     * @param maxTopicsPerSession Temas máximos a los que se puede suscribir una sesión
+     */
+    public SubscriptionIndex(int maxTopicsPerSession) {
+        this.maxTopicsPerSession = Math.max(1, maxTopicsPerSession);
+    }
+
+    /**
+     * Construye el nombre normalizado de un tema
+     *
+     * @param type  Tipo de tema (categoria, producto...)
+     * @param value Valor del tema
+     * @return Tema normalizado
+     */
+    public static String topic(String type, Object value) {
+        return normalize(type + ":" + value);
+    }
+
+    private static String normalize(String topic) {
+        return topic.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Valida y normaliza los temas que manda un cliente
+     *
+     * @param topics Temas
+     * @return Temas normalizados, sin repetir
+     * @throws IllegalArgumentException si alguno es nulo, está vacío, es demasiado largo o no tiene la forma tipo:valor
+     */
+    private static Set<String> validate(Collection<String> topics) {
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String topic : topics) {
+            if (topic == null || topic.isBlank()) {
+                throw new IllegalArgumentException("Tema vacío");
+            }
+            String value = normalize(topic);
+            if (value.length() > MAX_TOPIC_LENGTH) {
+                throw new IllegalArgumentException("Tema demasiado largo, como mucho " + MAX_TOPIC_LENGTH + " caracteres");
+            }
+            int separator = value.indexOf(':');
+            if (!value.equals(WILDCARD) && (separator <= 0 || separator == value.length() - 1)) {
+                throw new IllegalArgumentException("Tema no válido, debe ser tipo:valor: " + topic);
+            }
+            normalized.add(value);
+        }
+        return normalized;
+    }
+
+    /**
+     * Registra una sesión nueva como comodín
+     *
+     * @param sessionId Id de la sesión
+     */
+    public void register(String sessionId) {
+        wildcardSessions.add(sessionId);
+    }
+
+    /**
+     * Suscribe una sesión a unos temas, si entre ellos está el comodín vuelve a recibirlo todo
+     *
+     * @param sessionId Id de la sesión
+     * @param topics    Temas a suscribir
+     * @throws IllegalArgumentException si algún tema no es válido o se pasa del máximo de temas de la sesión,
+     *                                  en ese caso no se suscribe a ninguno
+     */
+    public synchronized void subscribe(String sessionId, Collection<String> topics) {
+        Set<String> normalized = validate(topics);
+        if (normalized.contains(WILDCARD)) {
+            remove(sessionId);
+            wildcardSessions.add(sessionId);
+            return;
+        }
+        Set<String> current = sessionTopics.getOrDefault(sessionId, Set.of());
+        long added = normalized.stream().filter(topic -> !current.contains(topic)).count();
+        if (current.size() + added > maxTopicsPerSession) {
+            throw new IllegalArgumentException("Demasiados temas, como mucho " + maxTopicsPerSession + " por sesión");
+        }
+        wildcardSessions.remove(sessionId);
+        Set<String> subscribed = sessionTopics.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet());
+        for (String topic : normalized) {
+            subscribed.add(topic);
+            topicSessions.computeIfAbsent(topic, t -> ConcurrentHashMap.newKeySet()).add(sessionId);
+        }
+    }
+
+    /**
+     * Quita unos temas de una sesión, si se queda sin ninguno vuelve a ser comodín
+     *
+     * @param sessionId Id de la sesión
+     * @param topics    Temas a quitar
+     */
+    public synchronized void unsubscribe(String sessionId, Collection<String> topics) {
+        Set<String> subscribed = sessionTopics.get(sessionId);
+        if (subscribed == null) {
+            return;
+        }
+        for (String topic : topics) {
+            if (topic == null) {
+                continue;
+            }
+            String normalized = normalize(topic);
+            subscribed.remove(normalized);
+            removeFromTopic(normalized, sessionId);
+        }
+        if (subscribed.isEmpty()) {
+            sessionTopics.remove(sessionId);
+            wildcardSessions.add(sessionId);
+        }
+    }
+
+    /**
+     * Elimina una sesión del índice
+     *
+     * @param sessionId Id de la sesión
+     */
+    public synchronized void remove(String sessionId) {
+        wildcardSessions.remove(sessionId);
+        Set<String> subscribed = sessionTopics.remove(sessionId);
+        if (subscribed != null) {
+            subscribed.forEach(topic -> removeFromTopic(topic, sessionId));
+        }
+    }
+
+    private void removeFromTopic(String topic, String sessionId) {
+        topicSessions.computeIfPresent(topic, (t, sessions) -> {
+            sessions.remove(sessionId);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    /**
+     * Sesiones comodín
+     *
+     * @return Ids de las sesiones que lo reciben todo
+     */
+    public Set<String> wildcardSessions() {
+        return wildcardSessions;
+    }
+
+    /**
+     * Sesiones suscritas a un tema concreto (sin contar las comodín)
+     *
+     * @param topic Tema normalizado
+     * @return Ids de las sesiones suscritas
+     */
+    public Set<String> sessionsFor(String topic) {
+        return topicSessions.getOrDefault(topic, Set.of());
+    }
+
+    /**
+     * Temas a los que está suscrita una sesión
+     *
+     * @param sessionId Id de la sesión
+     * @return Temas, vacío si es comodín
+     */
+    public Set<String> topicsOf(String sessionId) {
+        return sessionTopics.getOrDefault(sessionId, Set.of());
+    }
+}
@@ -0,0 +1,50 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Configuración de WebSockets con varios nodos (réplicas detrás de un balanceador)
+ * Cada nodo solo conoce las sesiones que tiene conectadas, así que las notificaciones se difunden
+ * entre nodos por Redis pub/sub y cada uno las entrega a las suyas
+ * Solo se activa con websocket.cluster.enabled=true, con un único nodo no hace falta Redis
+ */
+@Configuration
+@ConditionalOnProperty(name = "websocket.cluster.enabled", havingValue = "true")
+public class WebSocketClusterConfig {
+
+    @Value("${api.version}")
+    private String apiVersion;
+
+    // Notificaciones como máximo en un mensaje de Redis cuando hay muchas pendientes
+    @Value("${websocket.cluster.max-batch-size:100}")
+    private int maxBatchSize;
+
+    @Bean
+    public RedisNotificationRelay productosNotificationRelay(WebSocketHandler webSocketProductosHandler,
+                                                             StringRedisTemplate redisTemplate, ObjectMapper mapper) {
+        return new RedisNotificationRelay(webSocketProductosHandler, redisTemplate, mapper,
+                productosChannel(), maxBatchSize);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer webSocketRelayListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                         RedisNotificationRelay productosNotificationRelay) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(productosNotificationRelay, new ChannelTopic(productosChannel()));
+        return container;
+    }
+
+    // Canal de Redis de las notificaciones de productos
+    private String productosChannel() {
+        return "tienda:ws:" + apiVersion + ":productos";
+    }
+}
@@ -1,5 +1,7 @@
 package dev.joseluisgs.tiendaapidaw.config.websockets;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -15,23 +17,64 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
+    private final ObjectMapper mapper;
 
     @Value("${api.version}")
     private String apiVersion;
 
+    // Límites del buffer de salida de cada cliente, para que uno lento no retrase al resto
+    @Value("${websocket.outbound.send-time-limit:10000}")
+    private int sendTimeLimit;
+
+    @Value("${websocket.outbound.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    @Value("${websocket.outbound.overflow-policy:DROP_OLDEST}")
+    private BufferedWebSocketSession.OverflowPolicy overflowPolicy;
+
+    // Compresión permessage-deflate para los clientes que la pidan
+    @Value("${websocket.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    // Heartbeat con ping/pong: cada cuánto (ms) se hace ping a cada sesión, en cuántos huecos se reparten
+    // y cuántos pings sin respuesta se permiten antes de cerrar la sesión
+    @Value("${websocket.heartbeat.interval:30000}")
+    private long heartbeatInterval;
+
+    @Value("${websocket.heartbeat.slots:10}")
+    private int heartbeatSlots;
+
+    @Value("${websocket.heartbeat.max-missed-pongs:3}")
+    private int heartbeatMaxMissedPongs;
+
+    // Ventana (ms) en la que se juntan las notificaciones para los clientes que piden lotes
+    @Value("${websocket.batch.window:100}")
+    private long batchWindow;
+
+    // Notificaciones que se guardan para reenviar a los clientes que se reconectan
+    @Value("${websocket.replay.size:1000}")
+    private int replaySize;
+
+    @Autowired
+    public WebSocketConfig(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
     // Registra uno por cada tipo de notificación que quieras con su handler y su ruta (endpoint)
     // Cuidado con la ruta que no se repita
     // Para coinectar con el cliente, el cliente debe hacer una petición de conexión
     // ws://localhost:3000/ws/v1/productos
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(webSocketProductosHandler(), "/ws/" + apiVersion + "/productos");
+        registry.addHandler(webSocketProductosHandler(), "/ws/" + apiVersion + "/productos")
+                .setHandshakeHandler(new CompressionHandshakeHandler(compressionEnabled));
     }
 
     // Cada uno de los handlers como bean para que cada vez que nos atienda
     @Bean
     public WebSocketHandler webSocketProductosHandler() {
-        return new WebSocketHandler("Productos");
+        return new WebSocketHandler("Productos", mapper, sendTimeLimit, bufferSizeLimit, overflowPolicy,
+                new HeartbeatMonitor(heartbeatInterval, heartbeatSlots, heartbeatMaxMissedPongs), batchWindow, replaySize);
     }
 
 }
\ No newline at end of file
@@ -1,33 +1,103 @@
 package dev.joseluisgs.tiendaapidaw.config.websockets;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.dto.ResumeResponse;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.dto.SubscriptionRequest;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.dto.SubscriptionResponse;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
-import java.time.LocalTime;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
-public class WebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable, WebSocketSender {
+public class WebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable, WebSocketSender, DisposableBean {
+    // Subprotocolos: el de siempre, un frame por notificación, el de lotes, un array JSON de notificaciones por frame,
+    // y el binario, un frame CBOR por notificación con las fechas en milisegundos
+    public static final String DEFAULT_SUBPROTOCOL = "subprotocol.demo.websocket";
+    public static final String BATCH_SUBPROTOCOL = "subprotocol.batch.websocket";
+    public static final String BINARY_SUBPROTOCOL = "subprotocol.cbor.websocket";
+
     private final String entity; // Entidad que se notifica
+    private final ObjectMapper mapper; // El de Spring, compartido por toda la aplicación
 
     // Sesiones de los clientes conectados, para recorrelos y enviarles mensajes (patrón observer)
-    // es concurrente porque puede ser compartida por varios hilos
-    private final Set<WebSocketSession> sessions = new CopyOnWriteArraySet<>();
+    // es concurrente porque puede ser compartida por varios hilos, la clave es el id de la sesión
+    // Cada sesión tiene su propio buffer de salida, así un cliente lento no bloquea al resto
+    private final Map<String, BufferedWebSocketSession> sessions = new ConcurrentHashMap<>();
+    // Qué temas quiere recibir cada sesión, las que no se suscriben a nada lo reciben todo
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
+
+    // Límites del buffer de salida de cada sesión
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final BufferedWebSocketSession.OverflowPolicy overflowPolicy;
+    // Hilos virtuales que vacían los buffers de salida, uno por sesión con mensajes pendientes
+    private final ExecutorService senderExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    // Ping/pong para saber qué clientes siguen vivos y cerrar los que no responden
+    private final HeartbeatMonitor heartbeat;
+    // Junta las notificaciones de una ventana de tiempo para los clientes que piden lotes
+    private final NotificationBatcher batcher;
+    // Últimas notificaciones con su secuencia, para los clientes que se reconectan
+    // También es el bloqueo de envío: secuencia, buffer y encolado en las sesiones van siempre en el mismo orden
+    private final ReplayBuffer replay;
+    // Codificación binaria, solo se usa si hay alguna sesión binaria conectada
+    private final BinaryNotificationEncoder binaryEncoder = new BinaryNotificationEncoder();
+    private final AtomicInteger binarySessions = new AtomicInteger();
+    // Difusión entre nodos, null si solo hay un nodo
+    private volatile NotificationRelay relay;
 
     public WebSocketHandler(String entity) {
+        this(entity, new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+    }
+
+    public WebSocketHandler(String entity, ObjectMapper mapper, int sendTimeLimit, int bufferSizeLimit, BufferedWebSocketSession.OverflowPolicy overflowPolicy) {
+        this(entity, mapper, sendTimeLimit, bufferSizeLimit, overflowPolicy, new HeartbeatMonitor(30_000, 10, 3), 100, 1000);
+    }
+
+    public WebSocketHandler(String entity, ObjectMapper mapper, int sendTimeLimit, int bufferSizeLimit, BufferedWebSocketSession.OverflowPolicy overflowPolicy,
+                            HeartbeatMonitor heartbeat, long batchWindow, int replaySize) {
         this.entity = entity;
+        this.mapper = mapper;
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.overflowPolicy = overflowPolicy;
+        this.heartbeat = heartbeat;
+        this.batcher = new NotificationBatcher(batchWindow, this::sendBatch);
+        this.replay = new ReplayBuffer(replaySize);
     }
 
     /**
      * Cuando se establece la conexión con el servidor
+     * Un cliente que se reconecta puede indicar en la URL la última secuencia que recibió, con su época, y sus temas,
+     * por ejemplo ws://localhost:3000/ws/v1/productos?sequence=3f2a9c1e:120&topics=categoria:deportes,producto:42
+     * y se le reenvían solo las notificaciones que se ha perdido, antes que cualquier notificación nueva
      *
      * @param session Sesión del cliente
      * @throws Exception Error al establecer la conexión
@@ -36,10 +106,98 @@ public class WebSocketHandler extends TextWebSocketHandler implements SubProtoco
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         log.info("Conexión establecida con el servidor");
         log.info("Sesión: " + session);
-        sessions.add(session);
-        TextMessage message = new TextMessage("Updates Web socket: " + entity + " - Tienda API Spring Boot");
-        log.info("Servidor envía: {}", message);
-        session.sendMessage(message);
+        var bufferedSession = new BufferedWebSocketSession(session, sendTimeLimit, bufferSizeLimit, overflowPolicy, senderExecutor);
+        MultiValueMap<String, String> params = queryParams(session);
+        synchronized (replay) {
+            sessions.put(session.getId(), bufferedSession);
+            subscriptions.register(session.getId());
+            if (isBinarySession(session)) {
+                binarySessions.incrementAndGet();
+            }
+            String topics = params.getFirst("topics");
+            String invalidTopics = null;
+            if (topics != null && !topics.isBlank()) {
+                try {
+                    subscriptions.subscribe(session.getId(), List.of(URLDecoder.decode(topics, StandardCharsets.UTF_8).split(",")));
+                } catch (IllegalArgumentException e) {
+                    // Se queda como comodín, se le avisa después del saludo
+                    invalidTopics = e.getMessage();
+                }
+            }
+            heartbeat.register(bufferedSession);
+            TextMessage message = new TextMessage("Updates Web socket: " + entity + " - Tienda API Spring Boot");
+            log.info("Servidor envía: {}", message);
+            bufferedSession.sendMessage(message);
+            if (invalidTopics != null) {
+                reply(bufferedSession, new SubscriptionResponse("ERROR", null, invalidTopics));
+            }
+            String sequence = params.getFirst("sequence");
+            if (sequence != null) {
+                resume(bufferedSession, sequence);
+            }
+        }
+    }
+
+    /**
+     * Época actual de las secuencias que reciben los clientes
+     *
+     * @return Época
+     */
+    String getEpoch() {
+        synchronized (replay) {
+            return replay.getEpoch();
+        }
+    }
+
+    private MultiValueMap<String, String> queryParams(WebSocketSession session) {
+        var builder = session.getUri() != null ? UriComponentsBuilder.fromUri(session.getUri()) : UriComponentsBuilder.newInstance();
+        return builder.build().getQueryParams();
+    }
+
+    /**
+     * Reenvía a un cliente que se reconecta las notificaciones posteriores a su última secuencia que le interesan
+     * Si ya no están en el buffer, o la época no es la actual (el servidor o el contador del cluster se han reiniciado),
+     * le pedimos que se resincronice. Una secuencia sin época (formato antiguo) también obliga al resync
+     * Se llama dentro del bloqueo de envío, así no se cuela ninguna notificación nueva antes de las reenviadas
+     *
+     * @param session  Sesión del cliente
+     * @param sequence Última secuencia que recibió el cliente, como epoch:sequence
+     * @throws IOException Error al responder al cliente
+     */
+    private void resume(BufferedWebSocketSession session, String sequence) throws IOException {
+        String cursor = URLDecoder.decode(sequence, StandardCharsets.UTF_8);
+        int separator = cursor.lastIndexOf(':');
+        String epoch = separator > 0 ? cursor.substring(0, separator) : null;
+        long lastSequence;
+        try {
+            lastSequence = Long.parseLong(cursor.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            reply(session, new SubscriptionResponse("ERROR", null, "Secuencia no válida: " + sequence));
+            return;
+        }
+        Optional<List<ReplayBuffer.Entry>> missed = replay.since(epoch, lastSequence);
+        if (missed.isEmpty()) {
+            log.info("La sesión {} debe resincronizarse, secuencia {}:{} fuera del buffer (última {}:{})",
+                    session.getId(), epoch, lastSequence, replay.getEpoch(), replay.getLastSequence());
+            reply(session, new ResumeResponse("RESYNC_REQUIRED", replay.getEpoch(), replay.getLastSequence(), 0));
+            return;
+        }
+        List<ReplayBuffer.Entry> entries = missed.get().stream()
+                .filter(entry -> isInterested(session.getId(), entry.topics()))
+                .toList();
+        if (isBatchSession(session)) {
+            if (!entries.isEmpty()) {
+                session.enqueue(new TextMessage(mapper.writeValueAsBytes(entries.stream().map(ReplayBuffer.Entry::notificacion).toList())), null);
+            }
+        } else if (isBinarySession(session)) {
+            for (ReplayBuffer.Entry entry : entries) {
+                session.enqueue(binaryEncoder.encode(entry.notificacion()), null);
+            }
+        } else {
+            entries.forEach(entry -> session.enqueue(entry.frame(), null));
+        }
+        log.info("Reenviadas {} notificaciones a la sesión {} desde la secuencia {}", entries.size(), session.getId(), lastSequence);
+        reply(session, new ResumeResponse("RESUMED", replay.getEpoch(), replay.getLastSequence(), entries.size()));
     }
 
     /**
@@ -52,7 +210,11 @@ public class WebSocketHandler extends TextWebSocketHandler implements SubProtoco
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         log.info("Conexión cerrada con el servidor: " + status);
-        sessions.remove(session);
+        if (sessions.remove(session.getId()) != null && isBinarySession(session)) {
+            binarySessions.decrementAndGet();
+        }
+        subscriptions.remove(session.getId());
+        heartbeat.unregister(session.getId());
     }
 
     /**
@@ -63,53 +225,313 @@ public class WebSocketHandler extends TextWebSocketHandler implements SubProtoco
      */
     @Override
     public void sendMessage(String message) throws IOException {
-        log.info("Enviar mensaje de cambios en la entidad: " + entity + " : " + message);
-        // Enviamos el mensaje a todos los clientes conectados
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                log.info("Servidor WS envía: " + message);
-                session.sendMessage(new TextMessage(message));
-            }
-        }
+        sendMessage(message, null);
     }
 
     /**
-     * Envía mensajes periódicos a los clientes conectados para que sepan que el servidor sigue vivo
+     * Envía un mensaje a todos los clientes conectados
      *
+     * @param message     Mensaje a enviar
+     * @param coalesceKey Clave para fusionar mensajes pendientes del mismo elemento (puede ser null)
      * @throws IOException Error al enviar el mensaje
      */
-    @Scheduled(fixedRate = 1000) // Cada segundo
     @Override
-    public void sendPeriodicMessages() throws IOException {
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                String broadcast = "server periodic message " + LocalTime.now();
-                log.info("Server sends: " + broadcast);
-                session.sendMessage(new TextMessage(broadcast));
+    public void sendMessage(String message, String coalesceKey) throws IOException {
+        log.debug("Enviar mensaje de cambios en la entidad: " + entity + " : " + message);
+        broadcast(new TextMessage(message), null, coalesceKey, null, false);
+    }
+
+    /**
+     * Envía una notificación a los clientes interesados en alguno de sus temas
+     * Con varios nodos se publica a través del relay y cada nodo la entrega a sus sesiones
+     *
+     * @param notificacion Notificación a enviar
+     * @param coalesceKey  Clave para fusionar mensajes pendientes del mismo elemento (puede ser null)
+     * @param topics       Temas de la notificación, ver {@link SubscriptionIndex#topic} (null para todos los clientes)
+     * @throws IOException Error al serializar la notificación
+     */
+    @Override
+    public void sendNotification(Notificacion<?> notificacion, String coalesceKey, Collection<String> topics) throws IOException {
+        NotificationRelay currentRelay = relay;
+        if (currentRelay != null) {
+            currentRelay.publish(notificacion, coalesceKey, topics);
+        } else {
+            sendLocal(notificacion, coalesceKey, topics);
+        }
+    }
+
+    /**
+     * Envía una notificación solo a las sesiones de este nodo, con el siguiente número de secuencia local y su época
+     *
+     * @param notificacion Notificación a enviar
+     * @param coalesceKey  Clave de coalescencia (puede ser null)
+     * @param topics       Temas de la notificación (null para todos los clientes)
+     * @throws IOException Error al serializar la notificación
+     */
+    public void sendLocal(Notificacion<?> notificacion, String coalesceKey, Collection<String> topics) throws IOException {
+        synchronized (replay) {
+            Notificacion<?> sequenced = notificacion.withSequence(replay.getEpoch(), replay.nextSequence());
+            deliver(sequenced, new TextMessage(mapper.writeValueAsBytes(sequenced)), coalesceKey, topics);
+        }
+    }
+
+    /**
+     * Entrega a las sesiones de este nodo una notificación que ya tiene secuencia y está codificada
+     * Todas las sesiones comparten el mismo frame inmutable, creado desde los bytes para que tampoco
+     * se vuelva a codificar al calcular su tamaño
+     * Los clientes de lotes no la reciben ahora, sino fusionada en el lote de la ventana actual
+     * Los clientes binarios reciben el frame CBOR, también codificado una única vez para todos
+     * Se guarda en el buffer de reenvío para los clientes que se reconecten
+     *
+     * @param sequenced   Notificación con su número de secuencia
+     * @param frame       Notificación codificada
+     * @param coalesceKey Clave de coalescencia (puede ser null)
+     * @param topics      Temas de la notificación (null para todos los clientes)
+     */
+    public void deliver(Notificacion<?> sequenced, TextMessage frame, String coalesceKey, Collection<String> topics) {
+        synchronized (replay) {
+            replay.add(sequenced, frame, topics);
+            log.debug("Enviar notificación de la entidad: " + entity + " : " + frame.getPayload());
+            broadcast(frame, binaryFrame(sequenced), coalesceKey, topics, true);
+            batcher.add(sequenced, coalesceKey, topics);
+        }
+    }
+
+    /**
+     * Entrega a las sesiones de este nodo una notificación sin secuencia (0 y sin época)
+     * Se usa cuando no se ha podido reservar una secuencia del cluster: una secuencia local chocaría con las
+     * que reparte Redis. No se guarda en el buffer de reenvío, así que las secuencias hasta la actual ya no sirven
+     * para reanudar y quien se reconecte con una de ellas recibe RESYNC_REQUIRED
+     *
+     * @param notificacion Notificación sin secuencia
+     * @param coalesceKey  Clave de coalescencia (puede ser null)
+     * @param topics       Temas de la notificación (null para todos los clientes)
+     * @throws IOException Error al serializar la notificación
+     */
+    public void deliverUnsequenced(Notificacion<?> notificacion, String coalesceKey, Collection<String> topics) throws IOException {
+        synchronized (replay) {
+            replay.invalidate();
+            TextMessage frame = new TextMessage(mapper.writeValueAsBytes(notificacion));
+            log.debug("Enviar notificación sin secuencia de la entidad: " + entity + " : " + frame.getPayload());
+            broadcast(frame, binaryFrame(notificacion), coalesceKey, topics, true);
+            batcher.add(notificacion, coalesceKey, topics);
+        }
+    }
+
+    private BinaryMessage binaryFrame(Notificacion<?> notificacion) {
+        if (binarySessions.get() <= 0) {
+            return null;
+        }
+        try {
+            return binaryEncoder.encode(notificacion);
+        } catch (IOException e) {
+            log.error("Error al codificar en binario la notificación {} de {}", notificacion.sequence(), entity, e);
+            return null;
+        }
+    }
+
+    /**
+     * Activa la difusión entre nodos
+     *
+     * @param relay Relay por el que se publican las notificaciones
+     */
+    public void setRelay(NotificationRelay relay) {
+        this.relay = relay;
+    }
+
+    /**
+     * Envía un lote de notificaciones a los clientes de lotes, un único frame con un array JSON por cliente
+     * Cada cliente recibe solo las notificaciones de sus temas, los que reciben las mismas comparten el frame
+     *
+     * @param batch Notificaciones fusionadas de la ventana
+     */
+    private void sendBatch(List<NotificationBatcher.PendingNotification> batch) {
+        Map<BitSet, TextMessage> frames = new HashMap<>();
+        int sent = 0;
+        for (BufferedWebSocketSession session : sessions.values()) {
+            if (!isBatchSession(session) || !session.isOpen()) {
+                continue;
+            }
+            BitSet included = included(session.getId(), batch);
+            if (included.isEmpty()) {
+                continue;
             }
+            TextMessage frame = frames.get(included);
+            if (frame == null) {
+                List<Notificacion<?>> notificaciones = new ArrayList<>(included.cardinality());
+                included.stream().forEach(i -> notificaciones.add(batch.get(i).notificacion()));
+                try {
+                    frame = new TextMessage(mapper.writeValueAsBytes(notificaciones));
+                } catch (JsonProcessingException e) {
+                    // Solo se pierde este frame, el resto de clientes del lote lo siguen recibiendo
+                    log.error("Error al serializar el lote de notificaciones de {} para la sesión {}", entity, session.getId(), e);
+                    continue;
+                }
+                frames.put(included, frame);
+            }
+            session.enqueue(frame, null);
+            sent++;
+        }
+        if (sent > 0) {
+            log.info("Lote de {} notificaciones de {} encolado para {} clientes ({} frames distintos)", batch.size(), entity, sent, frames.size());
         }
     }
 
     /**
-     * Maneja los mensajes de texto que le llegan al servidor, en este caso no hacemos nada porque no nos interesa
-     * ya que el servidor no recibe mensajes de los clientes, solo les envía mensajes
+     * Qué notificaciones del lote le interesan a una sesión según sus suscripciones
      *
-     * @param session
-     * @param message
-     * @throws Exception
+     * @param sessionId Id de la sesión
+     * @param batch     Lote de notificaciones
+     * @return Posiciones en el lote de las notificaciones que debe recibir
+     */
+    private BitSet included(String sessionId, List<NotificationBatcher.PendingNotification> batch) {
+        BitSet included = new BitSet(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (isInterested(sessionId, batch.get(i).topics())) {
+                included.set(i);
+            }
+        }
+        return included;
+    }
+
+    /**
+     * Si a una sesión le interesa un mensaje con estos temas
+     *
+     * @param sessionId Id de la sesión
+     * @param topics    Temas del mensaje (null si es para todos)
+     * @return true si es comodín, el mensaje es para todos o está suscrita a alguno de sus temas
+     */
+    private boolean isInterested(String sessionId, Collection<String> topics) {
+        if (topics == null || subscriptions.wildcardSessions().contains(sessionId)) {
+            return true;
+        }
+        Set<String> subscribed = subscriptions.topicsOf(sessionId);
+        return topics.stream().anyMatch(subscribed::contains);
+    }
+
+    private boolean isBatchSession(WebSocketSession session) {
+        return BATCH_SUBPROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    private boolean isBinarySession(WebSocketSession session) {
+        return BINARY_SUBPROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    /**
+     * Encola el mismo mensaje en el buffer de cada sesión abierta interesada, en el formato de su subprotocolo
+     * No depende de lo lento que sea cada cliente, y con temas solo se recorren las sesiones suscritas
+     *
+     * @param message     Mensaje a enviar
+     * @param binary       El mismo mensaje en binario para las sesiones binarias (null si no hay)
+     * @param coalesceKey  Clave de coalescencia (puede ser null)
+     * @param topics       Temas del mensaje, null para enviarlo a todas las sesiones
+     * @param notification Si es una notificación: los clientes de lotes no la reciben ahora, porque les llega en el lote,
+     *                     y los binarios solo la reciben en binario, si no se pudo codificar se les salta.
+     *                     Los mensajes que no son notificaciones les llegan en texto si no hay versión binaria
+     */
+    private void broadcast(TextMessage message, BinaryMessage binary, String coalesceKey, Collection<String> topics, boolean notification) {
+        int sent = 0;
+        if (topics == null) {
+            for (BufferedWebSocketSession session : sessions.values()) {
+                sent += enqueue(session, message, binary, coalesceKey, notification);
+            }
+        } else {
+            for (String sessionId : subscriptions.wildcardSessions()) {
+                sent += enqueue(sessions.get(sessionId), message, binary, coalesceKey, notification);
+            }
+            // Una sesión puede estar suscrita a varios temas del mensaje, solo se le envía una vez
+            Set<String> notified = new HashSet<>();
+            for (String topic : topics) {
+                for (String sessionId : subscriptions.sessionsFor(topic)) {
+                    if (notified.add(sessionId)) {
+                        sent += enqueue(sessions.get(sessionId), message, binary, coalesceKey, notification);
+                    }
+                }
+            }
+        }
+        log.info("Mensaje de {} ({} bytes) encolado para {} clientes", entity, message.getPayloadLength(), sent);
+    }
+
+    private int enqueue(BufferedWebSocketSession session, TextMessage message, BinaryMessage binary, String coalesceKey, boolean notification) {
+        if (session == null || !session.isOpen() || (notification && isBatchSession(session))) {
+            return 0;
+        }
+        if (notification && binary == null && isBinarySession(session)) {
+            // No entiende JSON en texto, mejor que se pierda la notificación (ya se registró el error al codificarla)
+            log.warn("Notificación de {} no enviada a la sesión binaria {}: no se pudo codificar", entity, session.getId());
+            return 0;
+        }
+        WebSocketMessage<?> frame = binary != null && isBinarySession(session) ? binary : message;
+        session.enqueue(frame, coalesceKey);
+        return 1;
+    }
+
+    /**
+     * Maneja los mensajes de texto que le llegan al servidor
+     * Los clientes solo nos envían mensajes de suscripción para filtrar lo que reciben, por ejemplo:
+     * {"action":"subscribe","topics":["categoria:DEPORTES","producto:42"]}
+     * {"action":"unsubscribe","topics":["producto:42"]}
+     * {"action":"subscribe","topics":["*"]} para volver a recibirlo todo
+     *
+     * @param session Sesión del cliente
+     * @param message Mensaje de suscripción
+     * @throws Exception Error al responder al cliente
      */
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        // No hago nada con los mensajes que me llegan
-        // Si quisieramos un chat, por ejemplo, aquí lo gestionaríamos,
-        // leeríamos el mensaje y lo enviaríamos a todos los clientes conectados
-        /*
-        String request = message.getPayload();
-        log.info("Server received: " + request);
-        String response = String.format("response from server to '%s'", HtmlUtils.htmlEscape(request));
-        log.info("Server sends: " + response);
-        session.sendMessage(new TextMessage(response));
-        */
+        BufferedWebSocketSession bufferedSession = sessions.get(session.getId());
+        if (bufferedSession == null) {
+            return;
+        }
+        SubscriptionRequest request;
+        try {
+            request = mapper.readValue(message.getPayload(), SubscriptionRequest.class);
+        } catch (JsonProcessingException e) {
+            log.debug("Mensaje de suscripción no válido: {}", message.getPayload());
+            reply(bufferedSession, new SubscriptionResponse("ERROR", null, "Mensaje de suscripción no válido"));
+            return;
+        }
+        if (request.action() == null || request.topics() == null || request.topics().isEmpty()) {
+            reply(bufferedSession, new SubscriptionResponse("ERROR", null, "Se necesita action y al menos un topic"));
+            return;
+        }
+
+        try {
+            switch (request.action()) {
+                case SUBSCRIBE -> subscriptions.subscribe(session.getId(), request.topics());
+                case UNSUBSCRIBE -> subscriptions.unsubscribe(session.getId(), request.topics());
+            }
+        } catch (IllegalArgumentException e) {
+            // Temas no válidos o demasiados, no se cambia nada
+            reply(bufferedSession, new SubscriptionResponse("ERROR", subscriptions.topicsOf(session.getId()), e.getMessage()));
+            return;
+        }
+        log.debug("Sesión {} suscrita a {}", session.getId(), subscriptions.topicsOf(session.getId()));
+        reply(bufferedSession, new SubscriptionResponse("SUBSCRIPTIONS", subscriptions.topicsOf(session.getId()), null));
+    }
+
+    private void reply(BufferedWebSocketSession session, Object response) throws IOException {
+        session.sendMessage(new TextMessage(mapper.writeValueAsBytes(response)));
+    }
+
+    /**
+     * Maneja los pong de los clientes, respuesta a los ping del heartbeat
+     *
+     * @param session Sesión del cliente
+     * @param message Pong recibido
+     */
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        heartbeat.pongReceived(session.getId(), message);
+    }
+
+    /**
+     * Métricas del heartbeat de las sesiones (pings, pongs, sesiones cerradas y tiempos de ida y vuelta)
+     *
+     * @return Estadísticas del heartbeat
+     */
+    public HeartbeatMonitor.HeartbeatStats getHeartbeatStats() {
+        return heartbeat.getStats();
     }
 
     /**
@@ -126,11 +548,24 @@ public class WebSocketHandler extends TextWebSocketHandler implements SubProtoco
 
     /**
      * Devuelve los subprotocolos que soporta el servidor
+     * El cliente elige el suyo en el handshake con la cabecera Sec-WebSocket-Protocol, si pide el de lotes
+     * recibe las notificaciones agrupadas en un array JSON por ventana en vez de una por frame,
+     * y si pide el binario las recibe en CBOR en frames binarios
      *
      * @return Lista de subprotocolos
      */
     @Override
     public List<String> getSubProtocols() {
-        return List.of("subprotocol.demo.websocket");
+        return List.of(DEFAULT_SUBPROTOCOL, BATCH_SUBPROTOCOL, BINARY_SUBPROTOCOL);
+    }
+
+    /**
+     * Detiene el heartbeat y los hilos de envío al cerrar la aplicación
+     */
+    @Override
+    public void destroy() {
+        heartbeat.stop();
+        batcher.stop();
+        senderExecutor.shutdownNow();
     }
-}
\ No newline at end of file
+}
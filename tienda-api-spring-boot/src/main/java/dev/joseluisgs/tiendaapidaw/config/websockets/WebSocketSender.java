@@ -1,6 +1,9 @@
 package dev.joseluisgs.tiendaapidaw.config.websockets;
 
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+
 import java.io.IOException;
+import java.util.Collection;
 
 /**
  * Interfaz para enviar mensajes por WebSockets
@@ -9,5 +12,7 @@ public interface WebSocketSender {
 
     void sendMessage(String message) throws IOException;
 
-    void sendPeriodicMessages() throws IOException;
+    void sendMessage(String message, String coalesceKey) throws IOException;
+
+    void sendNotification(Notificacion<?> notificacion, String coalesceKey, Collection<String> topics) throws IOException;
 }
\ No newline at end of file
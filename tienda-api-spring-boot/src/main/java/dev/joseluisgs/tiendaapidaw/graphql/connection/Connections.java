@@ -0,0 +1,45 @@
+package dev.joseluisgs.tiendaapidaw.graphql.connection;
+
+import graphql.relay.Connection;
+import graphql.relay.DefaultConnection;
+import graphql.relay.DefaultConnectionCursor;
+import graphql.relay.DefaultEdge;
+import graphql.relay.DefaultPageInfo;
+import graphql.relay.Edge;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Conexiones al estilo Relay: una página de resultados, cada uno con su cursor, y la información para pedir la siguiente
+ * Se usan los tipos de graphql-java (graphql.relay), que Spring GraphQL devuelve tal cual en los tipos *Connection del esquema
+ */
+public final class Connections {
+
+    private Connections() {
+    }
+
+    /**
+     * Crea la conexión a partir de los resultados leídos
+     * Se leen size + 1 para saber si hay página siguiente sin contar toda la tabla
+     *
+     * @param nodes       Resultados leídos, como mucho size + 1
+     * @param size        Tamaño de la página
+     * @param hasPrevious Si se ha pedido a partir de un cursor
+     * @param cursor      Cursor de cada resultado
+     * @param <T>         Tipo de los resultados
+     * @return Conexión
+     */
+    public static <T> Connection<T> of(List<T> nodes, int size, boolean hasPrevious, Function<T, String> cursor) {
+        List<Edge<T>> edges = nodes.stream()
+                .limit(size)
+                .<Edge<T>>map(node -> new DefaultEdge<>(node, new DefaultConnectionCursor(cursor.apply(node))))
+                .toList();
+        DefaultPageInfo pageInfo = new DefaultPageInfo(
+                edges.isEmpty() ? null : edges.getFirst().getCursor(),
+                edges.isEmpty() ? null : edges.getLast().getCursor(),
+                hasPrevious,
+                nodes.size() > size);
+        return new DefaultConnection<>(edges, pageInfo);
+    }
+}
@@ -0,0 +1,47 @@
+package dev.joseluisgs.tiendaapidaw.graphql.connection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cursores opacos para la paginación por clave (keyset)
+ * El cursor es la clave del último resultado con el tipo delante, en Base64 para que el cliente no dependa de su formato
+ */
+public final class Cursors {
+
+    private Cursors() {
+    }
+
+    /**
+     * Crea el cursor de un resultado
+     *
+     * @param type Tipo del resultado, por ejemplo producto
+     * @param key  Clave de ordenación del resultado
+     * @return Cursor
+     */
+    public static String encode(String type, Object key) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((type + ":" + key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lee la clave de un cursor
+     *
+     * @param type   Tipo que tiene que tener el cursor
+     * @param cursor Cursor
+     * @return Clave
+     * @throws IllegalArgumentException si el cursor no es válido o es de otro tipo
+     */
+    public static String decode(String type, String cursor) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor no válido: " + cursor);
+        }
+        if (!decoded.startsWith(type + ":")) {
+            throw new IllegalArgumentException("Cursor no válido: " + cursor);
+        }
+        return decoded.substring(type.length() + 1);
+    }
+}
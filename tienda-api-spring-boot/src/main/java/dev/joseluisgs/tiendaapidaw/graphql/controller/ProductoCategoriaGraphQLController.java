@@ -11,39 +11,102 @@ package dev.joseluisgs.tiendaapidaw.graphql.controller;
  * y las relaciones entre ellos (por ejemplo, obtener la categoría de un producto o los productos de una categoría).
  */
 
+import dev.joseluisgs.tiendaapidaw.graphql.connection.Connections;
+import dev.joseluisgs.tiendaapidaw.graphql.connection.Cursors;
+import dev.joseluisgs.tiendaapidaw.graphql.dto.CategoriaFilter;
+import dev.joseluisgs.tiendaapidaw.graphql.dto.ProductoFilter;
 import dev.joseluisgs.tiendaapidaw.rest.categorias.models.Categoria;
+import dev.joseluisgs.tiendaapidaw.rest.categorias.repositories.CategoriaSpecifications;
 import dev.joseluisgs.tiendaapidaw.rest.categorias.repositories.CategoriasRepository;
 import dev.joseluisgs.tiendaapidaw.rest.productos.models.Producto;
+import dev.joseluisgs.tiendaapidaw.rest.productos.repositories.ProductoSpecifications;
 import dev.joseluisgs.tiendaapidaw.rest.productos.repositories.ProductosRepository;
+import graphql.GraphQLError;
+import graphql.relay.Connection;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.graphql.data.method.annotation.GraphQlExceptionHandler;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
-import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.execution.ErrorType;
 import org.springframework.stereotype.Controller;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Controller
 // @PreAuthorize("hasAnyRole('USER')") // Protección a nivel de clase
 public class ProductoCategoriaGraphQLController {
 
+    private static final String CURSOR_PRODUCTO = "producto";
+    private static final String CURSOR_CATEGORIA = "categoria";
+    // Las conexiones se ordenan por id, así el cursor es el id del último y la siguiente página es "id > cursor"
+    private static final Sort POR_ID = Sort.by("id");
+
     private final ProductosRepository productosRepository;
     private final CategoriasRepository categoriasRepository;
-
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxListSize;
+
+    /**
+     * Crea el controlador
+     *
+     * @param productosRepository  Repositorio de productos
+     * @param categoriasRepository Repositorio de categorías
+     * @param defaultPageSize      Tamaño de página de las conexiones si no se indica first
+     * @param maxPageSize          Tamaño máximo de página de las conexiones, first no puede pasar de aquí
+     * @param maxListSize          Resultados máximos de las listas sin paginar (productos y categorias, obsoletas,
+     *                             categoriasByNombre y los productos de cada categoría)
+     */
     @Autowired
-    public ProductoCategoriaGraphQLController(ProductosRepository productosRepository, CategoriasRepository categoriasRepository) {
+    public ProductoCategoriaGraphQLController(ProductosRepository productosRepository, CategoriasRepository categoriasRepository,
+                                              @Value("${graphql.pagination.default-size:20}") int defaultPageSize,
+                                              @Value("${graphql.pagination.max-size:100}") int maxPageSize,
+                                              @Value("${graphql.pagination.max-list-size:1000}") int maxListSize) {
         this.productosRepository = productosRepository;
         this.categoriasRepository = categoriasRepository;
+        this.maxPageSize = Math.max(1, maxPageSize);
+        this.defaultPageSize = Math.clamp(defaultPageSize, 1, this.maxPageSize);
+        this.maxListSize = Math.max(1, maxListSize);
     }
 
     // --- QUERIES ---
 
     @QueryMapping
     public List<Producto> productos() {
-        // Devuelve todos los productos como entidades (ojo: no paginado)
-        return productosRepository.findAll();
+        // Obsoleta, mejor productosConnection: no está paginada, así que como mucho devuelve maxListSize productos
+        // para que una sola petición no cargue toda la tabla en memoria
+        return productosRepository.findBy(ProductoSpecifications.filtro(Optional.empty(), Optional.empty(), Optional.empty(),
+                        Optional.empty(), Optional.empty(), Optional.empty()),
+                query -> query.sortBy(POR_ID).limit(maxListSize).project("categoria").all());
+    }
+
+    // productosConnection(first: Int, after: String, filter: ProductoFilter): ProductoConnection!
+    @QueryMapping
+    public Connection<Producto> productosConnection(@Argument Integer first, @Argument String after, @Argument ProductoFilter filter) {
+        // Página de productos a partir del cursor (keyset): solo se leen los de la página, da igual lo lejos que esté
+        int size = pageSize(first);
+        ProductoFilter filtro = filter != null ? filter : new ProductoFilter(null, null, null, null, null, null);
+        Specification<Producto> criterio = ProductoSpecifications.filtro(Optional.ofNullable(filtro.marca()),
+                Optional.ofNullable(filtro.categoria()), Optional.ofNullable(filtro.modelo()), Optional.ofNullable(filtro.isDeleted()),
+                Optional.ofNullable(filtro.precioMax()), Optional.ofNullable(filtro.stockMin()));
+        if (after != null) {
+            criterio = criterio.and(ProductoSpecifications.idMayorQue(parseProductoCursor(after)));
+        }
+        // Uno más para saber si hay página siguiente, con la categoría en la misma consulta
+        List<Producto> productos = productosRepository.findBy(criterio,
+                query -> query.sortBy(POR_ID).limit(size + 1).project("categoria").all());
+        return Connections.of(productos, size, after != null, producto -> Cursors.encode(CURSOR_PRODUCTO, producto.getId()));
     }
 
     @QueryMapping
@@ -55,8 +118,24 @@ public class ProductoCategoriaGraphQLController {
 
     @QueryMapping
     public List<Categoria> categorias() {
-        // Devuelve todas las categorías como entidades
-        return categoriasRepository.findAll();
+        // Obsoleta, mejor categoriasConnection: como mucho devuelve maxListSize categorías
+        return categoriasRepository.findBy(CategoriaSpecifications.filtro(Optional.empty(), Optional.empty()),
+                query -> query.sortBy(POR_ID).limit(maxListSize).all());
+    }
+
+    // categoriasConnection(first: Int, after: String, filter: CategoriaFilter): CategoriaConnection!
+    @QueryMapping
+    public Connection<Categoria> categoriasConnection(@Argument Integer first, @Argument String after, @Argument CategoriaFilter filter) {
+        int size = pageSize(first);
+        CategoriaFilter filtro = filter != null ? filter : new CategoriaFilter(null, null);
+        Specification<Categoria> criterio = CategoriaSpecifications.filtro(Optional.ofNullable(filtro.nombre()),
+                Optional.ofNullable(filtro.isDeleted()));
+        if (after != null) {
+            criterio = criterio.and(CategoriaSpecifications.idMayorQue(parseCategoriaCursor(after)));
+        }
+        List<Categoria> categorias = categoriasRepository.findBy(criterio,
+                query -> query.sortBy(POR_ID).limit(size + 1).all());
+        return Connections.of(categorias, size, after != null, categoria -> Cursors.encode(CURSOR_CATEGORIA, categoria.getId()));
     }
 
     @QueryMapping
@@ -73,24 +152,78 @@ public class ProductoCategoriaGraphQLController {
     // categoriasByNombre(nombre: String!): [Categoria!]!
     @QueryMapping
     public List<Categoria> categoriasByNombre(@Argument String nombre) {
-        // Devuelve las categorías que coinciden con el nombre (case insensitive)
-        return categoriasRepository.findAllByNombreContainingIgnoreCase(nombre);
+        // Devuelve las categorías que coinciden con el nombre (case insensitive), como mucho maxListSize
+        return categoriasRepository.findBy(CategoriaSpecifications.filtro(Optional.of(nombre), Optional.empty()),
+                query -> query.sortBy(POR_ID).limit(maxListSize).all());
         // En caso de que no encuentre ninguna, devuelve una lista vacía
     }
 
     // --- RESOLVERS RELACIONES ---
+    // Son por lotes (@BatchMapping, con un DataLoader por debajo): GraphQL junta todos los padres de un nivel
+    // y se resuelven con una sola consulta, en vez de una por cada padre (el problema N + 1)
+
+    @BatchMapping(typeName = "Producto", field = "categoria")
+    public List<Categoria> categoria(List<Producto> productos) {
+        // Normalmente la categoría ya viene cargada con el producto, si alguna no lo está se cargan todas juntas
+        Set<UUID> pendientes = productos.stream()
+                .map(Producto::getCategoria)
+                .filter(categoria -> categoria != null && !Hibernate.isInitialized(categoria))
+                .map(Categoria::getId)
+                .collect(Collectors.toSet());
+        Map<UUID, Categoria> cargadas = pendientes.isEmpty() ? Map.of()
+                : categoriasRepository.findAllById(pendientes).stream()
+                .collect(Collectors.toMap(Categoria::getId, Function.identity()));
+        // Se devuelven en el mismo orden que los productos
+        return productos.stream()
+                .map(producto -> producto.getCategoria() == null ? null
+                        : cargadas.getOrDefault(producto.getCategoria().getId(), producto.getCategoria()))
+                .toList();
+    }
 
-    @SchemaMapping(typeName = "Producto", field = "categoria")
-    public Categoria categoria(Producto producto) {
-        // Devuelve la categoría del producto (ya viene cargada en la entidad)
-        return producto.getCategoria();
+    @BatchMapping(typeName = "Categoria", field = "productos")
+    public List<List<Producto>> productos(List<Categoria> categorias) {
+        // Los productos de todas las categorías del nivel, luego se reparten por categoría
+        // Como mucho maxListSize por categoría, si no una consulta anidada podría cargar toda la tabla
+        // Primero los ids con el límite por categoría y luego los productos con su categoría (dos consultas por nivel)
+        List<UUID> ids = categorias.stream().map(Categoria::getId).distinct().toList();
+        List<Long> productoIds = ids.isEmpty() ? List.of() : productosRepository.findIdsByCategoriaIn(ids, maxListSize);
+        Map<UUID, List<Producto>> porCategoria = productoIds.isEmpty() ? Map.of()
+                : productosRepository.findByIdIn(productoIds, POR_ID).stream()
+                .collect(Collectors.groupingBy(producto -> producto.getCategoria().getId()));
+        // Se devuelven en el mismo orden que las categorías
+        return categorias.stream()
+                .map(categoria -> porCategoria.getOrDefault(categoria.getId(), List.of()))
+                .toList();
     }
 
-    @SchemaMapping(typeName = "Categoria", field = "productos")
-    public List<Producto> productos(Categoria categoria) {
-        // Devuelve los productos de una categoría
-        return productosRepository.findByCategoria(categoria);
+    // --- ERRORES ---
+
+    @GraphQlExceptionHandler
+    public GraphQLError handleBadRequest(IllegalArgumentException e) {
+        // Cursor o tamaño de página no válidos, es un error del cliente
+        return GraphQLError.newError().errorType(ErrorType.BAD_REQUEST).message(e.getMessage()).build();
+    }
+
+    private int pageSize(Integer first) {
+        if (first == null) {
+            return defaultPageSize;
+        }
+        if (first < 0 || first > maxPageSize) {
+            throw new IllegalArgumentException("first tiene que estar entre 0 y " + maxPageSize);
+        }
+        return first;
     }
 
+    private Long parseProductoCursor(String cursor) {
+        try {
+            return Long.valueOf(Cursors.decode(CURSOR_PRODUCTO, cursor));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor no válido: " + cursor);
+        }
+    }
 
-}
\ No newline at end of file
+    private UUID parseCategoriaCursor(String cursor) {
+        // UUID.fromString lanza IllegalArgumentException si no es válido
+        return UUID.fromString(Cursors.decode(CURSOR_CATEGORIA, cursor));
+    }
+}
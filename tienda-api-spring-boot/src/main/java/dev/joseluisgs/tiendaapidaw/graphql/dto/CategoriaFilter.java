@@ -0,0 +1,10 @@
+package dev.joseluisgs.tiendaapidaw.graphql.dto;
+
+/**
+ * Filtros de categorías en GraphQL, los mismos que en el listado de la API REST
+ *
+ * @param nombre    Nombre de la categoría (contiene)
+ * @param isDeleted Si está borrada o no
+ */
+public record CategoriaFilter(String nombre, Boolean isDeleted) {
+}
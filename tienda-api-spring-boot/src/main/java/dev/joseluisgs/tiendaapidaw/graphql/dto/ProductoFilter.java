@@ -0,0 +1,14 @@
+package dev.joseluisgs.tiendaapidaw.graphql.dto;
+
+/**
+ * Filtros de productos en GraphQL, los mismos que en el listado de la API REST
+ *
+ * @param marca     Marca del producto (contiene)
+ * @param categoria Categoría del producto (contiene)
+ * @param modelo    Modelo del producto (contiene)
+ * @param isDeleted Si está borrado o no
+ * @param precioMax Precio máximo
+ * @param stockMin  Stock mínimo
+ */
+public record ProductoFilter(String marca, String categoria, String modelo, Boolean isDeleted, Double precioMax, Double stockMin) {
+}
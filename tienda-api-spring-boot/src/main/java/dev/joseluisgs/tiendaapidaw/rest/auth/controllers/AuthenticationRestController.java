@@ -1,14 +1,18 @@
 package dev.joseluisgs.tiendaapidaw.rest.auth.controllers;
 
+import dev.joseluisgs.tiendaapidaw.config.auth.BoundedPasswordEncoder;
 import dev.joseluisgs.tiendaapidaw.rest.auth.dto.JwtAuthResponse;
 import dev.joseluisgs.tiendaapidaw.rest.auth.dto.UserSignInRequest;
 import dev.joseluisgs.tiendaapidaw.rest.auth.dto.UserSignUpRequest;
+import dev.joseluisgs.tiendaapidaw.rest.auth.exceptions.PasswordHashingUnavailable;
 import dev.joseluisgs.tiendaapidaw.rest.auth.services.authentication.AuthenticationService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
@@ -21,10 +25,12 @@ import java.util.Map;
 @RequestMapping("${api.version}/auth") // Es la ruta del controlador
 public class AuthenticationRestController {
     private final AuthenticationService authenticationService;
+    private final BoundedPasswordEncoder passwordEncoder;
 
     @Autowired
-    public AuthenticationRestController(AuthenticationService authenticationService) {
+    public AuthenticationRestController(AuthenticationService authenticationService, BoundedPasswordEncoder passwordEncoder) {
         this.authenticationService = authenticationService;
+        this.passwordEncoder = passwordEncoder;
     }
 
     /**
@@ -51,6 +57,31 @@ public class AuthenticationRestController {
         return ResponseEntity.ok(authenticationService.signIn(request));
     }
 
+    /**
+     * Métricas del pool de hashes de contraseñas: hilos, cola, rechazos y tiempos en ms
+     *
+     * @return Estadísticas del pool
+     */
+    @GetMapping("/password-hashing")
+    @PreAuthorize("hasRole('ADMIN')") // Solo los admin pueden acceder
+    public ResponseEntity<BoundedPasswordEncoder.PasswordHashingStats> getPasswordHashingStats() {
+        log.info("Obteniendo métricas del pool de hashes de contraseñas");
+        return ResponseEntity.ok(passwordEncoder.getStats());
+    }
+
+    /**
+     * Manejador de pool de hashes saturado: 503 Service Unavailable con Retry-After
+     *
+     * @param ex excepción
+     * @return Mensaje de error
+     */
+    @ExceptionHandler(PasswordHashingUnavailable.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashingUnavailable(PasswordHashingUnavailable ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter()))
+                .body(Map.of("message", ex.getMessage()));
+    }
+
     /**
      * Manejador de excepciones de Validación: 400 Bad Request
      *
@@ -0,0 +1,22 @@
+package dev.joseluisgs.tiendaapidaw.rest.auth.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * No se puede calcular el hash de la contraseña porque hay demasiadas peticiones de autenticación en cola
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashingUnavailable extends AuthException {
+    // Segundos que el cliente debería esperar antes de reintentar
+    private final long retryAfter;
+
+    public PasswordHashingUnavailable(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,26 @@
+package dev.joseluisgs.tiendaapidaw.rest.auth.services.jwt;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Datos de un token ya verificado (firma y caducidad), para no tener que volver a decodificarlo
+ *
+ * @param username  Usuario del token (subject)
+ * @param issuedAt  Fecha de emisión
+ * @param expiresAt Fecha de expiración
+ * @param userId    Id del usuario, solo en los tokens del modo sin estado (null en el resto)
+ * @param roles     Roles del usuario, solo en los tokens del modo sin estado (null en el resto)
+ * @param version   Versión del usuario al emitir el token, solo en los tokens del modo sin estado (null en el resto)
+ */
+public record JwtClaims(String username, Date issuedAt, Date expiresAt, Long userId, List<String> roles, Long version) {
+
+    /**
+     * Indica si el token lleva todo lo necesario para autenticar sin consultar el usuario
+     *
+     * @return true si tiene id, roles y versión
+     */
+    public boolean isStateless() {
+        return userId != null && roles != null && version != null;
+    }
+}
@@ -1,5 +1,6 @@
 package dev.joseluisgs.tiendaapidaw.rest.auth.services.jwt;
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import org.springframework.security.core.userdetails.UserDetails;
 
 public interface JwtService {
@@ -8,4 +9,6 @@ public interface JwtService {
     String generateToken(UserDetails userDetails);
 
     boolean isTokenValid(String token, UserDetails userDetails);
-}
\ No newline at end of file
+
+    JwtClaims verifyToken(String token) throws JWTVerificationException;
+}
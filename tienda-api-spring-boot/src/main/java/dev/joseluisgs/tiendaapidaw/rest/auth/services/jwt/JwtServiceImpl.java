@@ -2,8 +2,13 @@ package dev.joseluisgs.tiendaapidaw.rest.auth.services.jwt;
 
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.auth0.jwt.interfaces.JWTVerifier;
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.RevokedUserVersions;
+import dev.joseluisgs.tiendaapidaw.rest.users.models.User;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -12,30 +17,47 @@ import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 
 /**
  * Servicio de JWT
+ * <p>
+ * El algoritmo y el verificador se crean una sola vez al arrancar, son inmutables y se pueden compartir entre hilos
+ * Cada token se verifica (firma y caducidad) y se decodifica una sola vez por petición con verifyToken
+ * <p>
+ * En el modo sin estado (jwt.stateless.enabled) el token lleva además el id, los roles y la versión del usuario,
+ * así el filtro puede autenticar sin consultar la base de datos
  */
 @Service
 @Slf4j
 public class JwtServiceImpl implements JwtService {
-    @Value("${jwt.secret}")
-    private String jwtSigningKey;
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_ROLES = "roles";
+    private static final String CLAIM_VERSION = "ver";
 
-    @Value("${jwt.expiration}")
-    private Long jwtExpiration;
+    private final Long jwtExpiration;
+    private final boolean stateless;
+    private final Algorithm algorithm;
+    private final JWTVerifier verifier;
+
+    @Autowired
+    public JwtServiceImpl(@Value("${jwt.secret}") String jwtSigningKey, @Value("${jwt.expiration}") Long jwtExpiration,
+                          @Value("${jwt.stateless.enabled:false}") boolean stateless) {
+        this.jwtExpiration = jwtExpiration;
+        this.stateless = stateless;
+        this.algorithm = Algorithm.HMAC512(getSigningKey(jwtSigningKey));
+        this.verifier = JWT.require(algorithm).build();
+    }
 
     /**
      * Extrae el nombre de usuario del token
      *
      * @param token token
      * @return nombre de usuario
+     * @throws JWTVerificationException si el token no es válido o ha expirado
      */
     @Override
     public String extractUserName(String token) {
-        log.info("Extracting username from token " + token);
-        return extractClaim(token, DecodedJWT::getSubject);
+        return verifyToken(token).username();
     }
 
     /**
@@ -46,35 +68,45 @@ public class JwtServiceImpl implements JwtService {
      */
     @Override
     public String generateToken(UserDetails userDetails) {
-        log.info("Generating token for user " + userDetails.getUsername());
+        log.debug("Generating token for user {}", userDetails.getUsername());
         return generateToken(new HashMap<>(), userDetails);
     }
 
     /**
-     * Genera un token con datos extra
+     * Comprueba que el token es válido y pertenece al usuario
      *
      * @param token       token
      * @param userDetails Detalles del usuario
-     * @return token
+     * @return true si la firma es correcta, no ha expirado y es del usuario
      */
     @Override
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        log.info("Validating token " + token + " for user " + userDetails.getUsername());
-        final String userName = extractUserName(token);
-        return (userName.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        try {
+            return verifyToken(token).username().equals(userDetails.getUsername());
+        } catch (JWTVerificationException e) {
+            return false;
+        }
     }
 
     /**
-     * Genera un token con datos extra
+     * Verifica la firma y la caducidad del token y devuelve sus datos
      *
-     * @param token           token
-     * @param claimsResolvers Detalles del usuario
-     * @return token
+     * @param token token
+     * @return datos del token
+     * @throws JWTVerificationException si el token no es válido o ha expirado
      */
-    private <T> T extractClaim(String token, Function<DecodedJWT, T> claimsResolvers) {
-        log.info("Extracting claim from token " + token);
-        final DecodedJWT decodedJWT = JWT.decode(token);
-        return claimsResolvers.apply(decodedJWT);
+    @Override
+    public JwtClaims verifyToken(String token) throws JWTVerificationException {
+        log.debug("Verifying token {}", mask(token));
+        DecodedJWT decodedJWT = verifier.verify(token);
+        return new JwtClaims(
+                decodedJWT.getSubject(),
+                decodedJWT.getIssuedAt(),
+                decodedJWT.getExpiresAt(),
+                decodedJWT.getClaim(CLAIM_USER_ID).asLong(),
+                decodedJWT.getClaim(CLAIM_ROLES).asList(String.class),
+                decodedJWT.getClaim(CLAIM_VERSION).asLong()
+        );
     }
 
     /**
@@ -86,38 +118,22 @@ public class JwtServiceImpl implements JwtService {
      */
     private String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
         // Preparamos el token
-        Algorithm algorithm = Algorithm.HMAC512(getSigningKey());
         Date now = new Date();
         Date expirationDate = new Date(now.getTime() + (1000 * jwtExpiration));
 
-        return JWT.create()
+        var builder = JWT.create()
                 .withHeader(createHeader())
                 .withSubject(userDetails.getUsername())
                 .withIssuedAt(now)
                 .withExpiresAt(expirationDate)
-                .withClaim("extraClaims", extraClaims)
-                .sign(algorithm);
-    }
-
-    /**
-     * Comprueba si el token ha expirado
-     *
-     * @param token token
-     * @return true si ha expirado
-     */
-    private boolean isTokenExpired(String token) {
-        Date expirationDate = extractExpiration(token);
-        return expirationDate.before(new Date());
-    }
-
-    /**
-     * Extrae la fecha de expiración del token
-     *
-     * @param token token
-     * @return fecha de expiración
-     */
-    private Date extractExpiration(String token) {
-        return extractClaim(token, DecodedJWT::getExpiresAt);
+                .withClaim("extraClaims", extraClaims);
+        // En el modo sin estado el token lleva lo que el filtro necesita para no consultar el usuario
+        if (stateless && userDetails instanceof User user && user.getRoles() != null) {
+            builder.withClaim(CLAIM_USER_ID, user.getId())
+                    .withClaim(CLAIM_ROLES, user.getRoles().stream().map(Enum::name).toList())
+                    .withClaim(CLAIM_VERSION, RevokedUserVersions.versionOf(user));
+        }
+        return builder.sign(algorithm);
     }
 
     /**
@@ -134,10 +150,23 @@ public class JwtServiceImpl implements JwtService {
     /**
      * Obtiene la clave de firma
      *
+     * @param jwtSigningKey secreto de la configuración
      * @return clave de firma
      */
-    private byte[] getSigningKey() {
+    private static byte[] getSigningKey(String jwtSigningKey) {
         return Base64.getEncoder().encode(jwtSigningKey.getBytes());
+    }
 
+    /**
+     * Oculta el token para los logs, solo se dejan los últimos caracteres de la firma para poder distinguirlos
+     *
+     * @param token token
+     * @return token enmascarado
+     */
+    static String mask(String token) {
+        if (token == null || token.length() <= 16) {
+            return "****";
+        }
+        return "****" + token.substring(token.length() - 6);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,137 @@
+package dev.joseluisgs.tiendaapidaw.rest.auth.services.users;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caché de usuarios autenticados por username, para que el filtro JWT no consulte la base de datos en cada petición
+ * <p>
+ * Cada entrada caduca a los ttl ms o cuando caduca el token con el que se cargó, lo que ocurra antes
+ * El servicio de usuarios la invalida al modificar o borrar un usuario
+ * <p>
+ * Se guarda una generación que aumenta con cada invalidación: si un usuario se invalida mientras otra petición
+ * lo está cargando, esa petición no lo guarda, así no se queda en la caché el estado anterior
+ */
+@Component
+@Slf4j
+public class AuthPrincipalCache {
+    private final long ttl;
+    private final int maxSize;
+    private final Map<String, CachedPrincipal> principals = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Crea la caché
+     *
+     * @param ttl     Tiempo máximo (ms) que se guarda un usuario, con 0 no se guarda nada
+     * @param maxSize Número máximo de usuarios guardados
+     */
+    @Autowired
+    public AuthPrincipalCache(@Value("${jwt.principal-cache.ttl:300000}") long ttl,
+                              @Value("${jwt.principal-cache.max-size:10000}") int maxSize) {
+        this.ttl = ttl;
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * Devuelve el usuario de la caché o lo carga y lo guarda
+     *
+     * @param username        Nombre de usuario
+     * @param tokenExpiration Caducidad del token de la petición (null si no tiene)
+     * @param loader          Carga el usuario si no está en la caché
+     * @return Usuario
+     */
+    public UserDetails getOrLoad(String username, Date tokenExpiration, Function<String, UserDetails> loader) {
+        long now = System.currentTimeMillis();
+        CachedPrincipal cached = principals.get(username);
+        if (cached != null) {
+            if (cached.expiresAt > now) {
+                return cached.user;
+            }
+            principals.remove(username, cached);
+        }
+        long loadGeneration = generation.get();
+        UserDetails user = loader.apply(username);
+        long expiresAt = now + ttl;
+        if (tokenExpiration != null) {
+            expiresAt = Math.min(expiresAt, tokenExpiration.getTime());
+        }
+        if (ttl > 0 && expiresAt > now) {
+            if (principals.size() >= maxSize) {
+                evictExpired(now);
+            }
+            principals.put(username, new CachedPrincipal(user, expiresAt));
+            // Si se ha invalidado algo mientras lo cargábamos puede ser este usuario, mejor no guardarlo
+            if (generation.get() != loadGeneration) {
+                principals.remove(username);
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Quita un usuario de la caché, si hay una transacción en curso se vuelve a quitar al confirmarla
+     * para que no se quede guardado el estado anterior leído antes del commit
+     *
+     * @param username Nombre de usuario
+     */
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        log.debug("Invalidando usuario autenticado en caché: {}", username);
+        evict(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(username);
+                }
+            });
+        }
+    }
+
+    /**
+     * Vacía la caché
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        principals.clear();
+    }
+
+    /**
+     * Número de usuarios guardados
+     *
+     * @return Usuarios en caché
+     */
+    public int size() {
+        return principals.size();
+    }
+
+    private void evict(String username) {
+        generation.incrementAndGet();
+        principals.remove(username);
+    }
+
+    private void evictExpired(long now) {
+        principals.values().removeIf(cached -> cached.expiresAt <= now);
+        // Si todos siguen vigentes se vacía, es más barato que llevar el orden de uso
+        if (principals.size() >= maxSize) {
+            principals.clear();
+        }
+    }
+
+    private record CachedPrincipal(UserDetails user, long expiresAt) {
+    }
+}
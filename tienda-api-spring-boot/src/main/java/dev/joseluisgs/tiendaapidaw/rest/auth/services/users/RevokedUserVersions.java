@@ -0,0 +1,154 @@
+package dev.joseluisgs.tiendaapidaw.rest.auth.services.users;
+
+import dev.joseluisgs.tiendaapidaw.rest.users.models.User;
+import dev.joseluisgs.tiendaapidaw.rest.users.repositories.UserVersion;
+import dev.joseluisgs.tiendaapidaw.rest.users.repositories.UsersRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versiones revocadas de los usuarios para el modo JWT sin estado, en el que no se consulta el usuario en cada petición
+ * <p>
+ * La versión de un usuario es su fecha de modificación en ms, va dentro del token al emitirlo
+ * Por cada usuario modificado o borrado se guarda la versión mínima que se acepta, los tokens con una anterior están revocados
+ * (un usuario borrado no acepta ninguna)
+ * <p>
+ * El servicio de usuarios avisa al modificar o borrar, y cada cierto tiempo se leen de la base de datos los usuarios
+ * modificados desde la última lectura, así se enteran también los demás nodos
+ * Los borrados físicos en otro nodo no se pueden leer, sus tokens duran como mucho hasta que caducan
+ * Las entradas se descartan cuando ya han caducado todos los tokens que podían revocar
+ */
+@Component
+@Slf4j
+public class RevokedUserVersions {
+    // Margen al leer los cambios por si los relojes de los nodos no van a la par
+    private static final long REFRESH_OVERLAP = 5_000;
+
+    private final UsersRepository usersRepository;
+    private final boolean enabled;
+    private final long tokenLifetime;
+    private final Map<Long, Revocation> revocations = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastRefresh;
+
+    /**
+     * Crea la lista de revocaciones
+     *
+     * @param usersRepository Repositorio de usuarios para leer los cambios
+     * @param enabled         Si está activo el modo sin estado, si no lo está no se lee nada de la base de datos
+     * @param jwtExpiration   Duración de los tokens (s)
+     */
+    @Autowired
+    public RevokedUserVersions(UsersRepository usersRepository,
+                               @Value("${jwt.stateless.enabled:false}") boolean enabled,
+                               @Value("${jwt.expiration}") long jwtExpiration) {
+        this.usersRepository = usersRepository;
+        this.enabled = enabled;
+        this.tokenLifetime = jwtExpiration * 1000;
+        // Al arrancar se leen los cambios de toda la vida de un token
+        this.lastRefresh = LocalDateTime.now().minusSeconds(jwtExpiration);
+    }
+
+    /**
+     * Versión de un usuario, la que se guarda en el token
+     *
+     * @param user Usuario
+     * @return Fecha de modificación en ms
+     */
+    public static long versionOf(User user) {
+        return versionOf(user.getUpdatedAt());
+    }
+
+    private static long versionOf(LocalDateTime updatedAt) {
+        return updatedAt == null ? 0 : updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Revoca los tokens de un usuario anteriores a una versión
+     *
+     * @param userId     Id del usuario
+     * @param minVersion Versión mínima que se acepta
+     */
+    public void revoke(Long userId, long minVersion) {
+        long now = System.currentTimeMillis();
+        revocations.merge(userId, new Revocation(minVersion, now),
+                (previous, current) -> new Revocation(Math.max(previous.minVersion, current.minVersion), now));
+    }
+
+    /**
+     * Revoca los tokens de un usuario modificado, los emitidos con sus datos anteriores
+     *
+     * @param user Usuario ya guardado
+     */
+    public void revoke(User user) {
+        revoke(user.getId(), versionOf(user));
+    }
+
+    /**
+     * Revoca todos los tokens de un usuario borrado
+     *
+     * @param userId Id del usuario
+     */
+    public void revokeAll(Long userId) {
+        revoke(userId, Long.MAX_VALUE);
+    }
+
+    /**
+     * Comprueba si un token está revocado
+     *
+     * @param userId  Id del usuario del token
+     * @param version Versión del usuario del token
+     * @return true si el usuario ha cambiado o se ha borrado después de emitir el token
+     */
+    public boolean isRevoked(Long userId, long version) {
+        Revocation revocation = revocations.get(userId);
+        return revocation != null && version < revocation.minVersion;
+    }
+
+    /**
+     * Lee los usuarios modificados o borrados desde la última lectura y descarta las revocaciones que ya no hacen falta
+     */
+    @Scheduled(fixedDelayString = "${jwt.stateless.revocation-refresh:60000}", initialDelay = 0)
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            for (UserVersion user : usersRepository.findByUpdatedAtAfter(lastRefresh.minus(REFRESH_OVERLAP, ChronoUnit.MILLIS))) {
+                if (Boolean.TRUE.equals(user.getIsDeleted())) {
+                    revokeAll(user.getId());
+                } else {
+                    revoke(user.getId(), versionOf(user.getUpdatedAt()));
+                }
+            }
+            lastRefresh = now;
+        } catch (RuntimeException e) {
+            // Se vuelve a intentar desde la misma fecha en la siguiente lectura
+            log.warn("No se pueden leer los usuarios modificados para revocar sus tokens: {}", e.getMessage());
+        }
+        long expired = System.currentTimeMillis() - tokenLifetime;
+        revocations.values().removeIf(revocation -> revocation.recordedAt < expired);
+        log.debug("Versiones de usuario revocadas: {}", revocations.size());
+    }
+
+    /**
+     * Número de usuarios con tokens revocados
+     *
+     * @return Usuarios en la lista
+     */
+    public int size() {
+        return revocations.size();
+    }
+
+    private record Revocation(long minVersion, long recordedAt) {
+    }
+}
@@ -0,0 +1,52 @@
+package dev.joseluisgs.tiendaapidaw.rest.categorias.repositories;
+
+import dev.joseluisgs.tiendaapidaw.rest.categorias.models.Categoria;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Criterios de búsqueda de categorías con Specification (Criteria)
+ * Los usan el listado de la API REST y las conexiones de GraphQL, así filtran igual
+ */
+public final class CategoriaSpecifications {
+
+    private CategoriaSpecifications() {
+    }
+
+    /**
+     * Criterio de búsqueda de categorías, cada filtro vacío no filtra
+     *
+     * @param nombre    Nombre de la categoría (contiene, sin mayúsculas)
+     * @param isDeleted Si está borrada o no
+     * @return Criterio con todos los filtros
+     */
+    public static Specification<Categoria> filtro(Optional<String> nombre, Optional<Boolean> isDeleted) {
+        // Criterio de búsqueda por nombre
+        Specification<Categoria> specNombreCategoria = (root, query, criteriaBuilder) ->
+                nombre.map(m -> criteriaBuilder.like(criteriaBuilder.lower(root.get("nombre")), "%" + m.toLowerCase() + "%"))
+                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
+
+        // Criterio de búsqueda por borrado
+        Specification<Categoria> specIsDeleted = (root, query, criteriaBuilder) ->
+                isDeleted.map(m -> criteriaBuilder.equal(root.get("isDeleted"), m))
+                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
+
+        // Combinamos las especificaciones
+        return Specification.allOf(
+                specNombreCategoria,
+                specIsDeleted
+        );
+    }
+
+    /**
+     * Categorías con id mayor que el dado, para paginar por clave (keyset) ordenando por id
+     *
+     * @param id Id de la última categoría de la página anterior
+     * @return Criterio
+     */
+    public static Specification<Categoria> idMayorQue(UUID id) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.greaterThan(root.<UUID>get("id"), id);
+    }
+}
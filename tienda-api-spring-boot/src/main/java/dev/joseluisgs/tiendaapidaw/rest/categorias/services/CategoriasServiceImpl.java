@@ -5,6 +5,7 @@ import dev.joseluisgs.tiendaapidaw.rest.categorias.exceptions.CategoriaConflict;
 import dev.joseluisgs.tiendaapidaw.rest.categorias.exceptions.CategoriaNotFound;
 import dev.joseluisgs.tiendaapidaw.rest.categorias.mappers.CategoriasMapper;
 import dev.joseluisgs.tiendaapidaw.rest.categorias.models.Categoria;
+import dev.joseluisgs.tiendaapidaw.rest.categorias.repositories.CategoriaSpecifications;
 import dev.joseluisgs.tiendaapidaw.rest.categorias.repositories.CategoriasRepository;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
@@ -37,21 +38,7 @@ public class CategoriasServiceImpl implements CategoriasService {
     @Override
     public Page<Categoria> findAll(Optional<String> nombre, Optional<Boolean> isDeleted, Pageable pageable) {
         log.info("Buscando todos las categorias con nombre: " + nombre + " y borrados: " + isDeleted);
-        // Criterio de búsqueda por nombre
-        Specification<Categoria> specNombreCategoria = (root, query, criteriaBuilder) ->
-                nombre.map(m -> criteriaBuilder.like(criteriaBuilder.lower(root.get("nombre")), "%" + m.toLowerCase() + "%"))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        // Criterio de búsqueda por borrado
-        Specification<Categoria> specIsDeleted = (root, query, criteriaBuilder) ->
-                isDeleted.map(m -> criteriaBuilder.equal(root.get("isDeleted"), m))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        // Combinamos las especificaciones
-        Specification<Categoria> criterio = Specification.allOf(
-                specNombreCategoria,
-                specIsDeleted
-        );
+        Specification<Categoria> criterio = CategoriaSpecifications.filtro(nombre, isDeleted);
         return categoriasRepository.findAll(criterio, pageable);
     }
 
@@ -0,0 +1,179 @@
+package dev.joseluisgs.tiendaapidaw.rest.productos.controllers;
+
+import dev.joseluisgs.tiendaapidaw.rest.productos.dto.ProductoResponse;
+import dev.joseluisgs.tiendaapidaw.rest.productos.services.ProductosService;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.ChunkedUploadService;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.UploadSession;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.Parameters;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Subida de imágenes grandes de productos por partes
+ * <p>
+ * Se crea la subida con el nombre y el tamaño, se envían las partes en orden con PUT indicando la posición (offset)
+ * y al terminar se asigna la imagen al producto. Si se corta la conexión se consulta la subida con GET
+ * y se continúa desde la posición que devuelve
+ */
+@RestController
+@Slf4j
+@RequestMapping("${api.version}/productos/imagen/{id}/uploads")
+@Tag(name = "Productos", description = "Endpoint de Productos de nuestra tienda")
+public class ProductosImageUploadRestController {
+    // Extensiones de imagen permitidas, las mismas que en la subida multipart
+    private static final List<String> PERMITTED_EXTENSIONS = List.of("png", "jpg", "jpeg", "gif");
+
+    private final ProductosService productosService;
+    private final ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    public ProductosImageUploadRestController(ProductosService productosService, ChunkedUploadService chunkedUploadService) {
+        this.productosService = productosService;
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    /**
+     * Crea una subida por partes para la imagen de un producto
+     *
+     * @param id       Id del producto
+     * @param filename Nombre de la imagen
+     * @param size     Tamaño total de la imagen en bytes
+     * @return Subida creada, en Location está su dirección
+     */
+    @Operation(summary = "Crea una subida por partes de la imagen de un producto")
+    @Parameters({
+            @Parameter(name = "id", description = "Identificador del producto", example = "1", required = true),
+            @Parameter(name = "filename", description = "Nombre de la imagen", example = "foto.png", required = true),
+            @Parameter(name = "size", description = "Tamaño de la imagen en bytes", required = true)
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Subida creada"),
+            @ApiResponse(responseCode = "400", description = "Imagen no válida"),
+            @ApiResponse(responseCode = "404", description = "Producto no encontrado"),
+    })
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')") // Solo los administradores pueden acceder
+    public ResponseEntity<UploadSession> create(@PathVariable Long id, @RequestParam String filename, @RequestParam long size) {
+        log.info("Creando subida por partes de la imagen del producto " + id);
+        // Si no existe lanza excepción
+        productosService.findById(id);
+        String extension = StringUtils.getFilenameExtension(filename);
+        if (extension == null || !PERMITTED_EXTENSIONS.contains(extension.toLowerCase(Locale.ROOT))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No se ha enviado una imagen para el producto válida");
+        }
+        UploadSession session = chunkedUploadService.create(id.toString(), filename, size);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{uploadId}").buildAndExpand(session.id()).toUri();
+        return ResponseEntity.created(location).body(session);
+    }
+
+    /**
+     * Envía una parte de la imagen, el cuerpo se escribe directamente en el fichero de la subida
+     *
+     * @param id       Id del producto
+     * @param uploadId Id de la subida
+     * @param offset   Posición de la parte, tiene que ser la posición actual de la subida
+     * @param request  Petición, su cuerpo es la parte
+     * @return Subida con la nueva posición
+     */
+    @Operation(summary = "Envía una parte de la imagen de un producto")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Parte recibida"),
+            @ApiResponse(responseCode = "404", description = "Subida no encontrada"),
+            @ApiResponse(responseCode = "409", description = "La posición no es la actual de la subida o hay otra petición en curso"),
+    })
+    @PutMapping(value = "/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')") // Solo los administradores pueden acceder
+    public ResponseEntity<UploadSession> append(@PathVariable Long id, @PathVariable String uploadId,
+                                                @RequestParam long offset, HttpServletRequest request) throws IOException {
+        UploadSession session = sessionOf(id, uploadId);
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            // Sin Content-Length se acepta hasta el final de la subida
+            length = session.size() - offset;
+        }
+        try (InputStream content = request.getInputStream()) {
+            return ResponseEntity.ok(chunkedUploadService.append(uploadId, offset, content, length));
+        }
+    }
+
+    /**
+     * Estado de una subida, offset es donde tiene que continuar el cliente
+     *
+     * @param id       Id del producto
+     * @param uploadId Id de la subida
+     * @return Subida
+     */
+    @Operation(summary = "Consulta una subida por partes")
+    @GetMapping("/{uploadId}")
+    @PreAuthorize("hasRole('ADMIN')") // Solo los administradores pueden acceder
+    public ResponseEntity<UploadSession> status(@PathVariable Long id, @PathVariable String uploadId) {
+        return ResponseEntity.ok(sessionOf(id, uploadId));
+    }
+
+    /**
+     * Termina la subida y asigna la imagen al producto
+     *
+     * @param id       Id del producto
+     * @param uploadId Id de la subida
+     * @return Producto actualizado
+     */
+    @Operation(summary = "Termina una subida por partes y la asigna como imagen del producto")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Producto actualizado"),
+            @ApiResponse(responseCode = "404", description = "Subida o producto no encontrado"),
+            @ApiResponse(responseCode = "409", description = "Faltan partes por enviar o hay otra petición en curso"),
+    })
+    @PostMapping("/{uploadId}/complete")
+    @PreAuthorize("hasRole('ADMIN')") // Solo los administradores pueden acceder
+    public ResponseEntity<ProductoResponse> complete(@PathVariable Long id, @PathVariable String uploadId) {
+        sessionOf(id, uploadId);
+        log.info("Terminando subida por partes " + uploadId + " de la imagen del producto " + id);
+        // El fichero recibido se mueve al almacenamiento y se asigna al producto
+        return ResponseEntity.ok(chunkedUploadService.complete(uploadId,
+                (image, filename) -> productosService.updateImage(id, image, filename, true)));
+    }
+
+    /**
+     * Cancela una subida
+     *
+     * @param id       Id del producto
+     * @param uploadId Id de la subida
+     * @return Sin contenido
+     */
+    @Operation(summary = "Cancela una subida por partes")
+    @DeleteMapping("/{uploadId}")
+    @PreAuthorize("hasRole('ADMIN')") // Solo los administradores pueden acceder
+    public ResponseEntity<Void> abort(@PathVariable Long id, @PathVariable String uploadId) {
+        sessionOf(id, uploadId);
+        chunkedUploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private UploadSession sessionOf(Long id, String uploadId) {
+        UploadSession session = chunkedUploadService.find(uploadId);
+        if (!id.toString().equals(session.owner())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No existe la subida " + uploadId + " para el producto " + id);
+        }
+        return session;
+    }
+}
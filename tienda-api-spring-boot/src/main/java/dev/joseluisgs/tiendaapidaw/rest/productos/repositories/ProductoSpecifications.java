@@ -0,0 +1,83 @@
+package dev.joseluisgs.tiendaapidaw.rest.productos.repositories;
+
+import dev.joseluisgs.tiendaapidaw.rest.categorias.models.Categoria;
+import dev.joseluisgs.tiendaapidaw.rest.productos.models.Producto;
+import jakarta.persistence.criteria.Join;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Optional;
+
+/**
+ * Criterios de búsqueda de productos con Specification (Criteria)
+ * Los usan el listado de la API REST y las conexiones de GraphQL, así filtran igual
+ */
+public final class ProductoSpecifications {
+
+    private ProductoSpecifications() {
+    }
+
+    /**
+     * Criterio de búsqueda de productos, cada filtro vacío no filtra
+     *
+     * @param marca     Marca del producto (contiene, sin mayúsculas)
+     * @param categoria Categoría del producto (contiene, sin mayúsculas)
+     * @param modelo    Modelo del producto (contiene, sin mayúsculas)
+     * @param isDeleted Si está borrado o no
+     * @param precioMax Precio máximo
+     * @param stockMin  Stock mínimo
+     * @return Criterio con todos los filtros
+     */
+    public static Specification<Producto> filtro(Optional<String> marca, Optional<String> categoria, Optional<String> modelo, Optional<Boolean> isDeleted, Optional<Double> precioMax, Optional<Double> stockMin) {
+        // Criterio de búsqueda por marca
+        Specification<Producto> specMarcaProducto = (root, query, criteriaBuilder) ->
+                marca.map(m -> criteriaBuilder.like(criteriaBuilder.lower(root.get("marca")), "%" + m.toLowerCase() + "%")) // Buscamos por marca
+                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true))); // Si no hay marca, no filtramos
+
+        // Criterio de búsqueda por categoría
+        Specification<Producto> specCategoriaProducto = (root, query, criteriaBuilder) ->
+                categoria.map(c -> {
+                    Join<Producto, Categoria> categoriaJoin = root.join("categoria"); // Join con categoría
+                    return criteriaBuilder.like(criteriaBuilder.lower(categoriaJoin.get("nombre")), "%" + c.toLowerCase() + "%"); // Buscamos por nombre
+                }).orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true))); // Si no hay categoría, no filtramos
+
+        // Criterio de búsqueda por isDeleted
+        Specification<Producto> specIsDeleted = (root, query, criteriaBuilder) ->
+                isDeleted.map(d -> criteriaBuilder.equal(root.get("isDeleted"), d))
+                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
+
+        // Criterio de búsqueda por modelo
+        Specification<Producto> specModeloProducto = (root, query, criteriaBuilder) ->
+                modelo.map(m -> criteriaBuilder.like(criteriaBuilder.lower(root.get("modelo")), "%" + m.toLowerCase() + "%"))
+                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
+
+        // Criterio de búsqueda por precioMax, es decir tiene que ser menor o igual
+        Specification<Producto> specPrecioMaxProducto = (root, query, criteriaBuilder) ->
+                precioMax.map(p -> criteriaBuilder.lessThanOrEqualTo(root.get("precio"), p))
+                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
+
+        // Criterio de búsqueda por stockMin, es decir tiene que ser menor o igual
+        Specification<Producto> specStockMinProducto = (root, query, criteriaBuilder) ->
+                stockMin.map(s -> criteriaBuilder.lessThanOrEqualTo(root.get("stock"), s))
+                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
+
+        // 🚀 NUEVA FORMA: Usar allOf() en lugar de where() (deprecado desde Spring Data JPA 3.5.0)
+        return Specification.allOf(
+                specMarcaProducto,
+                specCategoriaProducto,
+                specIsDeleted,
+                specModeloProducto,
+                specPrecioMaxProducto,
+                specStockMinProducto
+        );
+    }
+
+    /**
+     * Productos con id mayor que el dado, para paginar por clave (keyset) ordenando por id
+     *
+     * @param id Id del último producto de la página anterior
+     * @return Criterio
+     */
+    public static Specification<Producto> idMayorQue(Long id) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.greaterThan(root.get("id"), id);
+    }
+}
@@ -1,17 +1,24 @@
 package dev.joseluisgs.tiendaapidaw.rest.productos.repositories;
 
-import dev.joseluisgs.tiendaapidaw.rest.categorias.models.Categoria;
 import dev.joseluisgs.tiendaapidaw.rest.productos.models.Producto;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 /**
  * Creamos el repositorio extendéndolo de JPA, siguiendo DAO
@@ -36,8 +43,23 @@ public interface ProductosRepository extends JpaRepository<Producto, Long>, JpaS
     // Buscamos si existe una categoria con el mismo id
     boolean existsByCategoriaId(UUID id);
 
-    // Añade este método para buscar productos por categoría
-    List<Producto> findByCategoria(Categoria categoria);
+    // Ids de como mucho "limite" productos de cada categoría (los de menor id), de varias categorías en una sola consulta
+    // ROW_NUMBER numera los productos dentro de cada categoría, así ninguna pasa del límite (resolvers por lotes de GraphQL)
+    @Query(value = """
+            SELECT t.id FROM (
+                SELECT p.id, ROW_NUMBER() OVER (PARTITION BY p.categoria_id ORDER BY p.id) AS fila
+                FROM PRODUCTOS p WHERE p.categoria_id IN (:categorias)
+            ) t WHERE t.fila <= :limite""", nativeQuery = true)
+    List<Long> findIdsByCategoriaIn(Collection<UUID> categorias, int limite);
+
+    // Productos por id con la categoría ya cargada
+    @EntityGraph(attributePaths = "categoria")
+    List<Producto> findByIdIn(Collection<Long> ids, Sort sort);
 
     List<Producto> findByCreatedAtBetween(LocalDateTime createdAtAfter, LocalDateTime createdAtBefore);
+
+    // Imágenes de todos los productos, se leen por bloques sin cargar las entidades (necesita una transacción abierta)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT p.imagen FROM Producto p WHERE p.imagen IS NOT NULL")
+    Stream<String> streamAllImagenes();
 }
@@ -0,0 +1,180 @@
+package dev.joseluisgs.tiendaapidaw.rest.productos.services;
+
+import dev.joseluisgs.tiendaapidaw.rest.productos.repositories.ProductosRepository;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.ImageVariantService;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.StorageService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Recolector de imágenes huérfanas: ficheros del almacenamiento que no son la imagen de ningún producto
+ * <p>
+ * Quedan al fallar una transacción después de guardar la imagen o al caerse el servidor entre borrar el producto y su imagen
+ * Cada cierto tiempo se leen en streaming las imágenes de los productos (solo el nombre del fichero, también si se guardó
+ * la URL completa) y se quitan los ficheros que no estén entre ellas y sean más antiguos que el periodo de gracia,
+ * así no se toca una imagen recién subida cuyo producto aún no se ha guardado
+ * <p>
+ * Por defecto se mueven a cuarentena (.orphans) en vez de borrarse, y como mucho maxFilesPerSecond por segundo
+ * para no competir con la entrega de ficheros. Usa un hilo propio, no el planificador compartido de @Scheduled
+ */
+@Component
+@Slf4j
+public class OrphanImageCollector {
+    private final StorageService storageService;
+    private final ImageVariantService imageVariantService;
+    private final ProductosRepository productosRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long interval;
+    private final long gracePeriod;
+    private final boolean quarantine;
+    private final int maxFilesPerSecond;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Crea el recolector
+     *
+     * @param enabled           Si se ejecuta periódicamente
+     * @param interval          Tiempo (ms) entre dos pasadas, la primera también espera este tiempo
+     * @param gracePeriod       Antigüedad mínima (ms) de un fichero para quitarlo
+     * @param quarantine        Mover a cuarentena en vez de borrar
+     * @param maxFilesPerSecond Ficheros quitados por segundo como mucho, 0 sin límite
+     */
+    @Autowired
+    public OrphanImageCollector(StorageService storageService, ImageVariantService imageVariantService,
+                                ProductosRepository productosRepository, PlatformTransactionManager transactionManager,
+                                @Value("${upload.gc.enabled:true}") boolean enabled,
+                                @Value("${upload.gc.interval:3600000}") long interval,
+                                @Value("${upload.gc.grace-period:86400000}") long gracePeriod,
+                                @Value("${upload.gc.quarantine:true}") boolean quarantine,
+                                @Value("${upload.gc.max-files-per-second:20}") int maxFilesPerSecond) {
+        this.storageService = storageService;
+        this.imageVariantService = imageVariantService;
+        this.productosRepository = productosRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.interval = interval;
+        this.gracePeriod = gracePeriod;
+        this.quarantine = quarantine;
+        this.maxFilesPerSecond = maxFilesPerSecond;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled || interval <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "orphan-image-collector");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void run() {
+        try {
+            collect();
+        } catch (RuntimeException e) {
+            // Si falla se vuelve a intentar en la siguiente pasada
+            log.warn("Error al recoger imágenes huérfanas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Hace una pasada: busca los ficheros sin producto más antiguos que el periodo de gracia y los quita
+     *
+     * @return Resultado de la pasada
+     */
+    public OrphanCollectionReport collect() {
+        long start = System.currentTimeMillis();
+        Set<String> referenced = referencedFilenames();
+        long cutoff = start - gracePeriod;
+        AtomicInteger scanned = new AtomicInteger();
+        List<String> orphans;
+        try (Stream<Path> files = storageService.loadAll()) {
+            orphans = files.map(path -> path.getFileName().toString())
+                    .peek(name -> scanned.incrementAndGet())
+                    .filter(name -> !referenced.contains(name))
+                    .filter(name -> storageService.find(name).map(file -> file.lastModified() < cutoff).orElse(false))
+                    .toList();
+        }
+        long pause = maxFilesPerSecond > 0 ? 1000 / maxFilesPerSecond : 0;
+        int discarded = 0;
+        for (String orphan : orphans) {
+            // Se vuelve a comprobar con el fichero bloqueado, se ha podido subir otra vez desde que se listó
+            if (!storageService.discard(orphan, quarantine, cutoff)) {
+                continue;
+            }
+            imageVariantService.deleteVariants(orphan);
+            discarded++;
+            if (pause > 0 && !pause(pause)) {
+                break;
+            }
+        }
+        OrphanCollectionReport report = new OrphanCollectionReport(scanned.get(), referenced.size(), orphans.size(),
+                discarded, System.currentTimeMillis() - start);
+        log.info("Imágenes huérfanas: {}", report);
+        return report;
+    }
+
+    /**
+     * Nombres de fichero de las imágenes de los productos, leídos en streaming dentro de una transacción de solo lectura
+     */
+    private Set<String> referencedFilenames() {
+        return transactionTemplate.execute(status -> {
+            try (Stream<String> imagenes = productosRepository.streamAllImagenes()) {
+                return imagenes.map(StringUtils::getFilename).filter(Objects::nonNull).collect(Collectors.toSet());
+            }
+        });
+    }
+
+    private boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Resultado de una pasada del recolector
+     *
+     * @param scanned    Ficheros revisados
+     * @param referenced Imágenes distintas usadas por los productos
+     * @param orphans    Ficheros huérfanos encontrados
+     * @param discarded  Ficheros quitados (menos que los huérfanos si se ha interrumpido o alguno se ha renovado)
+     * @param duration   Duración (ms)
+     */
+    public record OrphanCollectionReport(int scanned, int referenced, int orphans, int discarded, long duration) {
+    }
+}
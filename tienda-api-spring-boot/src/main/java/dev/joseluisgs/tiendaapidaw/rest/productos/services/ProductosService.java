@@ -8,6 +8,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -27,5 +28,7 @@ public interface ProductosService {
 
     ProductoResponse updateImage(Long id, MultipartFile image, Boolean withUrl);
 
+    ProductoResponse updateImage(Long id, Path image, String filename, Boolean withUrl);
+
     List<Producto> findByCreatedAtBetween(LocalDateTime ultimaEjecucion, LocalDateTime ahora);
 }
@@ -1,7 +1,6 @@
 package dev.joseluisgs.tiendaapidaw.rest.productos.services;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.joseluisgs.tiendaapidaw.config.websockets.SubscriptionIndex;
 import dev.joseluisgs.tiendaapidaw.config.websockets.WebSocketConfig;
 import dev.joseluisgs.tiendaapidaw.config.websockets.WebSocketHandler;
 import dev.joseluisgs.tiendaapidaw.rest.categorias.models.Categoria;
@@ -14,12 +13,13 @@ import dev.joseluisgs.tiendaapidaw.rest.productos.exceptions.ProductoBadUuid;
 import dev.joseluisgs.tiendaapidaw.rest.productos.exceptions.ProductoNotFound;
 import dev.joseluisgs.tiendaapidaw.rest.productos.mappers.ProductoMapper;
 import dev.joseluisgs.tiendaapidaw.rest.productos.models.Producto;
+import dev.joseluisgs.tiendaapidaw.rest.productos.repositories.ProductoSpecifications;
 import dev.joseluisgs.tiendaapidaw.rest.productos.repositories.ProductosRepository;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.ImageVariantService;
 import dev.joseluisgs.tiendaapidaw.rest.storage.services.StorageService;
 import dev.joseluisgs.tiendaapidaw.websockets.notifications.dto.ProductoNotificationResponse;
 import dev.joseluisgs.tiendaapidaw.websockets.notifications.mapper.ProductoNotificationMapper;
 import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
-import jakarta.persistence.criteria.Join;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheConfig;
@@ -32,10 +32,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 /**
  * Implementación de nuestro servicio de productos
@@ -50,24 +52,23 @@ public class ProductosServiceImpl implements ProductosService {
     private final CategoriasRepository categoriasRepository;
     private final ProductoMapper productosMapper;
     private final StorageService storageService;
+    private final ImageVariantService imageVariantService;
 
     private final WebSocketConfig webSocketConfig;
-    private final ObjectMapper mapper;
     private final ProductoNotificationMapper productoNotificationMapper;
     private WebSocketHandler webSocketService;
 
     @Autowired
-    public ProductosServiceImpl(ProductosRepository productosRepository, CategoriasRepository categoriasRepository, ProductoMapper productoMapper, StorageService storageService, WebSocketConfig webSocketConfig, ProductoNotificationMapper productoNotificationMapper) {
+    public ProductosServiceImpl(ProductosRepository productosRepository, CategoriasRepository categoriasRepository, ProductoMapper productoMapper, StorageService storageService, ImageVariantService imageVariantService, WebSocketConfig webSocketConfig, ProductoNotificationMapper productoNotificationMapper) {
         this.productosRepository = productosRepository;
         this.categoriasRepository = categoriasRepository;
         this.productosMapper = productoMapper;
         this.storageService = storageService;
+        this.imageVariantService = imageVariantService;
         this.webSocketConfig = webSocketConfig;
         // Para enviar mensajes a los clientes ws normales
         webSocketService = webSocketConfig.webSocketProductosHandler();
-        mapper = new ObjectMapper();
         this.productoNotificationMapper = productoNotificationMapper;
-        // mapper.registerModule(new JavaTimeModule()); // Necesario para que funcione LocalDateTime
     }
 
     /**
@@ -84,56 +85,7 @@ public class ProductosServiceImpl implements ProductosService {
      */
     @Override
     public Page<ProductoResponse> findAll(Optional<String> marca, Optional<String> categoria, Optional<String> modelo, Optional<Boolean> isDeleted, Optional<Double> precioMax, Optional<Double> stockMin, Pageable pageable) {
-        // Criterio de búsqueda por marca
-        Specification<Producto> specMarcaProducto = (root, query, criteriaBuilder) ->
-                marca.map(m -> criteriaBuilder.like(criteriaBuilder.lower(root.get("marca")), "%" + m.toLowerCase() + "%")) // Buscamos por marca
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true))); // Si no hay marca, no filtramos
-
-        // Criterio de búsqueda por categoría
-        Specification<Producto> specCategoriaProducto = (root, query, criteriaBuilder) ->
-                categoria.map(c -> {
-                    Join<Producto, Categoria> categoriaJoin = root.join("categoria"); // Join con categoría
-                    return criteriaBuilder.like(criteriaBuilder.lower(categoriaJoin.get("nombre")), "%" + c.toLowerCase() + "%"); // Buscamos por nombre
-                }).orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true))); // Si no hay categoría, no filtramos
-
-        // Criterio de búsqueda por isDeleted
-        Specification<Producto> specIsDeleted = (root, query, criteriaBuilder) ->
-                isDeleted.map(d -> criteriaBuilder.equal(root.get("isDeleted"), d))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        // Criterio de búsqueda por modelo
-        Specification<Producto> specModeloProducto = (root, query, criteriaBuilder) ->
-                modelo.map(m -> criteriaBuilder.like(criteriaBuilder.lower(root.get("modelo")), "%" + m.toLowerCase() + "%"))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        // Criterio de búsqueda por precioMax, es decir tiene que ser menor o igual
-        Specification<Producto> specPrecioMaxProducto = (root, query, criteriaBuilder) ->
-                precioMax.map(p -> criteriaBuilder.lessThanOrEqualTo(root.get("precio"), p))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        // Criterio de búsqueda por stockMin, es decir tiene que ser menor o igual
-        Specification<Producto> specStockMinProducto = (root, query, criteriaBuilder) ->
-                stockMin.map(s -> criteriaBuilder.lessThanOrEqualTo(root.get("stock"), s))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        /*// Combinamos las especificaciones
-        // Deprecado desde Spring Data JPA 3.5.0 el where
-        Specification<Producto> criterio = Specification.where(specMarcaProducto)
-                .and(specCategoriaProducto)
-                .and(specIsDeleted)
-                .and(specModeloProducto)
-                .and(specPrecioMaxProducto)
-                .and(specStockMinProducto);*/
-
-        // 🚀 NUEVA FORMA: Usar allOf() en lugar de where()
-        Specification<Producto> criterio = Specification.allOf(
-                specMarcaProducto,
-                specCategoriaProducto,
-                specIsDeleted,
-                specModeloProducto,
-                specPrecioMaxProducto,
-                specStockMinProducto
-        );
+        Specification<Producto> criterio = ProductoSpecifications.filtro(marca, categoria, modelo, isDeleted, precioMax, stockMin);
 
         return productosRepository.findAll(criterio, pageable).map(productosMapper::toProductResponse);
     }
@@ -261,6 +213,7 @@ public class ProductosServiceImpl implements ProductosService {
         // Borramos la imagen del producto si existe y es distinta a la por defecto
         if (prod.getImagen() != null && !prod.getImagen().equals(Producto.IMAGE_DEFAULT)) {
             storageService.delete(prod.getImagen());
+            imageVariantService.deleteVariants(prod.getImagen());
         }
         // Enviamos la notificación a los clientes ws
         onChange(Notificacion.Tipo.DELETE, prod);
@@ -278,14 +231,37 @@ public class ProductosServiceImpl implements ProductosService {
     @CachePut(key = "#result.id")
     @Transactional
     public ProductoResponse updateImage(Long id, MultipartFile image, Boolean withUrl) {
+        return replaceImage(id, () -> storageService.store(image), withUrl);
+    }
+
+    /**
+     * Actualiza la imagen de un producto con un fichero que ya está en disco (subida por partes)
+     *
+     * @param id       Id del producto a actualizar
+     * @param image    Fichero con la imagen, se mueve al almacenamiento
+     * @param filename Nombre original de la imagen
+     * @return Producto actualizado
+     * @throws ProductoNotFound Si no lo encuentra
+     */
+    @Override
+    @CachePut(key = "#result.id")
+    @Transactional
+    public ProductoResponse updateImage(Long id, Path image, String filename, Boolean withUrl) {
+        return replaceImage(id, () -> storageService.store(image, filename), withUrl);
+    }
+
+    private ProductoResponse replaceImage(Long id, Supplier<String> store, Boolean withUrl) {
         log.info("Actualizando imagen de producto por id: " + id);
         // Si no existe lanza excepción, por eso ya llamamos a lo que hemos implementado antes
         var productoActual = productosRepository.findById(id).orElseThrow(() -> new ProductoNotFound(id));
         // Borramos la imagen anterior si existe y no es la de por defecto
         if (productoActual.getImagen() != null && !productoActual.getImagen().equals(Producto.IMAGE_DEFAULT)) {
             storageService.delete(productoActual.getImagen());
+            imageVariantService.deleteVariants(productoActual.getImagen());
         }
-        String imageStored = storageService.store(image);
+        String imageStored = store.get();
+        // Miniaturas y tamaños intermedios en segundo plano
+        imageVariantService.generateAsync(imageStored);
         // Si quiero la url completa
         String imageUrl = !withUrl ? imageStored : storageService.getUrl(imageStored);
         //storageService.getUrl(imageStored); // Si quiero la url completa
@@ -321,33 +297,34 @@ public class ProductosServiceImpl implements ProductosService {
             webSocketService = this.webSocketConfig.webSocketProductosHandler();
         }
 
-        try {
-            Notificacion<ProductoNotificationResponse> notificacion = new Notificacion<>(
-                    "PRODUCTOS",
-                    tipo,
-                    productoNotificationMapper.toProductNotificationDto(data),
-                    LocalDateTime.now().toString()
-            );
-
-            String json = mapper.writeValueAsString((notificacion));
+        Notificacion<ProductoNotificationResponse> notificacion = new Notificacion<>(
+                "PRODUCTOS",
+                tipo,
+                productoNotificationMapper.toProductNotificationDto(data),
+                LocalDateTime.now().toString()
+        );
+        // Clave del producto, con la política COALESCE un cliente lento solo recibe su último estado
+        String coalesceKey = "PRODUCTOS:" + data.getId();
+        // Temas de la notificación, solo la reciben los clientes suscritos a ellos (o a todo)
+        List<String> topics = data.getCategoria() != null
+                ? List.of(SubscriptionIndex.topic("producto", data.getId()), SubscriptionIndex.topic("categoria", data.getCategoria().getNombre()))
+                : List.of(SubscriptionIndex.topic("producto", data.getId()));
 
-            log.info("Enviando mensaje a los clientes ws");
-            // Enviamos el mensaje a los clientes ws con un hilo, si hay muchos clientes, puede tardar
-            // no bloqueamos el hilo principal que atiende las peticiones http
-            Thread senderThread = new Thread(() -> {
-                try {
-                    webSocketService.sendMessage(json);
-                } catch (Exception e) {
-                    log.error("Error al enviar el mensaje a través del servicio WebSocket", e);
-                }
-            });
-            senderThread.setName("WebsocketProducto-" + data.getId());
-            senderThread.setDaemon(true); // Para que no impida que la aplicación se cierre
-            senderThread.start();
-            log.info("Hilo de websocket iniciado: {}", data.getId());
-        } catch (JsonProcessingException e) {
-            log.error("Error al convertir la notificación a JSON", e);
-        }
+        log.info("Enviando mensaje a los clientes ws");
+        // Enviamos el mensaje a los clientes ws con un hilo, si hay muchos clientes, puede tardar
+        // no bloqueamos el hilo principal que atiende las peticiones http
+        // El handler serializa la notificación una única vez para todos los clientes
+        Thread senderThread = new Thread(() -> {
+            try {
+                webSocketService.sendNotification(notificacion, coalesceKey, topics);
+            } catch (Exception e) {
+                log.error("Error al enviar el mensaje a través del servicio WebSocket", e);
+            }
+        });
+        senderThread.setName("WebsocketProducto-" + data.getId());
+        senderThread.setDaemon(true); // Para que no impida que la aplicación se cierre
+        senderThread.start();
+        log.info("Hilo de websocket iniciado: {}", data.getId());
     }
 
     // Para los test
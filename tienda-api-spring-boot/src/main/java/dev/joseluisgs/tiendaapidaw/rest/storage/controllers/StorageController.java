@@ -1,15 +1,32 @@
 package dev.joseluisgs.tiendaapidaw.rest.storage.controllers;
 
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.HotFileCache;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.ImageVariantService;
 import dev.joseluisgs.tiendaapidaw.rest.storage.services.StorageService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Pattern;
 
 @RestController
 @Slf4j
@@ -17,38 +34,200 @@ import java.io.IOException;
 @RequestMapping("/storage")
 // @PreAuthorize("hasRole('USER')") // OJO, si tenemos la pagina web, no podemos poner esto (no lo vemos!)
 public class StorageController {
+    // Atributos de Tomcat para enviar el fichero con sendfile, sin copiarlo en memoria
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Los ficheros subidos se guardan como <timestamp>_<nombre> o <sha256>.<extensión>, nunca cambian de contenido
+    private static final Pattern IMMUTABLE_FILENAME = Pattern.compile("^(\\d{13}_.+|[0-9a-f]{64}(\\.[^.]+)?)$");
+
     private final StorageService storageService;
+    private final ImageVariantService imageVariantService;
+    private final HotFileCache hotFileCache;
+    private final String immutableCacheControl;
+    private final String cacheControl;
 
     @Autowired
-    public StorageController(StorageService storageService) {
+    public StorageController(StorageService storageService, ImageVariantService imageVariantService, HotFileCache hotFileCache,
+                             @Value("${upload.cache.immutable-max-age:31536000}") long immutableMaxAge,
+                             @Value("${upload.cache.max-age:0}") long maxAge) {
         this.storageService = storageService;
+        this.imageVariantService = imageVariantService;
+        this.hotFileCache = hotFileCache;
+        this.immutableCacheControl = "public, max-age=" + immutableMaxAge + ", immutable";
+        // Sin tiempo de caché el navegador guarda el fichero pero lo revalida siempre con el ETag
+        this.cacheControl = maxAge > 0 ? "public, max-age=" + maxAge : "no-cache";
     }
 
     /**
      * Obtiene un fichero del sistema de almacenamiento
+     * <p>
+     * Envía ETag (tamaño y fecha de modificación), Last-Modified y Cache-Control, y responde 304 si el cliente ya lo tiene
+     * Admite un rango de bytes (206) y, si el fichero está en disco, se envía sin pasar por la memoria de la aplicación
+     * Con w se envía la versión reducida de la imagen con ese ancho (o el configurado más cercano por encima)
+     * y solo se marca como inmutable si se ha servido de verdad la versión: si se sirve el original mientras
+     * se genera, la misma URL tendrá luego otro contenido
+     * Los ficheros pequeños más pedidos se sirven desde la caché en memoria con sus cabeceras ya calculadas
      *
      * @param filename Nombre del fichero a obtener
-     * @return Fichero
+     * @param width    Ancho en píxeles de la imagen, opcional
+     * @param request  Petición
+     * @param response Respuesta donde se escribe el fichero
+     * @throws IOException si no se puede leer o enviar el fichero
      */
     @GetMapping(value = "{filename:.+}")
-    @ResponseBody
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename, HttpServletRequest request) {
-        Resource file = storageService.loadAsResource(filename);
+    public void serveFile(@PathVariable String filename, @RequestParam(name = "w", required = false) Integer width,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Resource file = width != null
+                ? imageVariantService.loadVariant(filename, width)
+                : storageService.loadAsResource(filename);
+
+        HotFileCache.CachedFile cached = file.isFile()
+                ? hotFileCache.get(file.getFile().toPath(), () -> contentTypeOf(request, filename))
+                : null;
 
-        String contentType = null;
+        // La memoria del fichero en caché no se libera mientras se envía, aunque otro lo descarte a la vez
         try {
-            contentType = request.getServletContext().getMimeType(file.getFile().getAbsolutePath());
-        } catch (IOException ex) {
-            log.info("No se puede determinar el tipo de contenido del fichero");
+            long length = cached != null ? cached.size() : file.contentLength();
+            long lastModified = cached != null ? cached.lastModified() : lastModified(file);
+            // ETag fuerte: cambia si cambia el tamaño o la fecha de modificación
+            String etag = lastModified >= 0 ? HotFileCache.etagOf(length, lastModified) : null;
+
+            boolean immutable = IMMUTABLE_FILENAME.matcher(filename).matches()
+                    && (width == null || imageVariantService.isVariant(file));
+            response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? immutableCacheControl : cacheControl);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            // Pone el ETag y Last-Modified, y si el cliente ya lo tiene deja la respuesta en 304 (o 412 con If-Match)
+            if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+                return;
+            }
+
+            response.setContentType(cached != null ? cached.contentType() : contentTypeOf(request, filename));
+
+            long start = 0;
+            long end = length - 1;
+            HttpRange range = requestedRange(request, etag, lastModified);
+            if (range != null) {
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+            long count = end - start + 1;
+            response.setContentLengthLong(count);
+
+            if (HttpMethod.HEAD.matches(request.getMethod()) || count <= 0) {
+                return;
+            }
+            if (cached != null) {
+                hotFileCache.write(cached, response.getOutputStream(), start, count);
+            } else {
+                write(file, start, count, request, response);
+            }
+        } finally {
+            hotFileCache.release(cached);
         }
+    }
+
+    private String contentTypeOf(HttpServletRequest request, String filename) {
+        String contentType = request.getServletContext().getMimeType(filename);
+        return contentType != null ? contentType : "application/octet-stream";
+    }
 
-        if (contentType == null) {
-            contentType = "application/octet-stream";
+    /**
+     * Rango pedido por el cliente, solo se atiende un rango, si hay varios o la cabecera no es válida se envía el fichero entero
+     * Con If-Range solo se atiende si el fichero no ha cambiado
+     *
+     * @param request      Petición
+     * @param etag         ETag actual del fichero
+     * @param lastModified Fecha de modificación actual del fichero
+     * @return Rango o null si hay que enviar el fichero entero
+     */
+    private HttpRange requestedRange(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
         }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            boolean isEtag = ifRange.startsWith("\"") || ifRange.startsWith("W/");
+            if (isEtag ? !ifRange.equals(etag) : lastModified < 0 || ifRangeDate(request) != lastModified) {
+                return null;
+            }
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.getFirst() : null;
+        } catch (IllegalArgumentException e) {
+            log.debug("Cabecera Range no válida: {}", rangeHeader);
+            return null;
+        }
+    }
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .body(file);
+    /**
+     * Fecha de modificación del fichero, truncada a segundos que es la precisión de las cabeceras HTTP
+     *
+     * @param file Fichero
+     * @return Fecha en ms o -1 si el recurso no la tiene (no está en disco)
+     */
+    private long lastModified(Resource file) {
+        try {
+            return file.lastModified() / 1000 * 1000;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private long ifRangeDate(HttpServletRequest request) {
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Escribe los bytes del fichero en la respuesta
+     * <p>
+     * Con Tomcat se delega en sendfile: el sistema operativo copia del fichero al socket sin pasar por la JVM
+     * Si no, los ficheros en disco se copian con FileChannel.transferTo y el resto de recursos (otros almacenes) con su stream
+     */
+    private void write(Resource file, long start, long count, HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+        if (file.isFile()) {
+            File source = file.getFile();
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, source.getAbsolutePath());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, start + count);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+                long position = start;
+                long remaining = count;
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        break;
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            }
+            return;
+        }
+        try (InputStream in = file.getInputStream()) {
+            OutputStream out = response.getOutputStream();
+            StreamUtils.copyRange(in, out, start, start + count - 1);
+        }
     }
 
    /* @PostMapping(value = "", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
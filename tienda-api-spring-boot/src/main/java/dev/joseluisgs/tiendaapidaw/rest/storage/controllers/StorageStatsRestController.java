@@ -0,0 +1,37 @@
+package dev.joseluisgs.tiendaapidaw.rest.storage.controllers;
+
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.HotFileCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Métricas del almacenamiento, van en la API (con JWT) porque /storage es público
+ */
+@RestController
+@Slf4j
+@RequestMapping("${api.version}/storage") // Es la ruta del controlador
+public class StorageStatsRestController {
+    private final HotFileCache hotFileCache;
+
+    @Autowired
+    public StorageStatsRestController(HotFileCache hotFileCache) {
+        this.hotFileCache = hotFileCache;
+    }
+
+    /**
+     * Métricas de la caché en memoria de ficheros: aciertos, fallos, ratio de aciertos, bytes servidos y ocupación
+     *
+     * @return Estadísticas de la caché
+     */
+    @GetMapping("/cache")
+    @PreAuthorize("hasRole('ADMIN')") // Solo los admin pueden acceder
+    public ResponseEntity<HotFileCache.HotFileCacheStats> getCacheStats() {
+        log.info("Obteniendo métricas de la caché de ficheros");
+        return ResponseEntity.ok(hotFileCache.getStats());
+    }
+}
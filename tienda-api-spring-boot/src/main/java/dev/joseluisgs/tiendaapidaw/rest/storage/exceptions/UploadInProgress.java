@@ -0,0 +1,18 @@
+package dev.joseluisgs.tiendaapidaw.rest.storage.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.Serial;
+
+// Nos permite devolver un estado cuando salta la excepción
+@ResponseStatus(HttpStatus.CONFLICT)
+public class UploadInProgress extends StorageException {
+    // Por si debemos serializar
+    @Serial
+    private static final long serialVersionUID = 43876691117560213L;
+
+    public UploadInProgress(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,24 @@
+package dev.joseluisgs.tiendaapidaw.rest.storage.exceptions;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.Serial;
+
+// Nos permite devolver un estado cuando salta la excepción
+@ResponseStatus(HttpStatus.CONFLICT)
+@Getter
+public class UploadOffsetConflict extends StorageException {
+    // Por si debemos serializar
+    @Serial
+    private static final long serialVersionUID = 43876691117560212L;
+
+    // Posición en la que tiene que continuar el cliente
+    private final long offset;
+
+    public UploadOffsetConflict(String mensaje, long offset) {
+        super(mensaje);
+        this.offset = offset;
+    }
+}
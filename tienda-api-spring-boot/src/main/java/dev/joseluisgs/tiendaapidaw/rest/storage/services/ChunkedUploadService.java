@@ -0,0 +1,61 @@
+package dev.joseluisgs.tiendaapidaw.rest.storage.services;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.function.BiFunction;
+
+/**
+ * Subidas de ficheros por partes que se pueden reanudar
+ * <p>
+ * Se crea la subida con el tamaño total, se envían las partes en orden indicando su posición
+ * y al terminar se guarda en el almacenamiento. Si se corta la conexión se consulta la posición y se sigue desde ahí
+ */
+public interface ChunkedUploadService {
+
+    /**
+     * Crea una subida
+     *
+     * @param owner    A qué pertenece el fichero
+     * @param filename Nombre original del fichero
+     * @param size     Tamaño total en bytes
+     * @return Subida creada
+     */
+    UploadSession create(String owner, String filename, long size);
+
+    /**
+     * Añade una parte en la posición indicada, que tiene que ser la posición actual de la subida
+     *
+     * @param id      Id de la subida
+     * @param offset  Posición de la parte
+     * @param content Contenido de la parte
+     * @param length  Bytes de la parte
+     * @return Subida con la nueva posición
+     */
+    UploadSession append(String id, long offset, InputStream content, long length);
+
+    /**
+     * Estado de una subida
+     *
+     * @param id Id de la subida
+     * @return Subida
+     */
+    UploadSession find(String id);
+
+    /**
+     * Termina la subida, el fichero recibido se entrega a quien lo va a guardar (por ejemplo con StorageService.store)
+     * Si falla la subida sigue abierta y se puede volver a intentar
+     *
+     * @param id         Id de la subida
+     * @param onComplete Recibe el fichero completo y el nombre original
+     * @param <T>        Resultado de onComplete
+     * @return Resultado de onComplete
+     */
+    <T> T complete(String id, BiFunction<Path, String, T> onComplete);
+
+    /**
+     * Cancela una subida y borra lo recibido
+     *
+     * @param id Id de la subida
+     */
+    void abort(String id);
+}
@@ -0,0 +1,255 @@
+package dev.joseluisgs.tiendaapidaw.rest.storage.services;
+
+import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.StorageBadRequest;
+import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.StorageInternal;
+import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.StorageNotFound;
+import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.UploadInProgress;
+import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.UploadOffsetConflict;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * Subidas por partes guardadas en el directorio .uploads del almacenamiento
+ * <p>
+ * Cada subida tiene un fichero .part con lo recibido y un .upload con sus datos, así se puede reanudar
+ * aunque se reinicie el servidor. La posición actual es el tamaño del .part
+ * <p>
+ * Cada parte se escribe directamente desde la petición en su posición del fichero con FileChannel.transferFrom,
+ * sin pasar por un fichero temporal de multipart. Si la conexión se corta a mitad de una parte se queda lo recibido
+ * Al terminar, el .part se mueve al almacenamiento sin copiarlo (están en el mismo sistema de ficheros)
+ * Las subidas sin actividad durante upload.chunked.expiration se borran
+ * <p>
+ * Solo se atiende una petición a la vez por subida y nunca se espera a otra: como una parte se lee de la red
+ * mientras se escribe, si llega otra petición para la misma subida se responde 409 y el cliente reintenta
+ */
+@Service
+@Slf4j
+public class ChunkedUploadServiceImpl implements ChunkedUploadService {
+    private static final String UPLOADS_DIR = ".uploads";
+
+    private final StorageService storageService;
+    private final long maxSize;
+    private final long expiration;
+    // Subidas con una petición en curso, así no se escriben dos partes a la vez ni se borra una que se está escribiendo
+    private final Set<String> busy = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Crea el servicio
+     *
+     * @param storageService Almacenamiento, las subidas en curso van en su directorio .uploads
+     * @param maxSize        Tamaño máximo de un fichero (bytes)
+     * @param expiration     Tiempo (ms) sin recibir partes tras el que se borra una subida
+     */
+    @Autowired
+    public ChunkedUploadServiceImpl(StorageService storageService,
+                                    @Value("${upload.chunked.max-size:104857600}") long maxSize,
+                                    @Value("${upload.chunked.expiration:86400000}") long expiration) {
+        this.storageService = storageService;
+        this.maxSize = maxSize;
+        this.expiration = expiration;
+    }
+
+    @Override
+    public UploadSession create(String owner, String filename, long size) {
+        if (size <= 0 || size > maxSize) {
+            throw new StorageBadRequest("El tamaño de la subida tiene que estar entre 1 y " + maxSize + " bytes");
+        }
+        if (filename == null || filename.isBlank() || filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
+            throw new StorageBadRequest("Nombre de fichero no válido " + filename);
+        }
+        String id = UUID.randomUUID().toString();
+        Properties metadata = new Properties();
+        metadata.setProperty("owner", owner);
+        metadata.setProperty("filename", filename);
+        metadata.setProperty("size", Long.toString(size));
+        try {
+            Files.createFile(partOf(id));
+            try (Writer writer = Files.newBufferedWriter(metadataOf(id))) {
+                metadata.store(writer, null);
+            }
+        } catch (IOException e) {
+            throw new StorageInternal("No se puede crear la subida " + e);
+        }
+        log.info("Subida por partes {} creada para {} ({} bytes)", id, filename, size);
+        return new UploadSession(id, owner, filename, size, 0);
+    }
+
+    @Override
+    public UploadSession append(String id, long offset, InputStream content, long length) {
+        String key = acquire(id);
+        try {
+            UploadSession session = find(id);
+            if (offset != session.offset()) {
+                throw new UploadOffsetConflict("La subida " + id + " continúa en la posición " + session.offset(), session.offset());
+            }
+            if (length < 0 || offset + length > session.size()) {
+                throw new StorageBadRequest("La parte se pasa del tamaño de la subida (" + session.size() + " bytes)");
+            }
+            long received = 0;
+            try (FileChannel channel = FileChannel.open(partOf(id), StandardOpenOption.WRITE)) {
+                ReadableByteChannel source = Channels.newChannel(content);
+                while (received < length) {
+                    long written = channel.transferFrom(source, offset + received, length - received);
+                    if (written <= 0) {
+                        // Se ha cortado la conexión, se queda lo recibido y el cliente sigue desde ahí
+                        break;
+                    }
+                    received += written;
+                }
+            } catch (IOException e) {
+                log.warn("Parte de la subida {} interrumpida tras {} bytes: {}", id, received, e.getMessage());
+            }
+            return withOffset(session, offset + received);
+        } finally {
+            busy.remove(key);
+        }
+    }
+
+    @Override
+    public UploadSession find(String id) {
+        Path metadataFile = metadataOf(id);
+        if (!Files.exists(metadataFile)) {
+            throw new StorageNotFound("No existe la subida " + id);
+        }
+        Properties metadata = new Properties();
+        try (Reader reader = Files.newBufferedReader(metadataFile)) {
+            metadata.load(reader);
+            return new UploadSession(id, metadata.getProperty("owner"), metadata.getProperty("filename"),
+                    Long.parseLong(metadata.getProperty("size")), Files.size(partOf(id)));
+        } catch (IOException | RuntimeException e) {
+            throw new StorageNotFound("No se puede leer la subida " + id);
+        }
+    }
+
+    @Override
+    public <T> T complete(String id, BiFunction<Path, String, T> onComplete) {
+        String key = acquire(id);
+        try {
+            UploadSession session = find(id);
+            if (!session.isComplete()) {
+                throw new UploadOffsetConflict("Faltan " + (session.size() - session.offset()) + " bytes de la subida " + id,
+                        session.offset());
+            }
+            T result = onComplete.apply(partOf(id), session.filename());
+            deleteQuietly(partOf(id));
+            deleteQuietly(metadataOf(id));
+            log.info("Subida por partes {} terminada", id);
+            return result;
+        } finally {
+            busy.remove(key);
+        }
+    }
+
+    @Override
+    public void abort(String id) {
+        String key = acquire(id);
+        try {
+            find(id);
+            deleteQuietly(partOf(id));
+            deleteQuietly(metadataOf(id));
+            log.info("Subida por partes {} cancelada", id);
+        } finally {
+            busy.remove(key);
+        }
+    }
+
+    /**
+     * Borra las subidas abandonadas
+     */
+    @Scheduled(fixedDelayString = "${upload.chunked.cleanup-interval:3600000}")
+    public void removeExpired() {
+        long expired = System.currentTimeMillis() - expiration;
+        try (Stream<Path> files = Files.list(storageService.workDirectory(UPLOADS_DIR))) {
+            files.filter(file -> file.getFileName().toString().endsWith(".part"))
+                    .filter(file -> lastModified(file) < expired)
+                    .forEach(part -> {
+                        String id = part.getFileName().toString().replace(".part", "");
+                        // Si tiene una petición en curso no está abandonada
+                        if (!busy.add(id)) {
+                            return;
+                        }
+                        try {
+                            log.info("Borrando subida por partes abandonada {}", id);
+                            deleteQuietly(part);
+                            deleteQuietly(metadataOf(id));
+                        } finally {
+                            busy.remove(id);
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("No se pueden revisar las subidas abandonadas: {}", e.getMessage());
+        }
+    }
+
+    private UploadSession withOffset(UploadSession session, long offset) {
+        return new UploadSession(session.id(), session.owner(), session.filename(), session.size(), offset);
+    }
+
+    private Path partOf(String id) {
+        return storageService.workDirectory(UPLOADS_DIR).resolve(validId(id) + ".part");
+    }
+
+    private Path metadataOf(String id) {
+        return storageService.workDirectory(UPLOADS_DIR).resolve(validId(id) + ".upload");
+    }
+
+    private String validId(String id) {
+        try {
+            // Solo UUID, así nunca se sale del directorio de subidas
+            return UUID.fromString(id).toString();
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new StorageNotFound("No existe la subida " + id);
+        }
+    }
+
+    /**
+     * Marca la subida como ocupada sin esperar a nadie
+     *
+     * @param id Id de la subida
+     * @return Id normalizado, hay que quitarlo de busy al terminar
+     * @throws UploadInProgress si ya hay otra petición en curso para la subida
+     */
+    private String acquire(String id) {
+        String key = validId(id);
+        if (!busy.add(key)) {
+            throw new UploadInProgress("La subida " + id + " tiene otra petición en curso, inténtalo de nuevo");
+        }
+        return key;
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("No se puede borrar {}: {}", file, e.getMessage());
+        }
+    }
+}
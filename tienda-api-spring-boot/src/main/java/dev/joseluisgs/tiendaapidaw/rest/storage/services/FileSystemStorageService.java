@@ -5,9 +5,12 @@ import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.StorageBadRequest;
 import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.StorageInternal;
 import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.StorageNotFound;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
 import org.springframework.util.StringUtils;
@@ -16,11 +19,27 @@ import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBui
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 
@@ -32,19 +51,59 @@ import java.util.stream.Stream;
  * ESTO SE REALIZA ASÍ PARA NO HACER MÁS COMPLEJO EL EJEMPLO.
  * EN UNA APLICACIÓN EN PRODUCCIÓN POSIBLEMENTE SE UTILICE
  * UN ALMACÉN REMOTO, solo habría que cambiar la implementación de estos métodos.
+ * <p>
+ * Con upload.content-addressed los ficheros se guardan por su contenido: el nombre es el SHA-256 y la extensión,
+ * así la misma imagen subida muchas veces se guarda una sola vez y su URL nunca cambia de contenido
+ * Se cuentan las referencias de cada fichero (en .refs) y delete solo lo borra cuando no queda ninguna
+ * El recuento es por proceso, si varios nodos comparten el directorio pueden borrar un fichero que otro aún usa
+ * <p>
+ * Con upload.sharded.enabled cada fichero va en un subdirectorio según el hash de su nombre (ab/cd/nombre),
+ * así ningún directorio tiene cientos de miles de entradas. Los ficheros que sigan en la raíz se siguen encontrando,
+ * y con upload.sharded.migrate se mueven a su subdirectorio al arrancar
+ * <p>
+ * Al arrancar se recorre el almacenamiento en paralelo y se guarda un índice en memoria (nombre, tamaño, fecha y tipo),
+ * que se mantiene al guardar y borrar: listar y comprobar si existe un fichero no tocan el disco
+ * Si no está en el índice (lo ha guardado otro nodo) se busca en disco y se añade
  *
  * @author Equipo de desarrollo de Spring
  */
 @Service
 @Slf4j
 public class FileSystemStorageService implements StorageService {
+    // Nombre de los ficheros guardados por contenido: SHA-256 en hexadecimal y extensión
+    private static final Pattern CONTENT_ADDRESSED_FILENAME = Pattern.compile("^[0-9a-f]{64}(\\.[^.]+)?$");
+    private static final String REFERENCES_DIR = ".refs";
+    private static final String TEMP_DIR = ".tmp";
+    private static final String ORPHANS_DIR = ".orphans";
+    private static final String DEFAULT_CONTENT_TYPE = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    private static final int LOCK_STRIPES = 64;
 
     // Directorio raiz de nuestro almacén de ficheros
     private final Path rootLocation;
+    private final boolean contentAddressed;
+    private final boolean sharded;
+    private final boolean migrate;
+    private final HotFileCache hotFileCache;
+    // Cerrojos por fichero para que no se crucen el recuento de referencias y el borrado
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // Índice de los ficheros almacenados por nombre
+    private final Map<String, StoredFile> index = new ConcurrentHashMap<>();
 
 
-    public FileSystemStorageService(@Value("${upload.root-location}") String path) {
+    @Autowired
+    public FileSystemStorageService(@Value("${upload.root-location}") String path,
+                                    @Value("${upload.content-addressed:false}") boolean contentAddressed,
+                                    @Value("${upload.sharded.enabled:false}") boolean sharded,
+                                    @Value("${upload.sharded.migrate:false}") boolean migrate,
+                                    HotFileCache hotFileCache) {
         this.rootLocation = Paths.get(path);
+        this.contentAddressed = contentAddressed;
+        this.sharded = sharded;
+        this.migrate = migrate;
+        this.hotFileCache = hotFileCache;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
     }
 
     /**
@@ -74,11 +133,25 @@ public class FileSystemStorageService implements StorageService {
                         "No se puede almacenar un fichero con una ruta relativa fuera del directorio actual "
                                 + filename);
             }
+            if (contentAddressed) {
+                Path temp = Files.createTempFile(rootLocation.resolve(TEMP_DIR), "upload-", ".tmp");
+                try {
+                    MessageDigest digest = sha256();
+                    try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+                        Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    return storeByContent(temp, digest, extension, filename);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
 
             try (InputStream inputStream = file.getInputStream()) {
                 log.info("Almacenando fichero " + filename + " como " + storedFilename);
-                Files.copy(inputStream, this.rootLocation.resolve(storedFilename),
-                        StandardCopyOption.REPLACE_EXISTING);
+                Path target = locationOf(storedFilename);
+                Files.createDirectories(target.getParent());
+                Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+                addToIndex(storedFilename, target);
                 return storedFilename;
             }
 
@@ -89,20 +162,244 @@ public class FileSystemStorageService implements StorageService {
     }
 
     /**
-     * Método que devuelve la ruta de todos los ficheros que hay
-     * en el almacenamiento secundario del proyecto.
+     * Almacena un fichero que ya está en disco (por ejemplo una subida por partes), se mueve sin copiarlo
+     * Tiene que estar dentro del directorio de almacenamiento para que el movimiento sea atómico
+     *
+     * @param file             fichero a almacenar, deja de existir
+     * @param originalFilename nombre original del fichero
+     * @return nombre del fichero almacenado
+     * @throws StorageBadRequest si el fichero está vacío o el nombre contiene caracteres no permitidos
+     * @throws StorageInternal   si hay un error al almacenar el fichero
      */
     @Override
-    public Stream<Path> loadAll() {
-        log.info("Cargando todos los ficheros almacenados");
+    public String store(Path file, String originalFilename) {
+        String filename = StringUtils.cleanPath(originalFilename);
+        String extension = StringUtils.getFilenameExtension(filename);
+        String justFilename = filename.replace("." + extension, "");
+        String storedFilename = System.currentTimeMillis() + "_" + justFilename.replaceAll("\\s+", "") + "." + extension;
+
         try {
-            return Files.walk(this.rootLocation, 1)
-                    .filter(path -> !path.equals(this.rootLocation))
-                    .map(this.rootLocation::relativize);
+            if (Files.size(file) == 0) {
+                throw new StorageBadRequest("Fichero vacío " + filename);
+            }
+            if (filename.contains("..")) {
+                throw new StorageBadRequest(
+                        "No se puede almacenar un fichero con una ruta relativa fuera del directorio actual "
+                                + filename);
+            }
+            if (contentAddressed) {
+                // Solo se lee para calcular el hash, no se copia
+                MessageDigest digest = sha256();
+                try (InputStream inputStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+                    inputStream.transferTo(OutputStream.nullOutputStream());
+                }
+                String stored = storeByContent(file, digest, extension, filename);
+                Files.deleteIfExists(file);
+                return stored;
+            }
+            log.info("Almacenando fichero " + filename + " como " + storedFilename);
+            Path target = locationOf(storedFilename);
+            Files.createDirectories(target.getParent());
+            moveAtomically(file, target);
+            addToIndex(storedFilename, target);
+            return storedFilename;
         } catch (IOException e) {
-            throw new StorageInternal("Fallo al leer ficheros almacenados " + e);
+            throw new StorageInternal("Fallo al almacenar fichero " + filename + " " + e);
         }
+    }
 
+    /**
+     * Guarda el fichero con el nombre de su contenido
+     * El SHA-256 se ha calculado al escribir o leer el fichero, que se mueve a su nombre definitivo de forma atómica,
+     * si ya existe no se mueve y solo se suma una referencia
+     *
+     * @param source           fichero con el contenido, si no se mueve lo borra quien llama
+     * @param digest           SHA-256 del contenido
+     * @param extension        extensión del fichero original
+     * @param originalFilename nombre original para los logs
+     * @return nombre del fichero almacenado
+     * @throws IOException si no se puede escribir el fichero
+     */
+    private String storeByContent(Path source, MessageDigest digest, String extension, String originalFilename) throws IOException {
+        String storedFilename = HexFormat.of().formatHex(digest.digest())
+                + (extension != null ? "." + extension.toLowerCase(Locale.ROOT) : "");
+        synchronized (lockFor(storedFilename)) {
+            Optional<StoredFile> existing = find(storedFilename);
+            if (existing.isPresent()) {
+                log.info("Fichero " + originalFilename + " ya almacenado como " + storedFilename);
+                // Se renueva la fecha para que el recolector de huérfanos no lo borre antes de guardar el producto
+                Files.setLastModifiedTime(existing.get().path(), FileTime.fromMillis(System.currentTimeMillis()));
+                addToIndex(storedFilename, existing.get().path());
+            } else {
+                log.info("Almacenando fichero " + originalFilename + " como " + storedFilename);
+                Path target = locationOf(storedFilename);
+                Files.createDirectories(target.getParent());
+                moveAtomically(source, target);
+                addToIndex(storedFilename, target);
+            }
+            writeReferences(storedFilename, readReferences(storedFilename) + 1);
+        }
+        return storedFilename;
+    }
+
+    private void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Todas las JVM tienen que incluir SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Object lockFor(String storedFilename) {
+        return locks[Math.floorMod(storedFilename.hashCode(), LOCK_STRIPES)];
+    }
+
+    private Path referencesOf(String storedFilename) {
+        return shardOf(rootLocation.resolve(REFERENCES_DIR), storedFilename);
+    }
+
+    private long readReferences(String storedFilename) throws IOException {
+        Path references = referencesOf(storedFilename);
+        if (!Files.exists(references)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(references).trim());
+        } catch (NumberFormatException e) {
+            log.warn("Recuento de referencias no válido para " + storedFilename);
+            return 0;
+        }
+    }
+
+    private void writeReferences(String storedFilename, long count) throws IOException {
+        Path references = referencesOf(storedFilename);
+        Files.createDirectories(references.getParent());
+        Files.writeString(references, Long.toString(count));
+    }
+
+    /**
+     * Ruta donde se guarda un fichero nuevo
+     *
+     * @param filename nombre del fichero
+     * @return ruta en la raíz o en su subdirectorio
+     */
+    private Path locationOf(String filename) {
+        return shardOf(rootLocation, filename);
+    }
+
+    /**
+     * Subdirectorio de un fichero: los dos primeros bytes del SHA-256 de su nombre en hexadecimal (ab/cd)
+     */
+    private Path shardOf(Path base, String filename) {
+        if (!sharded) {
+            return base.resolve(filename);
+        }
+        String hash = HexFormat.of().formatHex(sha256().digest(filename.getBytes(StandardCharsets.UTF_8)), 0, 2);
+        return base.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(filename);
+    }
+
+    private void addToIndex(String filename, Path path) throws IOException {
+        // Si se sobrescribe un fichero no debe servirse el contenido anterior
+        hotFileCache.invalidate(path);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        index.put(filename, new StoredFile(filename, path, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                MediaTypeFactory.getMediaType(filename).map(MediaType::toString).orElse(DEFAULT_CONTENT_TYPE)));
+    }
+
+    /**
+     * Recorre el almacenamiento y rellena el índice, cada subdirectorio de primer nivel se lee en paralelo
+     */
+    private void buildIndex() throws IOException {
+        index.clear();
+        List<Path> entries;
+        try (Stream<Path> top = Files.list(rootLocation)) {
+            entries = top.filter(path -> !isInternal(path)).toList();
+        }
+        try {
+            entries.parallelStream().forEach(entry -> {
+                try (Stream<Path> files = Files.walk(entry)) {
+                    for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                        addToIndex(file.getFileName().toString(), file);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("Índice de almacenamiento: " + index.size() + " ficheros");
+    }
+
+    private static boolean isInternal(Path path) {
+        // Directorios internos: referencias, temporales y versiones de las imágenes
+        return path.getFileName().toString().startsWith(".");
+    }
+
+    /**
+     * Mueve los ficheros que siguen en la raíz (y sus referencias) a su subdirectorio
+     *
+     * @return número de ficheros movidos
+     */
+    private int migrateToShards() throws IOException {
+        List<Path> flatFiles;
+        try (Stream<Path> top = Files.list(rootLocation)) {
+            flatFiles = top.filter(path -> !isInternal(path) && Files.isRegularFile(path)).toList();
+        }
+        for (Path file : flatFiles) {
+            String filename = file.getFileName().toString();
+            synchronized (lockFor(filename)) {
+                Path target = locationOf(filename);
+                Files.createDirectories(target.getParent());
+                moveAtomically(file, target);
+                addToIndex(filename, target);
+                Path flatReferences = rootLocation.resolve(REFERENCES_DIR).resolve(filename);
+                if (Files.isRegularFile(flatReferences)) {
+                    Path references = referencesOf(filename);
+                    Files.createDirectories(references.getParent());
+                    moveAtomically(flatReferences, references);
+                }
+            }
+        }
+        log.info("Migrados " + flatFiles.size() + " ficheros a subdirectorios");
+        return flatFiles.size();
+    }
+
+    /**
+     * Directorio de trabajo dentro del almacenamiento, en el mismo sistema de ficheros para poder mover sin copiar
+     * No aparece en los listados (empieza por punto)
+     *
+     * @param name nombre del directorio, debe empezar por punto
+     * @return ruta del directorio, creado si no existía
+     */
+    @Override
+    public Path workDirectory(String name) {
+        Path directory = rootLocation.resolve(name);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new StorageInternal("No se puede crear el directorio " + name + " " + e);
+        }
+        return directory;
+    }
+
+    /**
+     * Método que devuelve la ruta de todos los ficheros que hay
+     * en el almacenamiento secundario del proyecto.
+     */
+    @Override
+    public Stream<Path> loadAll() {
+        log.info("Cargando todos los ficheros almacenados");
+        return index.keySet().stream().map(Paths::get);
     }
 
     /**
@@ -112,7 +409,16 @@ public class FileSystemStorageService implements StorageService {
     @Override
     public Path load(String filename) {
         log.info("Cargando fichero " + filename);
-        return rootLocation.resolve(filename);
+        StoredFile stored = index.get(filename);
+        if (stored != null) {
+            return stored.path();
+        }
+        Path location = locationOf(filename);
+        // Los ficheros anteriores a los subdirectorios siguen en la raíz hasta que se migran
+        if (sharded && !Files.exists(location) && Files.exists(rootLocation.resolve(filename))) {
+            return rootLocation.resolve(filename);
+        }
+        return location;
     }
 
 
@@ -124,19 +430,36 @@ public class FileSystemStorageService implements StorageService {
     public Resource loadAsResource(String filename) {
         log.info("Cargando fichero " + filename);
         try {
-            Path file = load(filename);
-            Resource resource = new UrlResource(file.toUri());
-            if (resource.exists() || resource.isReadable()) {
-                return resource;
-            } else {
-                throw new StorageNotFound("No se puede leer fichero: " + filename);
-            }
-        } catch (MalformedURLException e) {
+            // FileSystemResource accede directamente al fichero (tamaño, fecha, canal) sin pasar por una URL
+            return find(filename).<Resource>map(stored -> new FileSystemResource(stored.path()))
+                    .orElseThrow(() -> new StorageNotFound("No se puede leer fichero: " + filename));
+        } catch (InvalidPathException e) {
             throw new StorageNotFound("No se puede leer fichero: " + filename + " " + e);
         }
     }
 
 
+    /**
+     * Busca un fichero en el índice y, si no está, en disco
+     */
+    @Override
+    public Optional<StoredFile> find(String filename) {
+        StoredFile stored = index.get(filename);
+        if (stored != null) {
+            return Optional.of(stored);
+        }
+        Path file = load(filename);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            addToIndex(filename, file);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(index.get(filename));
+    }
+
     /**
      * Método que elimina todos los ficheros del almacenamiento
      * secundario del proyecto.
@@ -145,6 +468,8 @@ public class FileSystemStorageService implements StorageService {
     public void deleteAll() {
         log.info("Eliminando todos los ficheros almacenados");
         FileSystemUtils.deleteRecursively(rootLocation.toFile());
+        index.clear();
+        hotFileCache.clear();
     }
 
 
@@ -156,25 +481,97 @@ public class FileSystemStorageService implements StorageService {
         log.info("Inicializando almacenamiento");
         try {
             Files.createDirectories(rootLocation);
+            if (contentAddressed) {
+                Files.createDirectories(rootLocation.resolve(REFERENCES_DIR));
+                Files.createDirectories(rootLocation.resolve(TEMP_DIR));
+            }
+            if (sharded && migrate) {
+                migrateToShards();
+            }
+            buildIndex();
         } catch (IOException e) {
             throw new StorageInternal("No se puede inicializar el almacenamiento " + e);
         }
     }
 
 
+    /**
+     * Elimina un fichero, si está guardado por contenido solo se borra cuando ya no tiene referencias
+     */
     @Override
     public void delete(String filename) {
         String justFilename = StringUtils.getFilename(filename);
         try {
+            if (contentAddressed && CONTENT_ADDRESSED_FILENAME.matcher(justFilename).matches()) {
+                deleteReference(justFilename);
+                return;
+            }
             log.info("Eliminando fichero " + filename);
             Path file = load(justFilename);
             Files.deleteIfExists(file);
+            index.remove(justFilename);
+            hotFileCache.invalidate(file);
         } catch (IOException e) {
             throw new StorageInternal("No se puede eliminar el fichero " + filename + " " + e);
         }
 
     }
 
+    private void deleteReference(String storedFilename) throws IOException {
+        synchronized (lockFor(storedFilename)) {
+            long references = readReferences(storedFilename) - 1;
+            if (references > 0) {
+                log.info("Fichero " + storedFilename + " aún tiene " + references + " referencias");
+                writeReferences(storedFilename, references);
+            } else {
+                log.info("Eliminando fichero " + storedFilename);
+                Path file = load(storedFilename);
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(referencesOf(storedFilename));
+                index.remove(storedFilename);
+                hotFileCache.invalidate(file);
+            }
+        }
+    }
+
+    /**
+     * Quita un fichero huérfano con sus referencias, si se pone en cuarentena se mueve a .orphans
+     * Con el mismo bloqueo que al guardarlo se vuelve a mirar la fecha del fichero y de sus referencias,
+     * así no se quita un fichero que se ha vuelto a subir después de que el recolector lo diera por huérfano
+     */
+    @Override
+    public boolean discard(String filename, boolean quarantine, long modifiedBefore) {
+        String justFilename = StringUtils.getFilename(filename);
+        synchronized (lockFor(justFilename)) {
+            try {
+                Path file = load(justFilename);
+                if (modifiedSince(file, modifiedBefore) || modifiedSince(referencesOf(justFilename), modifiedBefore)) {
+                    log.info("Fichero " + justFilename + " renovado, ya no se considera huérfano");
+                    return false;
+                }
+                if (quarantine && Files.exists(file)) {
+                    log.info("Moviendo a cuarentena fichero huérfano " + justFilename);
+                    Path target = rootLocation.resolve(ORPHANS_DIR).resolve(justFilename);
+                    Files.createDirectories(target.getParent());
+                    moveAtomically(file, target);
+                } else {
+                    log.info("Eliminando fichero huérfano " + justFilename);
+                    Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(referencesOf(justFilename));
+                index.remove(justFilename);
+                hotFileCache.invalidate(file);
+                return true;
+            } catch (IOException e) {
+                throw new StorageInternal("No se puede quitar el fichero " + filename + " " + e);
+            }
+        }
+    }
+
+    private boolean modifiedSince(Path path, long instant) throws IOException {
+        return Files.exists(path) && Files.getLastModifiedTime(path).toMillis() >= instant;
+    }
+
     /**
      * Método que devuelve la URL de un fichero a partir de su nombre
      * Devuelve un objeto de tipo String
@@ -185,7 +582,7 @@ public class FileSystemStorageService implements StorageService {
         return MvcUriComponentsBuilder
                 // El segundo argumento es necesario solo cuando queremos obtener la imagen
                 // En este caso tan solo necesitamos obtener la URL
-                .fromMethodName(StorageController.class, "serveFile", filename, null)
+                .fromMethodName(StorageController.class, "serveFile", filename, null, null, null)
                 .build().toUriString();
     }
 
@@ -0,0 +1,339 @@
+package dev.joseluisgs.tiendaapidaw.rest.storage.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caché fuera del heap del contenido de los ficheros pequeños más pedidos de /storage
+ * <p>
+ * El contenido va en memoria nativa (un Arena por fichero), así no ocupa heap ni lo recorre el GC, con el tamaño,
+ * la fecha, el ETag y el tipo de contenido ya calculados: un acierto no toca el disco
+ * Solo se guardan ficheros hasta max-file-size y como mucho max-bytes en total,
+ * al pasarse se descartan los usados hace más tiempo (LRU, un LinkedHashMap por orden de acceso)
+ * <p>
+ * La memoria de un fichero descartado se libera en cuanto termina la última respuesta que lo está enviando,
+ * sin esperar al GC como con los ByteBuffer directos: quien recibe un fichero de get tiene que llamar a release
+ * Los ficheros demasiado grandes se recuerdan para no volver a leer sus atributos, y no cuentan en las métricas
+ * <p>
+ * El almacenamiento la invalida al guardar y borrar. Los nombres de los ficheros subidos no se reutilizan
+ * (timestamp o hash del contenido), por eso no se comprueba la fecha del fichero en cada acierto
+ */
+@Component
+@Slf4j
+public class HotFileCache {
+    private static final int MAX_TOO_LARGE = 10_000;
+
+    private final long maxBytes;
+    private final long maxFileSize;
+    // Por orden de acceso, el primero es el usado hace más tiempo. Todo lo protege el bloqueo del propio mapa
+    private final LinkedHashMap<Path, CachedFile> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    // Ficheros que no caben en la caché, acotado y también por orden de acceso
+    private final Map<Path, Boolean> tooLarge = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Boolean> eldest) {
+            return size() > MAX_TOO_LARGE;
+        }
+    };
+    // Aumenta con cada invalidación, si cambia mientras se lee un fichero no se guarda
+    private final AtomicLong generation = new AtomicLong();
+
+    // Métricas
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Crea la caché
+     *
+     * @param maxBytes    Bytes máximos guardados en total, con 0 no se guarda nada
+     * @param maxFileSize Tamaño máximo de un fichero para guardarlo
+     */
+    @Autowired
+    public HotFileCache(@Value("${upload.hot-cache.max-bytes:67108864}") long maxBytes,
+                        @Value("${upload.hot-cache.max-file-size:262144}") long maxFileSize) {
+        this.maxBytes = maxBytes;
+        this.maxFileSize = Math.min(maxFileSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * ETag fuerte de un fichero a partir de su tamaño y fecha de modificación
+     *
+     * @param length       Tamaño en bytes
+     * @param lastModified Fecha de modificación en ms
+     * @return ETag con comillas
+     */
+    public static String etagOf(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * Devuelve el fichero de la caché o lo lee y lo guarda si es pequeño
+     * El fichero devuelto no se libera hasta que se llame a {@link #release}, aunque se descarte de la caché
+     *
+     * @param path        Ruta del fichero
+     * @param contentType Calcula el tipo de contenido, solo se llama al guardarlo
+     * @return Fichero en memoria o null si no cabe en la caché o no se puede leer
+     */
+    public CachedFile get(Path path, Supplier<String> contentType) {
+        if (maxBytes <= 0) {
+            return null;
+        }
+        Path key = path.toAbsolutePath().normalize();
+        synchronized (entries) {
+            CachedFile cached = entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                cached.retain();
+                return cached;
+            }
+            if (tooLarge.containsKey(key)) {
+                return null;
+            }
+        }
+        long loadGeneration = generation.get();
+        CachedFile loaded = read(key, contentType);
+        if (loaded == null) {
+            return null;
+        }
+        misses.increment();
+        synchronized (entries) {
+            CachedFile previous = entries.get(key);
+            if (previous != null) {
+                // Otra petición lo ha leído a la vez, nos quedamos con el suyo y liberamos el nuestro ya
+                loaded.release();
+                previous.retain();
+                return previous;
+            }
+            if (generation.get() != loadGeneration) {
+                // Se ha invalidado algo mientras lo leíamos, puede ser este fichero: se sirve pero no se guarda
+                return loaded;
+            }
+            loaded.retain();
+            entries.put(key, loaded);
+            usedBytes += loaded.size();
+            if (usedBytes > maxBytes) {
+                evict();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Devuelve un fichero obtenido con get, si ya no está en la caché se libera su memoria
+     *
+     * @param file Fichero en memoria (puede ser null)
+     */
+    public void release(CachedFile file) {
+        if (file != null) {
+            file.release();
+        }
+    }
+
+    /**
+     * Escribe un rango del fichero en memoria en la respuesta
+     *
+     * @param file  Fichero en memoria
+     * @param out   Salida
+     * @param start Primer byte
+     * @param count Número de bytes
+     * @throws IOException si no se puede escribir
+     */
+    public void write(CachedFile file, OutputStream out, long start, long count) throws IOException {
+        // Cada escritura usa su propia vista del buffer, así se puede servir el mismo fichero a la vez
+        ByteBuffer view = file.content.duplicate();
+        view.position((int) start).limit((int) (start + count));
+        Channels.newChannel(out).write(view);
+        bytesServed.add(count);
+    }
+
+    /**
+     * Quita un fichero de la caché
+     *
+     * @param path Ruta del fichero
+     */
+    public void invalidate(Path path) {
+        generation.incrementAndGet();
+        Path key = path.toAbsolutePath().normalize();
+        synchronized (entries) {
+            tooLarge.remove(key);
+            CachedFile removed = entries.remove(key);
+            if (removed != null) {
+                discard(removed);
+            }
+        }
+    }
+
+    /**
+     * Vacía la caché
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            tooLarge.clear();
+            Iterator<CachedFile> it = entries.values().iterator();
+            while (it.hasNext()) {
+                CachedFile removed = it.next();
+                it.remove();
+                discard(removed);
+            }
+        }
+    }
+
+    /**
+     * Métricas de la caché
+     *
+     * @return Estadísticas actuales
+     */
+    public HotFileCacheStats getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+        int size;
+        long used;
+        synchronized (entries) {
+            size = entries.size();
+            used = usedBytes;
+        }
+        return new HotFileCacheStats(size, used, maxBytes, maxFileSize, hitCount, missCount,
+                requests == 0 ? 0 : (double) hitCount / requests, bytesServed.sum(), evictions.sum());
+    }
+
+    private CachedFile read(Path path, Supplier<String> contentType) {
+        Arena arena = null;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long size = attributes.size();
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            if (size > maxFileSize || size > maxBytes) {
+                synchronized (entries) {
+                    tooLarge.put(path, Boolean.TRUE);
+                }
+                return null;
+            }
+            arena = Arena.ofShared();
+            ByteBuffer content = arena.allocate(size).asByteBuffer();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (content.hasRemaining() && channel.read(content) >= 0) {
+                    // Leemos hasta llenar el buffer
+                }
+            }
+            if (content.hasRemaining()) {
+                // El fichero ha cambiado mientras lo leíamos
+                arena.close();
+                return null;
+            }
+            content.flip();
+            // Las cabeceras HTTP solo tienen precisión de segundos
+            long lastModified = attributes.lastModifiedTime().toMillis() / 1000 * 1000;
+            return new CachedFile(arena, content.asReadOnlyBuffer(), size, lastModified, etagOf(size, lastModified),
+                    contentType.get());
+        } catch (IOException | RuntimeException e) {
+            if (arena != null) {
+                arena.close();
+            }
+            log.debug("No se puede leer {} para la caché: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    // Se llama con el bloqueo de entries, la entrada ya no está en el mapa
+    private void discard(CachedFile file) {
+        usedBytes -= file.size();
+        file.release();
+    }
+
+    /**
+     * Descarta las entradas usadas hace más tiempo hasta volver al presupuesto
+     * El mapa va por orden de acceso, así que basta con quitar desde el principio (se llama con el bloqueo de entries)
+     */
+    private void evict() {
+        Iterator<CachedFile> it = entries.values().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            CachedFile oldest = it.next();
+            it.remove();
+            discard(oldest);
+            evictions.increment();
+        }
+        log.debug("Caché de ficheros: {} bytes en {} ficheros", usedBytes, entries.size());
+    }
+
+    /**
+     * Fichero en memoria con sus cabeceras ya calculadas
+     */
+    public static final class CachedFile {
+        private final Arena arena;
+        private final ByteBuffer content;
+        private final long size;
+        private final long lastModified;
+        private final String etag;
+        private final String contentType;
+        // Referencias: la de la caché mientras está guardado y una por cada respuesta que lo envía
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private CachedFile(Arena arena, ByteBuffer content, long size, long lastModified, String etag, String contentType) {
+            this.arena = arena;
+            this.content = content;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.contentType = contentType;
+        }
+
+        private void retain() {
+            references.incrementAndGet();
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                arena.close();
+            }
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public long lastModified() {
+            return lastModified;
+        }
+
+        public String etag() {
+            return etag;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+    }
+
+    /**
+     * Estadísticas de la caché, hitRatio entre 0 y 1
+     */
+    public record HotFileCacheStats(int entries, long usedBytes, long maxBytes, long maxFileSize, long hits,
+                                    long misses, double hitRatio, long bytesServed, long evictions) {
+    }
+}
@@ -0,0 +1,45 @@
+package dev.joseluisgs.tiendaapidaw.rest.storage.services;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Versiones reducidas de las imágenes almacenadas (miniaturas y tamaños intermedios)
+ * Se generan en segundo plano al subir una imagen y, si falta alguna, la primera vez que se pide
+ * (si no está lista enseguida se sirve el original mientras se termina de generar)
+ */
+public interface ImageVariantService {
+
+    /**
+     * Genera en segundo plano todas las versiones configuradas de una imagen
+     * Si no hay sitio en la cola no se generan, se harán bajo demanda
+     *
+     * @param filename nombre o URL del fichero almacenado
+     */
+    void generateAsync(String filename);
+
+    /**
+     * Devuelve la versión de una imagen con el ancho configurado más cercano por encima del pedido
+     * Si no es una imagen, es más estrecha que ese ancho o se pide más que el mayor configurado devuelve el original
+     * También si aún se está generando y no termina a tiempo, o no se puede generar
+     *
+     * @param filename nombre del fichero almacenado
+     * @param width    ancho pedido en píxeles
+     * @return Recurso de la versión o del original
+     */
+    Resource loadVariant(String filename, int width);
+
+    /**
+     * Si un recurso es una versión reducida ya generada y no el original
+     *
+     * @param resource recurso devuelto por loadVariant
+     * @return true si es el fichero de la versión
+     */
+    boolean isVariant(Resource resource);
+
+    /**
+     * Borra las versiones de una imagen si el original ya no existe
+     *
+     * @param filename nombre o URL del fichero almacenado
+     */
+    void deleteVariants(String filename);
+}
@@ -0,0 +1,364 @@
+package dev.joseluisgs.tiendaapidaw.rest.storage.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Genera las versiones reducidas de las imágenes con ImageIO del JDK, sin dependencias nativas
+ * <p>
+ * Se guardan en upload.root-location/.variants/ancho/nombre con el mismo formato que el original
+ * (ImageIO no escribe WebP, los JPEG se recomprimen con la calidad configurada)
+ * Solo se generan los anchos configurados, así no se puede llenar el disco pidiendo anchos distintos
+ * <p>
+ * La generación usa siempre un pool de hilos acotado, también bajo demanda: la petición espera como mucho
+ * onDemandTimeout y, si no está lista, se sirve el original mientras se termina de generar
+ * Si varias peticiones piden a la vez la misma versión que falta solo se genera una vez, el resto la espera
+ * Se recuerdan las versiones que no hace falta generar (el original es más estrecho o no se puede leer),
+ * para no volver a abrir la imagen en cada petición. Los fallos se recuerdan solo un tiempo por si eran pasajeros
+ */
+@Service
+@Slf4j
+public class ImageVariantServiceImpl implements ImageVariantService {
+    private static final String VARIANTS_DIR = ".variants";
+    private static final String JPEG = "jpeg";
+    private static final long FAILURE_TTL = TimeUnit.MINUTES.toMillis(5);
+    private static final int MAX_SKIPPED = 10_000;
+
+    private final StorageService storageService;
+    private final HotFileCache hotFileCache;
+    private final Path variantsLocation;
+    private final int[] widths;
+    private final float quality;
+    private final ThreadPoolExecutor executor;
+    private final long onDemandTimeout;
+    private final Map<Path, CompletableFuture<Optional<Path>>> inProgress = new ConcurrentHashMap<>();
+    // Versiones que no se generan y hasta cuándo (Long.MAX_VALUE si es para siempre), acotado y LRU
+    private final Map<Path, Long> skipped = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Long> eldest) {
+            return size() > MAX_SKIPPED;
+        }
+    });
+
+    /**
+     * Crea el servicio
+     *
+     * @param storageService Almacenamiento de los originales
+     * @param hotFileCache   Caché en memoria de los ficheros servidos, se invalida al borrar las versiones
+     * @param rootLocation   Directorio del almacenamiento
+     * @param widths         Anchos de las versiones en píxeles
+     * @param quality        Calidad de compresión de los JPEG (0-1)
+     * @param threads        Hilos para generar en segundo plano
+     * @param queueSize       Imágenes que pueden esperar en cola
+     * @param onDemandTimeout Tiempo (ms) que una petición espera a que se genere la versión antes de servir el original
+     */
+    @Autowired
+    public ImageVariantServiceImpl(StorageService storageService, HotFileCache hotFileCache,
+                                   @Value("${upload.root-location}") String rootLocation,
+                                   @Value("${upload.images.widths:150,300,600,1200}") int[] widths,
+                                   @Value("${upload.images.quality:0.8}") float quality,
+                                   @Value("${upload.images.threads:2}") int threads,
+                                   @Value("${upload.images.queue-size:100}") int queueSize,
+                                   @Value("${upload.images.on-demand-timeout:250}") long onDemandTimeout) {
+        this.storageService = storageService;
+        this.hotFileCache = hotFileCache;
+        this.variantsLocation = Paths.get(rootLocation).resolve(VARIANTS_DIR);
+        this.widths = Arrays.stream(widths).filter(width -> width > 0).sorted().distinct().toArray();
+        this.quality = quality;
+        this.onDemandTimeout = Math.max(0, onDemandTimeout);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void generateAsync(String filename) {
+        String name = StringUtils.getFilename(filename);
+        if (name == null || !isImage(name) || widths.length == 0) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                for (int width : widths) {
+                    Path target = variantPath(name, width);
+                    CompletableFuture<Optional<Path>> generation = new CompletableFuture<>();
+                    // Si ya la está generando otra tarea no la esperamos, podría estar en cola detrás de esta
+                    if (!Files.exists(target) && !isSkipped(target) && inProgress.putIfAbsent(target, generation) == null) {
+                        generate(name, width, target, generation);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Cola de imágenes llena, las versiones de {} se generarán bajo demanda", name);
+        }
+    }
+
+    @Override
+    public Resource loadVariant(String filename, int width) {
+        // Lanza StorageNotFound si no existe el original
+        Resource original = storageService.loadAsResource(filename);
+        int target = targetWidth(width);
+        if (target < 0 || !original.isFile() || !isImage(filename)) {
+            return original;
+        }
+        Path variant = variantPath(filename, target);
+        if (Files.exists(variant)) {
+            return new FileSystemResource(variant);
+        }
+        if (isSkipped(variant)) {
+            return original;
+        }
+        CompletableFuture<Optional<Path>> generation = new CompletableFuture<>();
+        CompletableFuture<Optional<Path>> running = inProgress.putIfAbsent(variant, generation);
+        if (running == null) {
+            running = generation;
+            try {
+                executor.execute(() -> generate(filename, target, variant, generation));
+            } catch (RejectedExecutionException e) {
+                inProgress.remove(variant, generation);
+                log.debug("Cola de imágenes llena, se sirve el original de {}", filename);
+                return original;
+            }
+        }
+        try {
+            return running.get(onDemandTimeout, TimeUnit.MILLISECONDS).<Resource>map(FileSystemResource::new).orElse(original);
+        } catch (TimeoutException e) {
+            // Se sigue generando, la próxima petición ya la tendrá
+            return original;
+        } catch (ExecutionException e) {
+            return original;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return original;
+        }
+    }
+
+    @Override
+    public boolean isVariant(Resource resource) {
+        if (!resource.isFile()) {
+            return false;
+        }
+        try {
+            return resource.getFile().toPath().toAbsolutePath().normalize()
+                    .startsWith(variantsLocation.toAbsolutePath().normalize());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void deleteVariants(String filename) {
+        String name = StringUtils.getFilename(filename);
+        // Con el almacenamiento por contenido el original puede seguir usándose en otro producto
+        if (name == null || storageService.find(name).isPresent()) {
+            return;
+        }
+        for (int width : widths) {
+            try {
+                Path variant = variantPath(name, width);
+                skipped.remove(variant);
+                Files.deleteIfExists(variant);
+                hotFileCache.invalidate(variant);
+            } catch (IOException e) {
+                log.warn("No se puede borrar la versión de {} px de {}: {}", width, name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ancho configurado más pequeño que cubre el pedido
+     *
+     * @param width ancho pedido
+     * @return ancho configurado o -1 si es mayor que todos
+     */
+    int targetWidth(int width) {
+        for (int configured : widths) {
+            if (configured >= width) {
+                return configured;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Genera la versión de la imagen en el hilo actual (del pool) y completa su generación en curso
+     * Si no hace falta o falla se recuerda, para no volver a intentarlo en cada petición
+     *
+     * @param filename   nombre del fichero almacenado
+     * @param width      ancho configurado
+     * @param target     fichero de la versión
+     * @param generation generación registrada en inProgress, se completa con la versión o vacío
+     */
+    private void generate(String filename, int width, Path target, CompletableFuture<Optional<Path>> generation) {
+        try {
+            Path result = Files.exists(target) ? target : resize(storageService.load(filename), target, width);
+            if (result == null) {
+                // El original es más estrecho o no es una imagen que se pueda leer, no cambia (los nombres son por contenido)
+                skipped.put(target, Long.MAX_VALUE);
+            }
+            generation.complete(Optional.ofNullable(result));
+        } catch (IOException | RuntimeException e) {
+            log.warn("No se puede generar la versión de {} px de {}: {}", width, filename, e.getMessage());
+            skipped.put(target, System.currentTimeMillis() + FAILURE_TTL);
+            generation.complete(Optional.empty());
+        } finally {
+            inProgress.remove(target, generation);
+        }
+    }
+
+    private boolean isSkipped(Path target) {
+        Long until = skipped.get(target);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            skipped.remove(target, until);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reduce la imagen al ancho indicado manteniendo la proporción
+     * Solo se leen las cabeceras para saber el tamaño y al decodificar se descartan píxeles si es mucho más grande
+     *
+     * @return Fichero generado o null si el original no es una imagen o no es más ancho
+     */
+    private Path resize(Path source, Path target, int width) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int originalWidth = reader.getWidth(0);
+                int originalHeight = reader.getHeight(0);
+                if (originalWidth <= width) {
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                // Decodificamos como mucho al doble del ancho final, el escalado posterior da la calidad
+                int subsampling = Math.max(1, originalWidth / (width * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage image = reader.read(0, param);
+                int height = Math.max(1, (int) Math.round((double) originalHeight * width / originalWidth));
+                String format = reader.getFormatName().toLowerCase();
+                // JPEG no admite transparencia
+                write(scale(image, width, height, !JPEG.equals(format)), format, target);
+                log.debug("Generada versión de {} px de {}", width, source.getFileName());
+                return target;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image, int width, int height, boolean keepAlpha) {
+        int type = keepAlpha && image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = new BufferedImage(width, height, type);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Escribe la imagen en un temporal y lo mueve a su sitio, así nunca se sirve una versión a medias
+     */
+    private void write(BufferedImage image, String format, Path target) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No se puede escribir el formato " + format);
+        }
+        ImageWriter writer = writers.next();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+        try {
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (param.canWriteCompressed() && JPEG.equals(format)) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(quality);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private boolean isImage(String filename) {
+        String extension = StringUtils.getFilenameExtension(filename);
+        return extension != null && ImageIO.getImageReadersBySuffix(extension.toLowerCase()).hasNext();
+    }
+
+    private Path variantPath(String filename, int width) {
+        return variantsLocation.resolve(Integer.toString(width)).resolve(filename);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -4,6 +4,7 @@ import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 
@@ -31,6 +32,23 @@ public interface StorageService {
      */
     String store(MultipartFile file);
 
+    /**
+     * Almacena un fichero que ya está en disco moviéndolo, sin copiarlo
+     *
+     * @param file             fichero a almacenar, deja de existir
+     * @param originalFilename nombre original del fichero
+     * @return nombre del fichero almacenado
+     */
+    String store(Path file, String originalFilename);
+
+    /**
+     * Directorio de trabajo interno del almacenamiento (subidas en curso, temporales)
+     *
+     * @param name nombre del directorio
+     * @return ruta del directorio
+     */
+    Path workDirectory(String name);
+
     /**
      * Devuelve un Stream de todos los ficheros almacenados
      *
@@ -54,6 +72,14 @@ public interface StorageService {
      */
     Resource loadAsResource(String filename);
 
+    /**
+     * Busca un fichero almacenado
+     *
+     * @param filename nombre del fichero
+     * @return Datos del fichero o vacío si no existe
+     */
+    Optional<StoredFile> find(String filename);
+
     /**
      * Borra un fichero del sistema de ficheros
      *
@@ -61,6 +87,28 @@ public interface StorageService {
      */
     void delete(String filename);
 
+    /**
+     * Quita un fichero que ya no usa nadie, aunque tenga referencias
+     *
+     * @param filename   nombre del fichero
+     * @param quarantine si es true se mueve a cuarentena en vez de borrarlo
+     */
+    default void discard(String filename, boolean quarantine) {
+        discard(filename, quarantine, Long.MAX_VALUE);
+    }
+
+    /**
+     * Quita un fichero que ya no usa nadie si no se ha tocado desde un instante
+     * Se comprueba con el fichero bloqueado: si se ha vuelto a guardar o han cambiado sus referencias
+     * desde entonces (alguien lo está usando de nuevo) no se quita
+     *
+     * @param filename       nombre del fichero
+     * @param quarantine     si es true se mueve a cuarentena en vez de borrarlo
+     * @param modifiedBefore solo se quita si el fichero y sus referencias son anteriores a este instante (ms)
+     * @return true si se ha quitado, false si se ha renovado mientras tanto
+     */
+    boolean discard(String filename, boolean quarantine, long modifiedBefore);
+
     /**
      * Borra todos los ficheros del sistema de ficheros
      */
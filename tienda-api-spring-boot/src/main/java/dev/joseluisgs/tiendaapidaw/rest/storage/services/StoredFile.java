@@ -0,0 +1,15 @@
+package dev.joseluisgs.tiendaapidaw.rest.storage.services;
+
+import java.nio.file.Path;
+
+/**
+ * Datos de un fichero almacenado, los guarda el índice en memoria del almacenamiento
+ *
+ * @param name         Nombre del fichero
+ * @param path         Ruta en disco
+ * @param size         Tamaño en bytes
+ * @param lastModified Fecha de modificación en ms
+ * @param contentType  Tipo de contenido según la extensión
+ */
+public record StoredFile(String name, Path path, long size, long lastModified, String contentType) {
+}
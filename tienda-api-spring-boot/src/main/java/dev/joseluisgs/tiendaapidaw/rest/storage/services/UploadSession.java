@@ -0,0 +1,17 @@
+package dev.joseluisgs.tiendaapidaw.rest.storage.services;
+
+/**
+ * Estado de una subida por partes
+ *
+ * @param id       Identificador de la subida
+ * @param owner    A qué pertenece el fichero (por ejemplo el id del producto)
+ * @param filename Nombre original del fichero
+ * @param size     Tamaño total en bytes
+ * @param offset   Bytes recibidos, es donde empieza la siguiente parte
+ */
+public record UploadSession(String id, String owner, String filename, long size, long offset) {
+
+    public boolean isComplete() {
+        return offset == size;
+    }
+}
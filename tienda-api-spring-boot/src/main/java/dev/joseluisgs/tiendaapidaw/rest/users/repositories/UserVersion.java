@@ -0,0 +1,14 @@
+package dev.joseluisgs.tiendaapidaw.rest.users.repositories;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección con lo justo para saber si un usuario ha cambiado: id, fecha de modificación y si está borrado
+ */
+public interface UserVersion {
+    Long getId();
+
+    LocalDateTime getUpdatedAt();
+
+    Boolean getIsDeleted();
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,10 +26,13 @@ public interface UsersRepository extends JpaRepository<User, Long>, JpaSpecifica
     List<User> findAllByUsernameContainingIgnoreCase(String username);
 
     @Modifying // Para indicar que es una consulta de actualización
-    @Query("UPDATE User p SET p.isDeleted = true WHERE p.id = :id")
-        // Consulta de actualización
+    @Query("UPDATE User p SET p.isDeleted = true, p.updatedAt = CURRENT_TIMESTAMP WHERE p.id = :id")
+        // Consulta de actualización, cambia la fecha de modificación para que se revoquen sus tokens
     void updateIsDeletedToTrueById(Long id);
 
     List<User> findAllByIsDeletedFalse();
 
+    // Usuarios modificados o borrados desde una fecha, solo id, fecha y borrado
+    List<UserVersion> findByUpdatedAtAfter(LocalDateTime updatedAt);
+
 }
\ No newline at end of file
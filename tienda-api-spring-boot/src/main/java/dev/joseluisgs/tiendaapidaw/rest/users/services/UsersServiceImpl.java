@@ -1,6 +1,8 @@
 package dev.joseluisgs.tiendaapidaw.rest.users.services;
 
 
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.AuthPrincipalCache;
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.RevokedUserVersions;
 import dev.joseluisgs.tiendaapidaw.rest.pedidos.repositories.PedidosRepository;
 import dev.joseluisgs.tiendaapidaw.rest.users.dto.UserInfoResponse;
 import dev.joseluisgs.tiendaapidaw.rest.users.dto.UserRequest;
@@ -32,11 +34,16 @@ public class UsersServiceImpl implements UsersService {
     private final UsersRepository usersRepository;
     private final PedidosRepository pedidosRepository;
     private final UsersMapper usersMapper;
+    private final AuthPrincipalCache principalCache;
+    private final RevokedUserVersions revokedUserVersions;
 
-    public UsersServiceImpl(UsersRepository usersRepository, PedidosRepository pedidosRepository, UsersMapper usersMapper) {
+    public UsersServiceImpl(UsersRepository usersRepository, PedidosRepository pedidosRepository, UsersMapper usersMapper,
+                            AuthPrincipalCache principalCache, RevokedUserVersions revokedUserVersions) {
         this.usersRepository = usersRepository;
         this.pedidosRepository = pedidosRepository;
         this.usersMapper = usersMapper;
+        this.principalCache = principalCache;
+        this.revokedUserVersions = revokedUserVersions;
     }
 
     @Override
@@ -95,7 +102,7 @@ public class UsersServiceImpl implements UsersService {
     @CachePut(key = "#result.id")
     public UserResponse update(Long id, UserRequest userRequest) {
         log.info("Actualizando usuario: " + userRequest);
-        usersRepository.findById(id).orElseThrow(() -> new UserNotFound(id));
+        User current = usersRepository.findById(id).orElseThrow(() -> new UserNotFound(id));
         // No debe existir otro con el mismo username o email, y si existe soy yo mismo
         usersRepository.findByUsernameEqualsIgnoreCaseOrEmailEqualsIgnoreCase(userRequest.getUsername(), userRequest.getEmail())
                 .ifPresent(u -> {
@@ -104,7 +111,12 @@ public class UsersServiceImpl implements UsersService {
                         throw new UserNameOrEmailExists("Ya existe un usuario con ese username o email");
                     }
                 });
-        return usersMapper.toUserResponse(usersRepository.save(usersMapper.toUser(userRequest, id)));
+        User updated = usersRepository.save(usersMapper.toUser(userRequest, id));
+        // El filtro JWT no debe seguir usando los datos anteriores (roles, contraseña, username)
+        principalCache.invalidate(current.getUsername());
+        principalCache.invalidate(userRequest.getUsername());
+        revokedUserVersions.revoke(updated);
+        return usersMapper.toUserResponse(updated);
     }
 
     @Override
@@ -123,6 +135,8 @@ public class UsersServiceImpl implements UsersService {
             log.info("Borrado físico de usuario por id: " + id);
             usersRepository.delete(user);
         }
+        principalCache.invalidate(user.getUsername());
+        revokedUserVersions.revokeAll(id);
     }
 
     public List<User> findAllActiveUsers() {
@@ -0,0 +1,39 @@
+package dev.joseluisgs.tiendaapidaw.websockets.notifications.controllers;
+
+import dev.joseluisgs.tiendaapidaw.config.websockets.HeartbeatMonitor;
+import dev.joseluisgs.tiendaapidaw.config.websockets.WebSocketHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Métricas de las conexiones WebSocket, solo para administradores
+ */
+@RestController
+@RequestMapping("${api.version}/websockets") // Es la ruta del controlador
+@Slf4j
+@PreAuthorize("hasRole('ADMIN')") // Solo los admin pueden acceder
+public class WebSocketStatsRestController {
+    private final WebSocketHandler productosHandler;
+
+    @Autowired
+    public WebSocketStatsRestController(@Qualifier("webSocketProductosHandler") WebSocketHandler productosHandler) {
+        this.productosHandler = productosHandler;
+    }
+
+    /**
+     * Métricas del heartbeat de las sesiones de productos: pings, pongs, sesiones cerradas y RTT en ms
+     *
+     * @return Estadísticas del heartbeat
+     */
+    @GetMapping("/productos/heartbeat")
+    public ResponseEntity<HeartbeatMonitor.HeartbeatStats> getProductosHeartbeat() {
+        log.info("Obteniendo métricas del heartbeat de WebSockets de productos");
+        return ResponseEntity.ok(productosHandler.getHeartbeatStats());
+    }
+}
@@ -0,0 +1,15 @@
+package dev.joseluisgs.tiendaapidaw.websockets.notifications.dto;
+
+/**
+ * Respuesta del servidor a un cliente que se reconecta indicando la última secuencia que recibió (epoch:sequence)
+ * - RESUMED: se le han reenviado las notificaciones perdidas (replayed) y sigue desde sequence
+ * - RESYNC_REQUIRED: lo perdido ya no está en el buffer o su época no es la actual, debe recargar los datos
+ * por REST y seguir desde epoch:sequence
+ */
+public record ResumeResponse(
+        String type,
+        String epoch,
+        long sequence,
+        int replayed
+) {
+}
@@ -0,0 +1,21 @@
+package dev.joseluisgs.tiendaapidaw.websockets.notifications.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Mensaje que envía un cliente WebSocket para filtrar las notificaciones que recibe
+ * Ejemplo: {"action":"subscribe","topics":["categoria:DEPORTES","producto:42"]}
+ */
+public record SubscriptionRequest(
+        Action action,
+        List<String> topics
+) {
+
+    public enum Action {
+        @JsonProperty("subscribe") SUBSCRIBE,
+        @JsonProperty("unsubscribe") UNSUBSCRIBE
+    }
+
+}
@@ -0,0 +1,14 @@
+package dev.joseluisgs.tiendaapidaw.websockets.notifications.dto;
+
+import java.util.Set;
+
+/**
+ * Respuesta del servidor a un mensaje de suscripción con los temas que tiene el cliente
+ * Si topics está vacío el cliente es comodín y lo recibe todo
+ */
+public record SubscriptionResponse(
+        String type,
+        Set<String> topics,
+        String error
+) {
+}
@@ -1,12 +1,30 @@
 package dev.joseluisgs.tiendaapidaw.websockets.notifications.models;
 
+/**
+ * Notificación de un cambio en una entidad
+ * El número de secuencia lo asigna el handler al enviarla, es creciente y permite a un cliente
+ * que se reconecta pedir solo lo que se ha perdido
+ * La secuencia solo vale dentro de su época (epoch), que cambia si el servidor se reinicia o se reinicia
+ * el contador compartido del cluster, así una secuencia antigua no se confunde con una nueva
+ */
 public record Notificacion<T>(
         String entity,
         Tipo type,
         T data,
-        String createdAt
+        String createdAt,
+        long sequence,
+        String epoch
 ) {
 
     public enum Tipo {CREATE, UPDATE, DELETE}
 
-}
\ No newline at end of file
+    // Notificación aún sin número de secuencia
+    public Notificacion(String entity, Tipo type, T data, String createdAt) {
+        this(entity, type, data, createdAt, 0, null);
+    }
+
+    public Notificacion<T> withSequence(String epoch, long sequence) {
+        return new Notificacion<>(entity, type, data, createdAt, sequence, epoch);
+    }
+
+}
@@ -0,0 +1,78 @@
+package dev.joseluisgs.tiendaapidaw.config.auth;
+
+import dev.joseluisgs.tiendaapidaw.rest.auth.exceptions.PasswordHashingUnavailable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTest {
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        encoder.shutdown();
+    }
+
+    @Test
+    void encodeAndMatches_DelegatesToBCrypt() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 4, 2);
+
+        String hash = encoder.encode("Admin1");
+
+        assertAll(
+                () -> assertTrue(encoder.matches("Admin1", hash)),
+                () -> assertFalse(encoder.matches("otra", hash)),
+                () -> assertEquals(3, encoder.getStats().completed()),
+                () -> assertEquals(0, encoder.getStats().rejected())
+        );
+    }
+
+    @Test
+    void encode_PoolAndQueueFull_ThrowsPasswordHashingUnavailable() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = mock(PasswordEncoder.class);
+        when(slow.encode(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return "hash";
+        });
+        encoder = new BoundedPasswordEncoder(slow, 1, 1, 5);
+
+        // Uno ocupa el único hilo y otro la única plaza de la cola
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("uno"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("dos"));
+        while (encoder.getStats().queued() == 0) {
+            Thread.onSpinWait();
+        }
+
+        PasswordHashingUnavailable ex = assertThrows(PasswordHashingUnavailable.class, () -> encoder.encode("tres"));
+        release.countDown();
+
+        assertAll(
+                () -> assertEquals(5, ex.getRetryAfter()),
+                () -> assertEquals("hash", running.get(5, TimeUnit.SECONDS)),
+                () -> assertEquals("hash", queued.get(5, TimeUnit.SECONDS)),
+                () -> assertEquals(1, encoder.getStats().rejected())
+        );
+    }
+
+    @Test
+    void matches_DelegateThrows_PropagatesException() {
+        PasswordEncoder failing = mock(PasswordEncoder.class);
+        when(failing.matches(any(), any())).thenThrow(new IllegalArgumentException("Hash no válido"));
+        encoder = new BoundedPasswordEncoder(failing, 1, 1, 2);
+
+        assertThrows(IllegalArgumentException.class, () -> encoder.matches("Admin1", "no-es-bcrypt"));
+    }
+}
@@ -0,0 +1,103 @@
+package dev.joseluisgs.tiendaapidaw.config.auth;
+
+import dev.joseluisgs.tiendaapidaw.rest.auth.repositories.AuthUsersRepository;
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.jwt.JwtService;
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.AuthPrincipalCache;
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.AuthUsersService;
+import dev.joseluisgs.tiendaapidaw.rest.users.dto.UserInfoResponse;
+import dev.joseluisgs.tiendaapidaw.rest.users.models.User;
+import dev.joseluisgs.tiendaapidaw.rest.users.services.UsersService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Benchmark de peticiones por segundo a un endpoint autenticado con JWT
+ * No se ejecuta con los test normales, lanzar con: ./gradlew test -Pbenchmark
+ * <p>
+ * Compara la forma anterior (el filtro consultaba el usuario dos veces en la base de datos en cada petición)
+ * con la actual (el usuario se guarda en la caché de usuarios autenticados y no se consulta)
+ */
+// Sin límite de peticiones, si no el propio benchmark se quedaría sin fichas
+@SpringBootTest(properties = "ratelimit.enabled=false")
+@AutoConfigureMockMvc
+class JwtAuthenticationFilterBenchmark {
+    private static final int WARMUP = 2_000;
+    private static final int REQUESTS = 20_000;
+    private final String myEndpoint = "/v1/users/me/profile";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private AuthUsersRepository authUsersRepository;
+    @Autowired
+    private AuthPrincipalCache principalCache;
+    @MockitoSpyBean
+    private AuthUsersService authUsersService;
+    // El endpoint devuelve un usuario fijo, así solo medimos el coste de la autenticación
+    @MockitoBean
+    private UsersService usersService;
+
+    @Test
+    void authenticatedRequests_DatabaseLookup_VersusCache() throws Exception {
+        User admin = authUsersRepository.findByUsername("admin").orElseThrow();
+        when(usersService.findById(admin.getId()))
+                .thenReturn(UserInfoResponse.builder().id(admin.getId()).username(admin.getUsername()).build());
+        String authorization = "Bearer " + jwtService.generateToken(admin);
+
+        // Antes: dos consultas del usuario en cada petición
+        Request before = () -> {
+            principalCache.clear();
+            authUsersService.loadUserByUsername("admin");
+            request(authorization);
+        };
+        // Ahora: el usuario sale de la caché
+        Request after = () -> request(authorization);
+
+        run(before, WARMUP);
+        run(after, WARMUP);
+        double beforeRate = measure(before);
+        clearInvocations(authUsersService);
+        double afterRate = measure(after);
+
+        System.out.printf("Peticiones autenticadas a %s (%d peticiones)%n", myEndpoint, REQUESTS);
+        System.out.printf("  Antes (2 consultas por petición): %,.0f peticiones/s%n", beforeRate);
+        System.out.printf("  Ahora (caché de usuarios):        %,.0f peticiones/s (x%.2f)%n", afterRate, afterRate / beforeRate);
+
+        // Con la caché caliente no se consulta nunca la base de datos
+        verify(authUsersService, never()).loadUserByUsername(anyString());
+    }
+
+    private void request(String authorization) throws Exception {
+        mockMvc.perform(get(myEndpoint).header("Authorization", authorization))
+                .andExpect(status().isOk());
+    }
+
+    private double measure(Request request) throws Exception {
+        long start = System.nanoTime();
+        run(request, REQUESTS);
+        return REQUESTS / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    private void run(Request request, int times) throws Exception {
+        for (int i = 0; i < times; i++) {
+            request.run();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,116 @@
+package dev.joseluisgs.tiendaapidaw.config.auth;
+
+import dev.joseluisgs.tiendaapidaw.rest.auth.repositories.AuthUsersRepository;
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.jwt.JwtService;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.StorageService;
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Benchmark de peticiones por segundo a un fichero del almacenamiento
+ * No se ejecuta con los test normales, lanzar con: ./gradlew test -Pbenchmark
+ * <p>
+ * Compara la forma anterior (una sola cadena de seguridad, se verificaba el JWT en todas las rutas)
+ * con la actual (las rutas públicas van por una cadena sin filtro JWT)
+ */
+// Sin límite de peticiones, si no el propio benchmark se quedaría sin fichas
+@SpringBootTest(properties = "ratelimit.enabled=false")
+class SecurityFilterChainBenchmark {
+    private static final int WARMUP = 2_000;
+    private static final int REQUESTS = 20_000;
+    private final String myEndpoint = "/storage/producto.png";
+
+    @Autowired
+    private WebApplicationContext context;
+    @Autowired
+    private AuthUsersRepository authUsersRepository;
+    // La cadena de la API, la única que había antes
+    @Autowired
+    @Qualifier("securityFilterChain")
+    private SecurityFilterChain apiFilterChain;
+    // Todas las cadenas, como las usa la aplicación
+    @Autowired
+    @Qualifier("springSecurityFilterChain")
+    private Filter springSecurityFilterChain;
+    @MockitoSpyBean
+    private JwtService jwtService;
+    // Devolvemos siempre el mismo fichero, así solo medimos el coste de la seguridad
+    @MockitoBean
+    private StorageService storageService;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void publicRequests_ApiChain_VersusPublicChain() throws Exception {
+        Path image = Files.write(tempDir.resolve("producto.png"), new byte[1024]);
+        when(storageService.loadAsResource(anyString())).thenReturn(new FileSystemResource(image));
+        // Los navegadores de los clientes de la API mandan el token también al pedir las imágenes
+        String authorization = "Bearer " + jwtService.generateToken(authUsersRepository.findByUsername("admin").orElseThrow());
+
+        // Antes: la petición pasa por la cadena de la API y se verifica el token
+        MockMvc beforeMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(new FilterChainProxy(apiFilterChain)).build();
+        // Ahora: la petición entra por la cadena pública
+        MockMvc afterMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(springSecurityFilterChain).build();
+
+        Request before = () -> request(beforeMvc, authorization);
+        Request after = () -> request(afterMvc, authorization);
+
+        run(before, WARMUP);
+        run(after, WARMUP);
+        double beforeRate = measure(before);
+        clearInvocations(jwtService);
+        double afterRate = measure(after);
+
+        System.out.printf("Peticiones a %s (%d peticiones)%n", myEndpoint, REQUESTS);
+        System.out.printf("  Antes (cadena de la API con JWT): %,.0f peticiones/s%n", beforeRate);
+        System.out.printf("  Ahora (cadena pública):           %,.0f peticiones/s (x%.2f)%n", afterRate, afterRate / beforeRate);
+
+        // En las rutas públicas no se verifica nunca el token
+        verify(jwtService, never()).verifyToken(anyString());
+    }
+
+    private void request(MockMvc mockMvc, String authorization) throws Exception {
+        mockMvc.perform(get(myEndpoint).header("Authorization", authorization))
+                .andExpect(status().isOk());
+    }
+
+    private double measure(Request request) throws Exception {
+        long start = System.nanoTime();
+        run(request, REQUESTS);
+        return REQUESTS / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    private void run(Request request, int times) throws Exception {
+        for (int i = 0; i < times; i++) {
+            request.run();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,90 @@
+package dev.joseluisgs.tiendaapidaw.config.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalRateLimiterTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong();
+    private final LocalRateLimiter limiter = new LocalRateLimiter(4, now::get);
+    private final RateLimitRule rule = new RateLimitRule("/v1/productos/**", 3, 1);
+
+    @Test
+    void tryConsume_Burst_AllowsCapacityThenRejects() {
+        RateLimitDecision first = limiter.tryConsume("user:admin", rule);
+        limiter.tryConsume("user:admin", rule);
+        limiter.tryConsume("user:admin", rule);
+        RateLimitDecision rejected = limiter.tryConsume("user:admin", rule);
+
+        assertAll(
+                () -> assertTrue(first.allowed()),
+                () -> assertEquals(2, first.remaining()),
+                () -> assertEquals(3, first.limit()),
+                () -> assertFalse(rejected.allowed()),
+                () -> assertEquals(0, rejected.remaining()),
+                () -> assertEquals(1, rejected.retryAfter()),
+                () -> assertEquals(3, rejected.reset())
+        );
+    }
+
+    @Test
+    void tryConsume_AfterRefill_AllowsAgain() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryConsume("user:admin", rule);
+        }
+        assertFalse(limiter.tryConsume("user:admin", rule).allowed());
+
+        now.addAndGet(SECOND);
+
+        assertTrue(limiter.tryConsume("user:admin", rule).allowed());
+    }
+
+    @Test
+    void tryConsume_DifferentClients_HaveSeparateBuckets() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryConsume("user:admin", rule);
+        }
+
+        assertTrue(limiter.tryConsume("ip:127.0.0.1", rule).allowed());
+    }
+
+    @Test
+    void tryConsume_Concurrent_NeverExceedsCapacity() throws InterruptedException {
+        RateLimitRule burst = new RateLimitRule("/**", 1_000, 0.001);
+        AtomicInteger allowed = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 5_000; i++) {
+                executor.execute(() -> {
+                    if (limiter.tryConsume("ip:10.0.0.1", burst).allowed()) {
+                        allowed.incrementAndGet();
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1_000, allowed.get());
+    }
+
+    @Test
+    void evictIdle_RemovesOnlyRefilledBuckets() {
+        limiter.tryConsume("user:admin", rule);
+        now.addAndGet(2 * SECOND);
+        limiter.tryConsume("user:pepe", rule);
+        now.addAndGet(SECOND);
+
+        limiter.evictIdle();
+
+        // admin lleva 3 s sin usarse (lo que tarda en llenarse), pepe solo 1 s
+        assertEquals(1, limiter.size());
+    }
+}
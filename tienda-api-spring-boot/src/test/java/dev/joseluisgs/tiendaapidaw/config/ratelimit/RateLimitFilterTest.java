@@ -0,0 +1,107 @@
+package dev.joseluisgs.tiendaapidaw.config.ratelimit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+    private final List<RateLimitRule> rules = RateLimitRule.parseAll("/v1/productos/**=2:1, /graphql=1:1");
+    private final RateLimitFilter filter = new RateLimitFilter(new LocalRateLimiter(4), rules, true);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletResponse request(String path, String ip) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setRemoteAddr(ip);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    void parseAll_ReadsRoutesInOrder() {
+        assertAll(
+                () -> assertEquals(2, rules.size()),
+                () -> assertEquals(new RateLimitRule("/v1/productos/**", 2, 1), rules.get(0)),
+                () -> assertEquals(new RateLimitRule("/graphql", 1, 1), rules.get(1)),
+                () -> assertThrows(IllegalArgumentException.class, () -> RateLimitRule.parseAll("/v1/**=diez")),
+                () -> assertThrows(IllegalArgumentException.class, () -> RateLimitRule.parseAll("/v1/**=0:1"))
+        );
+    }
+
+    @Test
+    void doFilter_WithinLimit_AddsRateLimitHeaders() throws Exception {
+        MockHttpServletResponse response = request("/v1/productos", "10.0.0.1");
+
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertEquals("2", response.getHeader("RateLimit-Limit")),
+                () -> assertEquals("1", response.getHeader("RateLimit-Remaining")),
+                () -> assertEquals("1", response.getHeader("RateLimit-Reset")),
+                () -> assertEquals("2;w=2", response.getHeader("RateLimit-Policy"))
+        );
+    }
+
+    @Test
+    void doFilter_OverLimit_Returns429WithRetryAfter() throws Exception {
+        request("/graphql", "10.0.0.1");
+
+        MockHttpServletResponse response = request("/graphql", "10.0.0.1");
+
+        assertAll(
+                () -> assertEquals(429, response.getStatus()),
+                () -> assertEquals("1", response.getHeader("Retry-After")),
+                () -> assertEquals("0", response.getHeader("RateLimit-Remaining"))
+        );
+    }
+
+    @Test
+    void doFilter_AnonymousByIp_AuthenticatedByUser() throws Exception {
+        request("/graphql", "10.0.0.1");
+        // Otra IP tiene su propio cubo
+        MockHttpServletResponse otherIp = request("/graphql", "10.0.0.2");
+        // Y un usuario autenticado el suyo aunque venga de la misma IP
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "admin", null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        MockHttpServletResponse user = request("/graphql", "10.0.0.1");
+
+        assertAll(
+                () -> assertEquals(200, otherIp.getStatus()),
+                () -> assertEquals(200, user.getStatus())
+        );
+    }
+
+    @Test
+    void doFilter_NoMatchingRule_PassesWithoutHeaders() throws Exception {
+        MockHttpServletResponse response = request("/v1/categorias", "10.0.0.1");
+
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertNull(response.getHeader("RateLimit-Limit"))
+        );
+    }
+
+    @Test
+    void doFilter_Disabled_PassesWithoutHeaders() throws Exception {
+        RateLimitFilter disabled = new RateLimitFilter(new LocalRateLimiter(4), rules, false);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/graphql");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        disabled.doFilter(request, response, new MockFilterChain());
+        disabled.doFilter(new MockHttpServletRequest("GET", "/graphql"), response, new MockFilterChain());
+
+        assertNull(response.getHeader("RateLimit-Limit"));
+    }
+}
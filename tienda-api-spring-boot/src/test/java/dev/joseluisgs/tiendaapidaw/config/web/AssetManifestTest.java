@@ -0,0 +1,41 @@
+package dev.joseluisgs.tiendaapidaw.config.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AssetManifestTest {
+
+    @Test
+    void url_InManifest_Fingerprinted() {
+        AssetManifest assets = new AssetManifest(new ByteArrayResource(
+                "images/favicon.png=images/favicon-0123456789abcdef.png\n".getBytes(StandardCharsets.ISO_8859_1)));
+
+        assertAll(
+                () -> assertEquals("/assets/images/favicon-0123456789abcdef.png", assets.url("images/favicon.png")),
+                () -> assertEquals("/assets/images/favicon-0123456789abcdef.png", assets.url("/images/favicon.png")),
+                () -> assertEquals(1, assets.size())
+        );
+    }
+
+    @Test
+    void url_NotInManifest_PlainPath() {
+        AssetManifest assets = new AssetManifest(new ByteArrayResource(new byte[0]));
+
+        assertEquals("/images/thymeleaf.png", assets.url("images/thymeleaf.png"));
+    }
+
+    @Test
+    void url_NoManifest_PlainPath() {
+        AssetManifest assets = new AssetManifest(new ClassPathResource("no-existe-manifest.properties"));
+
+        assertAll(
+                () -> assertEquals("/images/favicon.png", assets.url("images/favicon.png")),
+                () -> assertEquals(0, assets.size())
+        );
+    }
+}
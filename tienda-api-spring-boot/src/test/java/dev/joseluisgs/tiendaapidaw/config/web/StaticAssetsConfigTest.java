@@ -0,0 +1,61 @@
+package dev.joseluisgs.tiendaapidaw.config.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// El recurso de prueba y su .gz están en src/test/resources/static/assets
+@SpringBootTest
+@AutoConfigureMockMvc
+class StaticAssetsConfigTest {
+    private static final String ASSET = "/assets/css/test-0123456789abcdef.css";
+    private static final String CONTENT = "body { color: #333; }\n";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void asset_AcceptsGzip_ServesGzipImmutable() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get(ASSET).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(HttpStatus.OK.value(), response.getStatus()),
+                () -> assertTrue(response.getHeader(HttpHeaders.CACHE_CONTROL).contains("immutable")),
+                () -> assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING)),
+                () -> assertTrue(response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT_ENCODING)),
+                () -> assertEquals(CONTENT, gunzip(response.getContentAsByteArray()))
+        );
+    }
+
+    @Test
+    void asset_WithoutGzip_ServesPlainImmutable() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get(ASSET))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(HttpStatus.OK.value(), response.getStatus()),
+                () -> assertTrue(response.getHeader(HttpHeaders.CACHE_CONTROL).contains("immutable")),
+                () -> assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING)),
+                () -> assertEquals(CONTENT, response.getContentAsString(StandardCharsets.UTF_8))
+        );
+    }
+
+    private String gunzip(byte[] content) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
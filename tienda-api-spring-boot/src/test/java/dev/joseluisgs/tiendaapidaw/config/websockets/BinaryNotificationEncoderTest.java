@@ -0,0 +1,72 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.dto.ProductoNotificationResponse;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryNotificationEncoderTest {
+    private final BinaryNotificationEncoder encoder = new BinaryNotificationEncoder();
+    private final ObjectMapper cbor = new CBORMapper();
+
+    private final Notificacion<ProductoNotificationResponse> notificacion = new Notificacion<>(
+            "PRODUCTOS",
+            Notificacion.Tipo.UPDATE,
+            new ProductoNotificationResponse(1L, "Babolat", "Aero 98", "Raqueta de tenis", 199.99,
+                    "https://via.placeholder.com/150", 10, "DEPORTES", "123e4567-e89b-12d3-a456-426614174000",
+                    false, "2025-01-01T10:00:00", "2025-01-02T10:00:00.123"),
+            "2025-01-03T10:00:00.5",
+            7
+    );
+
+    private long epochMillis(String localDateTime) {
+        return LocalDateTime.parse(localDateTime).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Test
+    void encode_ShouldWriteCborWithEpochMillisTimestamps() throws Exception {
+        // Act
+        var frame = encoder.encode(notificacion);
+        JsonNode decoded = cbor.readTree(frame.getPayload().array());
+
+        // Assert
+        assertAll(
+                () -> assertEquals("PRODUCTOS", decoded.get("entity").asText()),
+                () -> assertEquals(7, decoded.get("sequence").asLong()),
+                () -> assertEquals(epochMillis("2025-01-03T10:00:00.5"), decoded.get("createdAt").asLong()),
+                () -> assertEquals(epochMillis("2025-01-01T10:00:00"), decoded.get("data").get("createdAt").asLong()),
+                () -> assertEquals(epochMillis("2025-01-02T10:00:00.123"), decoded.get("data").get("updatedAt").asLong()),
+                () -> assertEquals("Aero 98", decoded.get("data").get("modelo").asText())
+        );
+    }
+
+    @Test
+    void encode_ShouldConvertTimestamps_WhenDataComesFromAnotherNode() throws Exception {
+        // Arrange: la notificación llega de Redis con los datos como árbol JSON
+        ObjectMapper json = new ObjectMapper();
+        Notificacion<JsonNode> remote = new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE,
+                json.valueToTree(notificacion.data()), notificacion.createdAt(), 8);
+
+        // Act
+        JsonNode decoded = cbor.readTree(encoder.encode(remote).getPayload().array());
+
+        // Assert
+        assertEquals(epochMillis("2025-01-01T10:00:00"), decoded.get("data").get("createdAt").asLong());
+    }
+
+    @Test
+    void encode_ShouldBeSmallerThanJson() throws Exception {
+        byte[] json = new ObjectMapper().writeValueAsBytes(notificacion);
+
+        int binary = encoder.encode(notificacion).getPayloadLength();
+
+        assertTrue(binary < json.length, "CBOR " + binary + " bytes, JSON " + json.length + " bytes");
+    }
+}
@@ -0,0 +1,110 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class HeartbeatMonitorTest {
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private HeartbeatMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        // Ping cada 100 ms repartido en 2 huecos, se cierra tras 2 pings sin respuesta
+        monitor = new HeartbeatMonitor(100, 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+        executor.shutdownNow();
+    }
+
+    private BufferedWebSocketSession session(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return new BufferedWebSocketSession(session, 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST, executor);
+    }
+
+    @Test
+    void tick_ShouldCloseSession_WhenPongsAreMissed() throws Exception {
+        // Arrange: cliente que nunca contesta
+        BufferedWebSocketSession dead = session("dead");
+
+        // Act
+        monitor.register(dead);
+
+        // Assert
+        verify(dead.getDelegate(), timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(dead.getDelegate(), atLeast(2)).sendMessage(any(PingMessage.class));
+        assertEquals(1, monitor.getStats().sessionsReaped());
+        assertEquals(0, monitor.getStats().sessions());
+    }
+
+    @Test
+    void tick_ShouldNotCountPings_ThatAreStillQueued() throws Exception {
+        // Arrange: cliente con un envío bloqueado, los pings se quedan en su buffer
+        BufferedWebSocketSession stuck = session("stuck");
+        var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(stuck.getDelegate()).sendMessage(any());
+        stuck.sendMessage(new TextMessage("bloqueado"));
+
+        // Act
+        monitor.register(stuck);
+        Thread.sleep(500);
+
+        // Assert: ningún ping ha salido, así que no se cierra por pongs perdidos
+        try {
+            assertAll(
+                    () -> verify(stuck.getDelegate(), never()).close(any(CloseStatus.class)),
+                    () -> assertEquals(0, monitor.getStats().pingsSent()),
+                    () -> assertEquals(0, monitor.getStats().sessionsReaped())
+            );
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void pongReceived_ShouldKeepSessionAlive_AndRecordRtt() throws Exception {
+        // Arrange: cliente que contesta cada ping con un pong con el mismo payload
+        BufferedWebSocketSession alive = session("alive");
+        doAnswer(invocation -> {
+            PingMessage ping = invocation.getArgument(0);
+            monitor.pongReceived("alive", new PongMessage(ping.getPayload()));
+            return null;
+        }).when(alive.getDelegate()).sendMessage(any(PingMessage.class));
+
+        // Act
+        monitor.register(alive);
+        Thread.sleep(500);
+
+        // Assert
+        var stats = monitor.getStats();
+        assertAll(
+                () -> verify(alive.getDelegate(), never()).close(any(CloseStatus.class)),
+                () -> assertTrue(stats.pongsReceived() >= 3),
+                () -> assertEquals(0, stats.sessionsReaped()),
+                () -> assertTrue(stats.maxRtt() >= stats.avgRtt() && stats.avgRtt() >= 0)
+        );
+    }
+}
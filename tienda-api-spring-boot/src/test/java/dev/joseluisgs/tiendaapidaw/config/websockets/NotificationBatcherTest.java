@@ -0,0 +1,63 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationBatcherTest {
+    private final List<List<NotificationBatcher.PendingNotification>> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch flushed = new CountDownLatch(1);
+    private final NotificationBatcher batcher = new NotificationBatcher(50, batch -> {
+        batches.add(batch);
+        flushed.countDown();
+    });
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+    }
+
+    private Notificacion<String> notificacion(Notificacion.Tipo tipo, String data) {
+        return new Notificacion<>("PRODUCTOS", tipo, data, "2025-01-01T00:00");
+    }
+
+    @Test
+    void add_ShouldCollapseCreateThenUpdate_IntoCreateWithLatestState() throws Exception {
+        // Act
+        batcher.add(notificacion(Notificacion.Tipo.CREATE, "v1"), "PRODUCTOS:1", List.of("producto:1", "categoria:deportes"));
+        batcher.add(notificacion(Notificacion.Tipo.UPDATE, "v2"), "PRODUCTOS:1", List.of("producto:1", "categoria:ocio"));
+
+        // Assert: un lote con un CREATE del último estado y los temas de las dos categorías
+        assertTrue(flushed.await(1, TimeUnit.SECONDS));
+        var pending = batches.getFirst().getFirst();
+        assertAll(
+                () -> assertEquals(1, batches.size()),
+                () -> assertEquals(1, batches.getFirst().size()),
+                () -> assertEquals(Notificacion.Tipo.CREATE, pending.notificacion().type()),
+                () -> assertEquals("v2", pending.notificacion().data()),
+                () -> assertTrue(pending.topics().containsAll(List.of("producto:1", "categoria:deportes", "categoria:ocio")))
+        );
+    }
+
+    @Test
+    void add_ShouldDropCreateThenDelete() throws Exception {
+        // Act
+        batcher.add(notificacion(Notificacion.Tipo.CREATE, "v1"), "PRODUCTOS:1", null);
+        batcher.add(notificacion(Notificacion.Tipo.DELETE, "v1"), "PRODUCTOS:1", null);
+        batcher.add(notificacion(Notificacion.Tipo.UPDATE, "otro"), "PRODUCTOS:2", null);
+
+        // Assert: solo queda la notificación del producto 2
+        assertTrue(flushed.await(1, TimeUnit.SECONDS));
+        assertAll(
+                () -> assertEquals(1, batches.getFirst().size()),
+                () -> assertEquals("otro", batches.getFirst().getFirst().notificacion().data())
+        );
+    }
+}
@@ -0,0 +1,71 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.dto.ProductoNotificationResponse;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark de tamaño y CPU de la codificación de notificaciones: JSON en texto frente a CBOR binario
+ * No se ejecuta con los test normales, lanzar con: ./gradlew test -Pbenchmark
+ */
+class NotificationEncodingBenchmark {
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final BinaryNotificationEncoder binaryEncoder = new BinaryNotificationEncoder();
+    private final Notificacion<ProductoNotificationResponse> notificacion = new Notificacion<>(
+            "PRODUCTOS",
+            Notificacion.Tipo.UPDATE,
+            new ProductoNotificationResponse(1L, "Babolat", "Aero 98", "Raqueta de tenis de competición", 199.99,
+                    "https://via.placeholder.com/150", 10, "DEPORTES", "123e4567-e89b-12d3-a456-426614174000",
+                    false, "2025-01-01T10:00:00.123456", "2025-01-01T10:00:00.123456"),
+            "2025-01-01T10:00:00.123456789",
+            123_456
+    );
+
+    @Test
+    void encode_JsonVersusCbor() throws Exception {
+        int jsonSize = mapper.writeValueAsBytes(notificacion).length;
+        int cborSize = binaryEncoder.encode(notificacion).getPayloadLength();
+
+        double jsonNanos = measure(() -> mapper.writeValueAsBytes(notificacion));
+        double cborNanos = measure(() -> binaryEncoder.encode(notificacion));
+
+        System.out.printf("Notificación de producto (media de %d codificaciones)%n", ITERATIONS);
+        System.out.printf("  JSON: %4d bytes  %8.1f ns/op%n", jsonSize, jsonNanos);
+        System.out.printf("  CBOR: %4d bytes  %8.1f ns/op  (%.0f%% del tamaño)%n", cborSize, cborNanos, 100.0 * cborSize / jsonSize);
+        assertTrue(cborSize < jsonSize);
+    }
+
+    /**
+     * Tiempo medio de una codificación, con calentamiento previo para que actúe el JIT
+     *
+     * @param encoding Codificación a medir
+     * @return Nanosegundos por codificación
+     */
+    private double measure(ThrowingSupplier encoding) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += encoding.get().hashCode();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += encoding.get().hashCode();
+        }
+        long elapsed = System.nanoTime() - start;
+        // Para que el JIT no elimine las codificaciones
+        if (sink == 42) {
+            System.out.println();
+        }
+        return (double) elapsed / ITERATIONS;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingSupplier {
+        Object get() throws Exception;
+    }
+}
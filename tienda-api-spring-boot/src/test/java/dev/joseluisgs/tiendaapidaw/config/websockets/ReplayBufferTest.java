@@ -0,0 +1,108 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayBufferTest {
+    private final ReplayBuffer replay = new ReplayBuffer(3);
+
+    private void send(int count) {
+        for (int i = 0; i < count; i++) {
+            var notificacion = new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "datos", "t").withSequence(replay.getEpoch(), replay.nextSequence());
+            replay.add(notificacion, new TextMessage("datos"), null);
+        }
+    }
+
+    @Test
+    void since_ShouldReturnMissedNotificationsInOrder() {
+        // Arrange
+        send(5);
+
+        // Act
+        var missed = replay.since(replay.getEpoch(), 3);
+
+        // Assert
+        assertAll(
+                () -> assertTrue(missed.isPresent()),
+                () -> assertEquals(2, missed.get().size()),
+                () -> assertEquals(4, missed.get().get(0).notificacion().sequence()),
+                () -> assertEquals(5, missed.get().get(1).notificacion().sequence())
+        );
+    }
+
+    @Test
+    void since_ShouldReturnEmptyList_WhenClientIsUpToDate() {
+        send(5);
+
+        var missed = replay.since(replay.getEpoch(), 5);
+
+        assertAll(
+                () -> assertTrue(missed.isPresent()),
+                () -> assertTrue(missed.get().isEmpty())
+        );
+    }
+
+    @Test
+    void since_ShouldRequireResync_WhenGapIsOutsideTheBuffer() {
+        send(5);
+
+        // Solo quedan la 3, 4 y 5, al que se quedó en la 1 le falta la 2
+        assertAll(
+                () -> assertTrue(replay.since(replay.getEpoch(), 1).isEmpty()),
+                () -> assertTrue(replay.since(replay.getEpoch(), 2).isPresent())
+        );
+    }
+
+    @Test
+    void since_ShouldRequireResync_WhenSequenceIsFromAnotherServer() {
+        send(2);
+
+        // Secuencia mayor que la actual: el servidor se ha reiniciado
+        assertTrue(replay.since(replay.getEpoch(), 100).isEmpty());
+    }
+
+    @Test
+    void since_ShouldRequireResync_WhenEpochDoesNotMatch() {
+        send(5);
+
+        // Misma secuencia pero de otra época (otro arranque) o sin época
+        assertAll(
+                () -> assertTrue(replay.since("otra", 3).isEmpty()),
+                () -> assertTrue(replay.since(null, 3).isEmpty())
+        );
+    }
+
+    @Test
+    void since_ShouldRequireResync_WhenThereIsAnUnsequencedGap() {
+        send(3);
+
+        // Una notificación sin secuencia después de la 3: quien se quedó en la 3 o antes se la puede haber perdido
+        replay.invalidate();
+        send(1);
+
+        assertAll(
+                () -> assertTrue(replay.since(replay.getEpoch(), 2).isEmpty()),
+                () -> assertTrue(replay.since(replay.getEpoch(), 3).isEmpty()),
+                () -> assertTrue(replay.since(replay.getEpoch(), 4).isPresent())
+        );
+    }
+
+    @Test
+    void add_ShouldStartOver_WhenEpochChanges() {
+        send(5);
+
+        // Llega una notificación de una época nueva (p.e. se ha reiniciado el contador del cluster)
+        var notificacion = new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "datos", "t").withSequence("nueva", 1);
+        replay.add(notificacion, new TextMessage("datos"), null);
+
+        assertAll(
+                () -> assertEquals("nueva", replay.getEpoch()),
+                () -> assertEquals(1, replay.getLastSequence()),
+                () -> assertTrue(replay.since("nueva", 0).isPresent()),
+                () -> assertEquals(1, replay.since("nueva", 0).get().size())
+        );
+    }
+}
@@ -0,0 +1,131 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.dto.ProductoNotificationResponse;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Benchmark de difusión de notificaciones a 10.000 sesiones
+ * No se ejecuta con los test normales, lanzar con: ./gradlew test -Pbenchmark
+ * <p>
+ * Compara la forma anterior (un TextMessage por sesión creado desde el String, que se vuelve a codificar
+ * en cada sesión) con la actual (se serializa una vez a bytes y todas las sesiones comparten el frame)
+ */
+class WebSocketFanOutBenchmark {
+    private static final int SESSIONS = 10_000;
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 20;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Notificacion<ProductoNotificationResponse> notificacion = new Notificacion<>(
+            "PRODUCTOS",
+            Notificacion.Tipo.UPDATE,
+            new ProductoNotificationResponse(1L, "Babolat", "Aero 98", "Raqueta de tenis de competición", 199.99,
+                    "https://via.placeholder.com/150", 10, "DEPORTES", "123e4567-e89b-12d3-a456-426614174000",
+                    false, "2025-01-01T10:00:00", "2025-01-01T10:00:00"),
+            "2025-01-01T10:00:00"
+    );
+
+    private final List<WebSocketSession> sessions = new ArrayList<>();
+    private final AtomicReference<CountDownLatch> delivered = new AtomicReference<>(new CountDownLatch(0));
+    private WebSocketHandler handler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        handler = new WebSocketHandler("Benchmark", mapper, 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < SESSIONS; i++) {
+            WebSocketSession session = mock(WebSocketSession.class, withSettings().stubOnly());
+            when(session.getId()).thenReturn("session-" + i);
+            when(session.isOpen()).thenReturn(true);
+            // Cada sesión "escribe" los bytes del frame como haría el contenedor
+            doAnswer(invocation -> {
+                WebSocketMessage<?> message = invocation.getArgument(0);
+                message.getPayloadLength();
+                if (message instanceof TextMessage text) {
+                    text.asBytes();
+                }
+                delivered.get().countDown();
+                return null;
+            }).when(session).sendMessage(any());
+            sessions.add(session);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        handler.destroy();
+    }
+
+    @Test
+    void fanOut_EncodePerSession_VersusEncodeOnce() throws Exception {
+        // Antes: una notificación serializada a String y un TextMessage nuevo por sesión, enviado en línea
+        long before = measure(() -> {
+            String json = mapper.writeValueAsString(notificacion);
+            for (WebSocketSession session : sessions) {
+                if (session.isOpen()) {
+                    session.sendMessage(new TextMessage(json));
+                }
+            }
+        });
+
+        // Ahora: el handler serializa una vez a bytes y encola el mismo frame en el buffer de cada sesión
+        // Conectamos las sesiones y esperamos a que reciban el saludo inicial
+        delivered.set(new CountDownLatch(SESSIONS));
+        for (WebSocketSession session : sessions) {
+            handler.afterConnectionEstablished(session);
+        }
+        assertTrue(delivered.get().await(30, TimeUnit.SECONDS), "No se ha saludado a todas las sesiones");
+        long after = measure(() -> handler.sendNotification(notificacion, "PRODUCTOS:1", null));
+
+        System.out.printf("Fan-out a %d sesiones (media de %d rondas)%n", SESSIONS, ROUNDS);
+        System.out.printf("  codificando por sesión: %.2f ms%n", before / 1_000_000.0);
+        System.out.printf("  codificando una vez:    %.2f ms%n", after / 1_000_000.0);
+        assertTrue(after > 0 && before > 0);
+    }
+
+    /**
+     * Mide el tiempo medio hasta que todas las sesiones han recibido el mensaje
+     *
+     * @param fanOut Difusión a medir
+     * @return Nanosegundos por ronda
+     */
+    private long measure(ThrowingRunnable fanOut) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            runRound(fanOut);
+        }
+        long total = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            total += runRound(fanOut);
+        }
+        return total / ROUNDS;
+    }
+
+    private long runRound(ThrowingRunnable fanOut) throws Exception {
+        delivered.set(new CountDownLatch(SESSIONS));
+        long start = System.nanoTime();
+        fanOut.run();
+        assertTrue(delivered.get().await(30, TimeUnit.SECONDS), "No se ha entregado a todas las sesiones");
+        return System.nanoTime() - start;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
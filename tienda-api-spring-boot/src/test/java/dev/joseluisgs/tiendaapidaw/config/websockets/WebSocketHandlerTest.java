@@ -0,0 +1,449 @@
+package dev.joseluisgs.tiendaapidaw.config.websockets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WebSocketHandlerTest {
+
+    private WebSocketHandler handler;
+
+    @AfterEach
+    void tearDown() {
+        handler.destroy();
+    }
+
+    // Cliente conectado que responde al instante
+    private WebSocketSession fastClient(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    // Cliente conectado que tarda en recibir cada mensaje (red móvil mala)
+    private WebSocketSession slowClient(String id, long delayMillis) throws Exception {
+        WebSocketSession session = fastClient(id);
+        doAnswer(invocation -> {
+            Thread.sleep(delayMillis);
+            return null;
+        }).when(session).sendMessage(any(WebSocketMessage.class));
+        return session;
+    }
+
+    @Test
+    void sendMessage_ShouldNotWaitForSlowClients() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        WebSocketSession slow1 = slowClient("slow-1", 500);
+        WebSocketSession slow2 = slowClient("slow-2", 500);
+        WebSocketSession fast = fastClient("fast");
+        handler.afterConnectionEstablished(slow1);
+        handler.afterConnectionEstablished(slow2);
+        handler.afterConnectionEstablished(fast);
+
+        // Act
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            handler.sendMessage("mensaje " + i);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert: difundir no espera a los clientes lentos y el rápido lo recibe todo (saludo + 5)
+        assertTrue(elapsedMillis < 250, "La difusión ha tardado " + elapsedMillis + " ms");
+        verify(fast, timeout(1000).times(6)).sendMessage(any(WebSocketMessage.class));
+    }
+
+    @Test
+    void sendMessage_ShouldDropOldest_WhenBufferIsFull() throws Exception {
+        // Arrange: el buffer solo admite unos pocos mensajes
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 64, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        CountDownLatch blocked = new CountDownLatch(1);
+        WebSocketSession slow = fastClient("slow");
+        doAnswer(invocation -> {
+            blocked.await(2, TimeUnit.SECONDS);
+            return null;
+        }).when(slow).sendMessage(any(WebSocketMessage.class));
+        handler.afterConnectionEstablished(slow);
+
+        // Act
+        for (int i = 0; i < 50; i++) {
+            handler.sendMessage("mensaje número " + i);
+        }
+        blocked.countDown();
+
+        // Assert: se han descartado mensajes pero la sesión sigue abierta
+        verify(slow, timeout(1000).atLeast(2)).sendMessage(any(WebSocketMessage.class));
+        verify(slow, after(300).atMost(10)).sendMessage(any(WebSocketMessage.class));
+        verify(slow, never()).close(any(CloseStatus.class));
+    }
+
+    @Test
+    void sendMessage_ShouldCoalesceByKey_WhenClientIsSlow() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.COALESCE);
+        CountDownLatch blocked = new CountDownLatch(1);
+        WebSocketSession slow = fastClient("slow");
+        doAnswer(invocation -> {
+            blocked.await(2, TimeUnit.SECONDS);
+            return null;
+        }).when(slow).sendMessage(any(WebSocketMessage.class));
+        handler.afterConnectionEstablished(slow);
+
+        // Act: mientras el saludo está bloqueado llegan 20 cambios del mismo producto
+        for (int i = 0; i < 20; i++) {
+            handler.sendMessage("{\"id\":1,\"stock\":" + i + "}", "PRODUCTOS:1");
+        }
+        blocked.countDown();
+
+        // Assert: saludo + el último estado del producto
+        verify(slow, after(500).times(2)).sendMessage(any(WebSocketMessage.class));
+    }
+
+    @Test
+    void sendMessage_ShouldDisconnectSlowClient_WhenBufferIsFull() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 64, BufferedWebSocketSession.OverflowPolicy.DISCONNECT);
+        WebSocketSession slow = slowClient("slow", 1000);
+        WebSocketSession fast = fastClient("fast");
+        handler.afterConnectionEstablished(slow);
+        handler.afterConnectionEstablished(fast);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            handler.sendMessage("mensaje número " + i);
+        }
+
+        // Assert
+        assertAll(
+                () -> verify(slow, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE),
+                () -> verify(fast, timeout(1000).times(11)).sendMessage(any(WebSocketMessage.class)),
+                () -> verify(fast, never()).close(any(CloseStatus.class))
+        );
+    }
+
+    @Test
+    void sendMessage_ShouldDisconnectClient_WhenSendTimeLimitIsExceeded() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 100, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        WebSocketSession stuck = slowClient("stuck", 2000);
+        handler.afterConnectionEstablished(stuck);
+
+        // Act: el saludo se queda bloqueado más tiempo que el límite
+        Thread.sleep(300);
+        handler.sendMessage("mensaje");
+
+        // Assert
+        verify(stuck, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    void sendNotification_ShouldShareTheSameEncodedFrame_WithAllClients() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        WebSocketSession client1 = fastClient("client-1");
+        WebSocketSession client2 = fastClient("client-2");
+        handler.afterConnectionEstablished(client1);
+        handler.afterConnectionEstablished(client2);
+        var notificacion = new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "datos", "2025-01-01T00:00");
+
+        // Act
+        handler.sendNotification(notificacion, "PRODUCTOS:1", null);
+
+        // Assert: saludo + notificación, y la notificación es el mismo objeto para los dos
+        ArgumentCaptor<WebSocketMessage<?>> captor1 = ArgumentCaptor.forClass(WebSocketMessage.class);
+        ArgumentCaptor<WebSocketMessage<?>> captor2 = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(client1, timeout(1000).times(2)).sendMessage(captor1.capture());
+        verify(client2, timeout(1000).times(2)).sendMessage(captor2.capture());
+        assertSame(captor1.getAllValues().get(1), captor2.getAllValues().get(1));
+    }
+
+    @Test
+    void sendNotification_ShouldOnlyReachSubscribedAndWildcardClients() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        WebSocketSession deportes = fastClient("deportes");
+        WebSocketSession producto42 = fastClient("producto-42");
+        WebSocketSession todo = fastClient("todo");
+        handler.afterConnectionEstablished(deportes);
+        handler.afterConnectionEstablished(producto42);
+        handler.afterConnectionEstablished(todo);
+        handler.handleTextMessage(deportes, new TextMessage("{\"action\":\"subscribe\",\"topics\":[\"categoria:DEPORTES\"]}"));
+        handler.handleTextMessage(producto42, new TextMessage("{\"action\":\"subscribe\",\"topics\":[\"producto:42\"]}"));
+        var notificacion = new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "datos", "2025-01-01T00:00");
+
+        // Act: cambia un producto de deportes que no es el 42
+        handler.sendNotification(notificacion, "PRODUCTOS:1",
+                List.of(SubscriptionIndex.topic("producto", 1L), SubscriptionIndex.topic("categoria", "DEPORTES")));
+
+        // Assert: saludo + confirmación de suscripción + notificación, y el del 42 no recibe la notificación
+        assertAll(
+                () -> verify(deportes, timeout(1000).times(3)).sendMessage(any(WebSocketMessage.class)),
+                () -> verify(todo, timeout(1000).times(2)).sendMessage(any(WebSocketMessage.class)),
+                () -> verify(producto42, after(300).times(2)).sendMessage(any(WebSocketMessage.class))
+        );
+    }
+
+    @Test
+    void handleTextMessage_ShouldGoBackToWildcard_WhenUnsubscribingFromEverything() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        WebSocketSession client = fastClient("client");
+        handler.afterConnectionEstablished(client);
+
+        // Act
+        handler.handleTextMessage(client, new TextMessage("{\"action\":\"subscribe\",\"topics\":[\"producto:1\"]}"));
+        handler.handleTextMessage(client, new TextMessage("{\"action\":\"unsubscribe\",\"topics\":[\"producto:1\"]}"));
+        handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.DELETE, "datos", "2025-01-01T00:00"),
+                "PRODUCTOS:2", List.of(SubscriptionIndex.topic("producto", 2L)));
+
+        // Assert: saludo + 2 confirmaciones + notificación
+        verify(client, timeout(1000).times(4)).sendMessage(any(WebSocketMessage.class));
+    }
+
+    @Test
+    void handleTextMessage_ShouldReplyError_WhenTopicsAreInvalid() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        WebSocketSession client = fastClient("client");
+        handler.afterConnectionEstablished(client);
+
+        // Act: un tema nulo y uno sin tipo
+        handler.handleTextMessage(client, new TextMessage("{\"action\":\"subscribe\",\"topics\":[\"producto:1\",null]}"));
+        handler.handleTextMessage(client, new TextMessage("{\"action\":\"subscribe\",\"topics\":[\"deportes\"]}"));
+
+        // Assert: saludo + 2 errores, y sigue siendo comodín
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(client, timeout(1000).times(3)).sendMessage(captor.capture());
+        var mapper = new ObjectMapper();
+        assertAll(
+                () -> assertEquals("ERROR", mapper.readTree(((TextMessage) captor.getAllValues().get(1)).getPayload()).get("type").asText()),
+                () -> assertEquals("ERROR", mapper.readTree(((TextMessage) captor.getAllValues().get(2)).getPayload()).get("type").asText())
+        );
+    }
+
+    @Test
+    void handleTextMessage_ShouldReplyError_WhenTooManyTopics() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        WebSocketSession client = fastClient("client");
+        handler.afterConnectionEstablished(client);
+        String topics = java.util.stream.IntStream.rangeClosed(0, SubscriptionIndex.DEFAULT_MAX_TOPICS_PER_SESSION)
+                .mapToObj(i -> "\"producto:" + i + "\"")
+                .collect(java.util.stream.Collectors.joining(","));
+
+        // Act
+        handler.handleTextMessage(client, new TextMessage("{\"action\":\"subscribe\",\"topics\":[" + topics + "]}"));
+
+        // Assert: saludo + error
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(client, timeout(1000).times(2)).sendMessage(captor.capture());
+        var response = new ObjectMapper().readTree(((TextMessage) captor.getAllValues().get(1)).getPayload());
+        assertEquals("ERROR", response.get("type").asText());
+    }
+
+    @Test
+    void sendNotification_ShouldMergeIntoOneFrame_ForBatchClients() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST,
+                new HeartbeatMonitor(30_000, 10, 3), 100, 1000);
+        WebSocketSession batch = fastClient("batch");
+        when(batch.getAcceptedProtocol()).thenReturn(WebSocketHandler.BATCH_SUBPROTOCOL);
+        WebSocketSession legacy = fastClient("legacy");
+        handler.afterConnectionEstablished(batch);
+        handler.afterConnectionEstablished(legacy);
+
+        // Act: se crea el producto 1, se actualiza dos veces y se actualiza el 2, todo dentro de la ventana
+        handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.CREATE, "v1", "t1"), "PRODUCTOS:1", null);
+        handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "v2", "t2"), "PRODUCTOS:1", null);
+        handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "v3", "t3"), "PRODUCTOS:1", null);
+        handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "otro", "t4"), "PRODUCTOS:2", null);
+
+        // Assert: el cliente de siempre recibe saludo + 4 frames, el de lotes saludo + un array con 2 notificaciones
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(legacy, timeout(1000).times(5)).sendMessage(any(WebSocketMessage.class));
+        verify(batch, timeout(1000).times(2)).sendMessage(captor.capture());
+        var lote = new ObjectMapper().readTree(((TextMessage) captor.getAllValues().get(1)).getPayload());
+        assertAll(
+                () -> assertTrue(lote.isArray()),
+                () -> assertEquals(2, lote.size()),
+                () -> assertEquals("CREATE", lote.get(0).get("type").asText()),
+                () -> assertEquals("v3", lote.get(0).get("data").asText()),
+                () -> assertEquals("otro", lote.get(1).get("data").asText())
+        );
+    }
+
+    @Test
+    void afterConnectionEstablished_ShouldReplayMissedNotifications_WhenClientResumes() throws Exception {
+        // Arrange: se envían 5 notificaciones, el cliente se había quedado en la 3
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST,
+                new HeartbeatMonitor(30_000, 10, 3), 100, 10);
+        for (int i = 1; i <= 5; i++) {
+            handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "v" + i, "t"), "PRODUCTOS:" + i, null);
+        }
+        WebSocketSession client = fastClient("client");
+        when(client.getUri()).thenReturn(URI.create("ws://localhost:3000/ws/v1/productos?sequence=" + handler.getEpoch() + ":3"));
+
+        // Act
+        handler.afterConnectionEstablished(client);
+
+        // Assert: saludo + notificaciones 4 y 5 + confirmación
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(client, timeout(1000).times(4)).sendMessage(captor.capture());
+        var mapper = new ObjectMapper();
+        var messages = captor.getAllValues();
+        assertAll(
+                () -> assertEquals(4, mapper.readTree(((TextMessage) messages.get(1)).getPayload()).get("sequence").asLong()),
+                () -> assertEquals(5, mapper.readTree(((TextMessage) messages.get(2)).getPayload()).get("sequence").asLong()),
+                () -> assertEquals("RESUMED", mapper.readTree(((TextMessage) messages.get(3)).getPayload()).get("type").asText())
+        );
+    }
+
+    @Test
+    void afterConnectionEstablished_ShouldRequireResync_WhenGapIsOutsideTheBuffer() throws Exception {
+        // Arrange: el buffer solo guarda 10 y se han enviado 20
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST,
+                new HeartbeatMonitor(30_000, 10, 3), 100, 10);
+        for (int i = 1; i <= 20; i++) {
+            handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "v" + i, "t"), "PRODUCTOS:" + i, null);
+        }
+        WebSocketSession client = fastClient("client");
+        when(client.getUri()).thenReturn(URI.create("ws://localhost:3000/ws/v1/productos?sequence=" + handler.getEpoch() + ":2"));
+
+        // Act
+        handler.afterConnectionEstablished(client);
+
+        // Assert: saludo + aviso de resincronización con la secuencia actual
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(client, timeout(1000).times(2)).sendMessage(captor.capture());
+        var response = new ObjectMapper().readTree(((TextMessage) captor.getAllValues().get(1)).getPayload());
+        assertAll(
+                () -> assertEquals("RESYNC_REQUIRED", response.get("type").asText()),
+                () -> assertEquals(20, response.get("sequence").asLong())
+        );
+    }
+
+    @Test
+    void afterConnectionEstablished_ShouldRequireResync_WhenEpochDoesNotMatch() throws Exception {
+        // Arrange: el cliente trae una secuencia válida pero de otro arranque del servidor
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST,
+                new HeartbeatMonitor(30_000, 10, 3), 100, 10);
+        for (int i = 1; i <= 5; i++) {
+            handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "v" + i, "t"), "PRODUCTOS:" + i, null);
+        }
+        WebSocketSession client = fastClient("client");
+        when(client.getUri()).thenReturn(URI.create("ws://localhost:3000/ws/v1/productos?sequence=anterior:3"));
+
+        // Act
+        handler.afterConnectionEstablished(client);
+
+        // Assert: saludo + aviso de resincronización con la época y la secuencia actuales
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(client, timeout(1000).times(2)).sendMessage(captor.capture());
+        var response = new ObjectMapper().readTree(((TextMessage) captor.getAllValues().get(1)).getPayload());
+        assertAll(
+                () -> assertEquals("RESYNC_REQUIRED", response.get("type").asText()),
+                () -> assertEquals(handler.getEpoch(), response.get("epoch").asText()),
+                () -> assertEquals(5, response.get("sequence").asLong())
+        );
+    }
+
+    @Test
+    void deliverUnsequenced_ShouldSendWithoutSequence_AndForceResync() throws Exception {
+        // Arrange: 3 notificaciones con secuencia y un cliente conectado
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST,
+                new HeartbeatMonitor(30_000, 10, 3), 100, 10);
+        for (int i = 1; i <= 3; i++) {
+            handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "v" + i, "t"), "PRODUCTOS:" + i, null);
+        }
+        WebSocketSession connected = fastClient("connected");
+        handler.afterConnectionEstablished(connected);
+
+        // Act: no se ha podido reservar secuencia en el cluster
+        handler.deliverUnsequenced(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "sin", "t"), "PRODUCTOS:4", null);
+        WebSocketSession resumed = fastClient("resumed");
+        when(resumed.getUri()).thenReturn(URI.create("ws://localhost:3000/ws/v1/productos?sequence=" + handler.getEpoch() + ":3"));
+        handler.afterConnectionEstablished(resumed);
+
+        // Assert: el conectado la recibe sin secuencia ni época, el que reanuda desde la 3 debe resincronizarse
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(connected, timeout(1000).times(2)).sendMessage(captor.capture());
+        var notificacion = new ObjectMapper().readTree(((TextMessage) captor.getAllValues().get(1)).getPayload());
+        ArgumentCaptor<WebSocketMessage<?>> resumedCaptor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(resumed, timeout(1000).times(2)).sendMessage(resumedCaptor.capture());
+        var response = new ObjectMapper().readTree(((TextMessage) resumedCaptor.getAllValues().get(1)).getPayload());
+        assertAll(
+                () -> assertEquals(0, notificacion.get("sequence").asLong()),
+                () -> assertTrue(notificacion.get("epoch").isNull()),
+                () -> assertEquals("RESYNC_REQUIRED", response.get("type").asText())
+        );
+    }
+
+    @Test
+    void sendNotification_ShouldSkipBinaryClients_WhenBinaryEncodingFails() throws Exception {
+        // Arrange: el JSON admite objetos vacíos pero CBOR no, así solo falla la codificación binaria
+        var mapper = new ObjectMapper().disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        handler = new WebSocketHandler("Test", mapper, 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        WebSocketSession binary = fastClient("binary");
+        when(binary.getAcceptedProtocol()).thenReturn(WebSocketHandler.BINARY_SUBPROTOCOL);
+        WebSocketSession text = fastClient("text");
+        handler.afterConnectionEstablished(binary);
+        handler.afterConnectionEstablished(text);
+
+        // Act
+        handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, new Object(), "2025-01-01T00:00"), "PRODUCTOS:1", null);
+
+        // Assert: el de texto la recibe, al binario no le llega en texto
+        verify(text, timeout(1000).times(2)).sendMessage(any(TextMessage.class));
+        verify(binary, after(300).times(1)).sendMessage(any());
+    }
+
+    @Test
+    void sendNotification_ShouldSendBinaryFrames_ToBinaryClients() throws Exception {
+        // Arrange
+        handler = new WebSocketHandler("Test", new ObjectMapper(), 10_000, 512 * 1024, BufferedWebSocketSession.OverflowPolicy.DROP_OLDEST);
+        WebSocketSession binary1 = fastClient("binary-1");
+        WebSocketSession binary2 = fastClient("binary-2");
+        when(binary1.getAcceptedProtocol()).thenReturn(WebSocketHandler.BINARY_SUBPROTOCOL);
+        when(binary2.getAcceptedProtocol()).thenReturn(WebSocketHandler.BINARY_SUBPROTOCOL);
+        WebSocketSession text = fastClient("text");
+        handler.afterConnectionEstablished(binary1);
+        handler.afterConnectionEstablished(binary2);
+        handler.afterConnectionEstablished(text);
+
+        // Act
+        handler.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "datos", "2025-01-01T00:00"), "PRODUCTOS:1", null);
+
+        // Assert: los binarios comparten el mismo frame binario y el de texto recibe el JSON
+        ArgumentCaptor<WebSocketMessage<?>> captor1 = ArgumentCaptor.forClass(WebSocketMessage.class);
+        ArgumentCaptor<WebSocketMessage<?>> captor2 = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(binary1, timeout(1000).times(2)).sendMessage(captor1.capture());
+        verify(binary2, timeout(1000).times(2)).sendMessage(captor2.capture());
+        verify(text, timeout(1000).times(2)).sendMessage(any(TextMessage.class));
+        assertAll(
+                () -> assertInstanceOf(BinaryMessage.class, captor1.getAllValues().get(1)),
+                () -> assertSame(captor1.getAllValues().get(1), captor2.getAllValues().get(1))
+        );
+    }
+}
@@ -0,0 +1,237 @@
+package dev.joseluisgs.tiendaapidaw.graphql.controller;
+
+import dev.joseluisgs.tiendaapidaw.rest.categorias.models.Categoria;
+import dev.joseluisgs.tiendaapidaw.rest.productos.models.Producto;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.graphql.AutoConfigureGraphQl;
+import org.springframework.boot.test.autoconfigure.graphql.tester.AutoConfigureGraphQlTester;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.graphql.test.tester.GraphQlTester;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Regresión del N + 1: se cuentan las consultas a la base de datos de las consultas anidadas
+// Y la paginación con cursor de las conexiones
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "graphql.pagination.max-size=10",
+        "graphql.pagination.max-list-size=10"
+})
+@AutoConfigureGraphQl
+@AutoConfigureGraphQlTester
+@Import(ProductoCategoriaGraphQLController.class)
+class ProductoCategoriaGraphQLControllerTest {
+    private static final int CATEGORIAS = 5;
+    private static final int PRODUCTOS_POR_CATEGORIA = 3;
+    private static final int PRODUCTOS = CATEGORIAS * PRODUCTOS_POR_CATEGORIA;
+    private static final int MAX_LIST_SIZE = 10;
+
+    @Autowired
+    private GraphQlTester graphQlTester;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        // Solo los datos de la prueba, sin los de data.sql
+        entityManager.getEntityManager().createQuery("DELETE FROM Producto").executeUpdate();
+        entityManager.getEntityManager().createQuery("DELETE FROM Categoria").executeUpdate();
+        for (int i = 0; i < CATEGORIAS; i++) {
+            crearCategoria("GRAPHQL_" + i, PRODUCTOS_POR_CATEGORIA);
+        }
+        reiniciar();
+    }
+
+    @Test
+    void categoriasConProductos_UnaConsultaPorNivel() {
+        graphQlTester.document("{ categorias { nombre productos { marca categoria { nombre } } } }")
+                .execute()
+                .path("categorias[*].productos[*].marca").entityList(String.class).hasSize(PRODUCTOS);
+
+        // Categorías y productos de todas las categorías, ids y productos (antes 1 + una por categoría)
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void productosConCategoria_UnaConsulta() {
+        graphQlTester.document("{ productos { marca categoria { nombre } } }")
+                .execute()
+                .path("productos[*].categoria.nombre").entityList(String.class).hasSize(MAX_LIST_SIZE);
+
+        // Productos con su categoría en la misma consulta (antes una más por cada categoría)
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void productosConCategoriaYProductos_NoCreceConLosDatos() {
+        graphQlTester.document("{ productos { categoria { productos { marca } } } }")
+                .execute()
+                .path("productos").entityList(Object.class).hasSize(MAX_LIST_SIZE);
+
+        // Productos con su categoría y los productos de todas sus categorías (ids limitados por categoría y productos)
+        assertTrue(statistics.getPrepareStatementCount() <= 3,
+                "Consultas: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void categoriasConProductos_AnidadaLimitadaPorCategoria() {
+        // Una categoría con más productos que el límite
+        crearCategoria("GRAPHQL_GRANDE", MAX_LIST_SIZE + 5);
+        reiniciar();
+
+        graphQlTester.document("{ categoriasByNombre(nombre: \"graphql_grande\") { productos { id } } }")
+                .execute()
+                .path("categoriasByNombre[0].productos").entityList(Object.class).hasSize(MAX_LIST_SIZE);
+        graphQlTester.document("{ categorias { productos { id } } }")
+                .execute()
+                .path("categorias[*].productos[*].id").entityList(Long.class).hasSize(PRODUCTOS + MAX_LIST_SIZE);
+    }
+
+    @Test
+    void categoriasByNombre_Limitada() {
+        for (int i = 0; i < MAX_LIST_SIZE; i++) {
+            crearCategoria("GRAPHQL_EXTRA_" + i, 0);
+        }
+        reiniciar();
+
+        graphQlTester.document("{ categoriasByNombre(nombre: \"graphql\") { nombre } }")
+                .execute()
+                .path("categoriasByNombre").entityList(Object.class).hasSize(MAX_LIST_SIZE);
+    }
+
+    @Test
+    void productos_Obsoleta_Limitada() {
+        // Sin paginar solo devuelve max-list-size, aunque haya más
+        graphQlTester.document("{ productos { id } }")
+                .execute()
+                .path("productos").entityList(Object.class).hasSize(MAX_LIST_SIZE);
+    }
+
+    @Test
+    void productosConnection_RecorreTodasLasPaginas() {
+        List<Long> ids = new ArrayList<>();
+        String after = null;
+        boolean hasNextPage = true;
+        int paginas = 0;
+        while (hasNextPage) {
+            GraphQlTester.Response response = graphQlTester.document("""
+                            query($after: String) {
+                              productosConnection(first: 4, after: $after) {
+                                edges { cursor node { id marca } }
+                                pageInfo { hasNextPage hasPreviousPage endCursor }
+                              }
+                            }""")
+                    .variable("after", after)
+                    .execute();
+            ids.addAll(response.path("productosConnection.edges[*].node.id").entityList(Long.class).get());
+            assertEquals(after != null, response.path("productosConnection.pageInfo.hasPreviousPage").entity(Boolean.class).get());
+            hasNextPage = response.path("productosConnection.pageInfo.hasNextPage").entity(Boolean.class).get();
+            after = response.path("productosConnection.pageInfo.endCursor").entity(String.class).get();
+            paginas++;
+        }
+
+        assertAll(
+                () -> assertEquals(PRODUCTOS, ids.size()),
+                () -> assertEquals(ids.stream().sorted().distinct().toList(), ids),
+                () -> assertEquals(4, paginas),
+                // Una consulta por página, con la categoría incluida
+                () -> assertEquals(4, statistics.getPrepareStatementCount())
+        );
+    }
+
+    @Test
+    void productosConnection_ConFiltro() {
+        graphQlTester.document("""
+                        {
+                          productosConnection(first: 10, filter: { categoria: "graphql_1", modelo: "modelo 2" }) {
+                            edges { node { marca modelo categoria { nombre } } }
+                            pageInfo { hasNextPage }
+                          }
+                        }""")
+                .execute()
+                .path("productosConnection.edges[*].node.categoria.nombre").entityList(String.class).containsExactly("GRAPHQL_1")
+                .path("productosConnection.pageInfo.hasNextPage").entity(Boolean.class).isEqualTo(false);
+    }
+
+    @Test
+    void productosConnection_FirstMayorQueElMaximo_Error() {
+        graphQlTester.document("{ productosConnection(first: 11) { edges { cursor } } }")
+                .execute()
+                .errors()
+                .expect(error -> error.getErrorType() == ErrorType.BAD_REQUEST)
+                .verify();
+    }
+
+    @Test
+    void productosConnection_CursorNoValido_Error() {
+        String cursorDeCategoria = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("categoria:" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8));
+
+        graphQlTester.document("query($after: String) { productosConnection(after: $after) { edges { cursor } } }")
+                .variable("after", cursorDeCategoria)
+                .execute()
+                .errors()
+                .expect(error -> error.getErrorType() == ErrorType.BAD_REQUEST)
+                .verify();
+    }
+
+    @Test
+    void categoriasConnection_Paginas() {
+        GraphQlTester.Response primera = graphQlTester.document("""
+                        { categoriasConnection(first: 3, filter: { nombre: "graphql" }) { edges { node { nombre } } pageInfo { hasNextPage endCursor } } }""")
+                .execute();
+        primera.path("categoriasConnection.edges").entityList(Object.class).hasSize(3)
+                .path("categoriasConnection.pageInfo.hasNextPage").entity(Boolean.class).isEqualTo(true);
+        String after = primera.path("categoriasConnection.pageInfo.endCursor").entity(String.class).get();
+
+        graphQlTester.document("""
+                        query($after: String) { categoriasConnection(first: 3, after: $after, filter: { nombre: "graphql" }) { edges { node { nombre } } pageInfo { hasNextPage } } }""")
+                .variable("after", after)
+                .execute()
+                .path("categoriasConnection.edges").entityList(Object.class).hasSize(CATEGORIAS - 3)
+                .path("categoriasConnection.pageInfo.hasNextPage").entity(Boolean.class).isEqualTo(false);
+    }
+
+    private void crearCategoria(String nombre, int productos) {
+        Categoria categoria = entityManager.merge(new Categoria(null, nombre, LocalDateTime.now(), LocalDateTime.now(), false));
+        for (int j = 0; j < productos; j++) {
+            entityManager.merge(Producto.builder()
+                    .marca("Marca " + nombre)
+                    .modelo("Modelo " + j)
+                    .descripcion("Producto de prueba")
+                    .precio(10.0)
+                    .imagen("http://placeimg.com/640/480/people")
+                    .stock(1)
+                    .uuid(UUID.randomUUID())
+                    .categoria(categoria)
+                    .build());
+        }
+    }
+
+    private void reiniciar() {
+        entityManager.flush();
+        // Sin nada en el contexto de persistencia, como en una petición nueva
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+}
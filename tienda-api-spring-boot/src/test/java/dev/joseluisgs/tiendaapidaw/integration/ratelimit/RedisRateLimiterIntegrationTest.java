@@ -0,0 +1,84 @@
+package dev.joseluisgs.tiendaapidaw.integration.ratelimit;
+
+import dev.joseluisgs.tiendaapidaw.config.ratelimit.LocalRateLimiter;
+import dev.joseluisgs.tiendaapidaw.config.ratelimit.RateLimitDecision;
+import dev.joseluisgs.tiendaapidaw.config.ratelimit.RateLimitRule;
+import dev.joseluisgs.tiendaapidaw.config.ratelimit.RedisRateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 🎯 OBJETIVO: Testear el límite de peticiones compartido entre nodos con Redis
+ * <p>
+ * 🗄️ REDIS: TestContainers Redis 7, cada "nodo" es un RedisRateLimiter con su propio limitador local de respaldo
+ * <p>
+ * ✅ CASOS CUBIERTOS:
+ * - Los dos nodos gastan fichas del mismo cubo
+ * - El cubo caduca en Redis cuando ya estaría lleno
+ */
+@DisplayName("🚦 Redis Integration Tests - Límite de peticiones entre nodos")
+@Testcontainers
+public class RedisRateLimiterIntegrationTest {
+    private static final String KEY = "/v1/productos/**|user:admin";
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine")
+            .withExposedPorts(6379);
+
+    private final RateLimitRule rule = new RateLimitRule("/v1/productos/**", 4, 2);
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(redis.getHost(), redis.getFirstMappedPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.delete("tienda:ratelimit:" + KEY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void tryConsume_TwoNodes_ShareBudget() {
+        RedisRateLimiter nodeA = new RedisRateLimiter(redisTemplate, new LocalRateLimiter(4));
+        RedisRateLimiter nodeB = new RedisRateLimiter(redisTemplate, new LocalRateLimiter(4));
+
+        nodeA.tryConsume(KEY, rule);
+        nodeB.tryConsume(KEY, rule);
+        nodeA.tryConsume(KEY, rule);
+        RateLimitDecision last = nodeB.tryConsume(KEY, rule);
+        RateLimitDecision rejected = nodeA.tryConsume(KEY, rule);
+
+        assertAll(
+                () -> assertTrue(last.allowed()),
+                () -> assertEquals(0, last.remaining()),
+                () -> assertFalse(rejected.allowed()),
+                () -> assertEquals(1, rejected.retryAfter())
+        );
+    }
+
+    @Test
+    void tryConsume_SetsExpiryToRefillTime() {
+        new RedisRateLimiter(redisTemplate, new LocalRateLimiter(4)).tryConsume(KEY, rule);
+
+        Long ttl = redisTemplate.getExpire("tienda:ratelimit:" + KEY);
+
+        // 4 fichas a 2 por segundo: 2 s más 1 s de margen
+        assertTrue(ttl != null && ttl > 0 && ttl <= 3);
+    }
+}
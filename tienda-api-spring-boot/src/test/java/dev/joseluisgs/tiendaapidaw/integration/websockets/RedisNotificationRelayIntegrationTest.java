@@ -0,0 +1,142 @@
+package dev.joseluisgs.tiendaapidaw.integration.websockets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.joseluisgs.tiendaapidaw.config.websockets.RedisNotificationRelay;
+import dev.joseluisgs.tiendaapidaw.config.websockets.WebSocketHandler;
+import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 🎯 OBJETIVO: Testear la difusión de notificaciones WebSocket entre dos nodos con Redis pub/sub
+ * <p>
+ * 🗄️ REDIS: TestContainers Redis 7, cada "nodo" es un WebSocketHandler con su relay y su listener
+ * <p>
+ * ✅ CASOS CUBIERTOS:
+ * - Una notificación publicada en un nodo llega a los clientes del otro
+ * - El nodo que publica no la entrega dos veces a sus clientes
+ * - La secuencia es global entre nodos
+ */
+@DisplayName("📡 Redis Integration Tests - WebSockets entre nodos")
+@Testcontainers
+public class RedisNotificationRelayIntegrationTest {
+    private static final String CHANNEL = "tienda:ws:test:productos";
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine")
+            .withExposedPorts(6379);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private LettuceConnectionFactory connectionFactory;
+    private WebSocketHandler nodeA;
+    private WebSocketHandler nodeB;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(redis.getHost(), redis.getFirstMappedPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.delete(CHANNEL + ":sequence-epoch");
+        nodeA = node(redisTemplate);
+        nodeB = node(redisTemplate);
+    }
+
+    private WebSocketHandler node(StringRedisTemplate redisTemplate) throws Exception {
+        WebSocketHandler handler = new WebSocketHandler("Productos");
+        RedisNotificationRelay relay = new RedisNotificationRelay(handler, redisTemplate, mapper, CHANNEL, 100);
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(relay, new ChannelTopic(CHANNEL));
+        container.afterPropertiesSet();
+        container.start();
+        resources.add(container::destroy);
+        resources.add(relay::destroy);
+        resources.add(handler::destroy);
+        return handler;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+        connectionFactory.destroy();
+    }
+
+    private WebSocketSession client(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    @Test
+    @DisplayName("Una notificación publicada en un nodo llega una vez a los clientes de todos los nodos")
+    void sendNotification_ShouldReachClientsOfEveryNode() throws Exception {
+        // Arrange: un cliente en cada nodo
+        WebSocketSession clientA = client("client-a");
+        WebSocketSession clientB = client("client-b");
+        nodeA.afterConnectionEstablished(clientA);
+        nodeB.afterConnectionEstablished(clientB);
+        Thread.sleep(500); // Que los listeners estén suscritos al canal
+
+        // Act
+        nodeA.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "datos", "t"), "PRODUCTOS:1", null);
+        nodeB.sendNotification(new Notificacion<>("PRODUCTOS", Notificacion.Tipo.UPDATE, "otros", "t"), "PRODUCTOS:2", null);
+
+        // Assert: saludo + 2 notificaciones en cada cliente, con secuencias globales 1 y 2
+        ArgumentCaptor<WebSocketMessage<?>> captorA = ArgumentCaptor.forClass(WebSocketMessage.class);
+        ArgumentCaptor<WebSocketMessage<?>> captorB = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(clientA, timeout(5000).times(3)).sendMessage(captorA.capture());
+        verify(clientB, timeout(5000).times(3)).sendMessage(captorB.capture());
+        verify(clientA, after(500).times(3)).sendMessage(any());
+        assertAll(
+                () -> assertEquals(List.of(1L, 2L), sequences(captorA.getAllValues())),
+                () -> assertEquals(List.of(1L, 2L), sequences(captorB.getAllValues())),
+                () -> assertEquals(1, epochs(captorA.getAllValues(), captorB.getAllValues()).size())
+        );
+    }
+
+    private List<Long> sequences(List<WebSocketMessage<?>> messages) throws Exception {
+        List<Long> sequences = new ArrayList<>();
+        for (WebSocketMessage<?> message : messages.subList(1, messages.size())) {
+            sequences.add(mapper.readTree(((TextMessage) message).getPayload()).get("sequence").asLong());
+        }
+        return sequences.stream().sorted().toList();
+    }
+
+    // Todas las notificaciones de ambos nodos son de la misma época del cluster
+    private java.util.Set<String> epochs(List<WebSocketMessage<?>> a, List<WebSocketMessage<?>> b) throws Exception {
+        java.util.Set<String> epochs = new java.util.HashSet<>();
+        for (List<WebSocketMessage<?>> messages : List.of(a, b)) {
+            for (WebSocketMessage<?> message : messages.subList(1, messages.size())) {
+                epochs.add(mapper.readTree(((TextMessage) message).getPayload()).get("epoch").asText());
+            }
+        }
+        return epochs;
+    }
+}
@@ -6,6 +6,7 @@ import dev.joseluisgs.tiendaapidaw.rest.auth.dto.JwtAuthResponse;
 import dev.joseluisgs.tiendaapidaw.rest.auth.dto.UserSignInRequest;
 import dev.joseluisgs.tiendaapidaw.rest.auth.dto.UserSignUpRequest;
 import dev.joseluisgs.tiendaapidaw.rest.auth.exceptions.AuthSingInInvalid;
+import dev.joseluisgs.tiendaapidaw.rest.auth.exceptions.PasswordHashingUnavailable;
 import dev.joseluisgs.tiendaapidaw.rest.auth.exceptions.UserAuthNameOrEmailExisten;
 import dev.joseluisgs.tiendaapidaw.rest.auth.exceptions.UserDiferentePasswords;
 import dev.joseluisgs.tiendaapidaw.rest.auth.services.authentication.AuthenticationService;
@@ -205,6 +206,33 @@ class AuthenticationRestControllerTest {
         verify(authenticationService, times(1)).signIn(any(UserSignInRequest.class));
     }
 
+    @Test
+    void signIn_PasswordHashingSaturated_ReturnsServiceUnavailable() throws Exception {
+        var request = new UserSignInRequest("testuser", "test12345");
+        // Localpoint
+        var myLocalEndpoint = myEndpoint + "/signin";
+        // Arrange
+        when(authenticationService.signIn(any(UserSignInRequest.class)))
+                .thenThrow(new PasswordHashingUnavailable("Demasiadas peticiones de autenticación, inténtalo más tarde", 2));
+
+        // Consulto el endpoint
+        MockHttpServletResponse response = mockMvc.perform(
+                        post(myLocalEndpoint)
+                                .accept(MediaType.APPLICATION_JSON)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(mapper.writeValueAsString(request)))
+                .andReturn().getResponse();
+
+        // Assert
+        assertAll("signin saturado",
+                () -> assertEquals(503, response.getStatus()),
+                () -> assertEquals("2", response.getHeader("Retry-After"))
+        );
+
+        // Verify
+        verify(authenticationService, times(1)).signIn(any(UserSignInRequest.class));
+    }
+
     // Comprobar todas las validaciones no hacerlo uno del tiron
     @Test
     void signIn_BadRequest_When_Username_Password_Empty_ShouldThrowException() throws Exception {
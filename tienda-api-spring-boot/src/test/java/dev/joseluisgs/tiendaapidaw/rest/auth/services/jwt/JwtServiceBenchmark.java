@@ -0,0 +1,101 @@
+package dev.joseluisgs.tiendaapidaw.rest.auth.services.jwt;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import dev.joseluisgs.tiendaapidaw.rest.users.models.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Benchmark de validación y generación de tokens JWT
+ * No se ejecuta con los test normales, lanzar con: ./gradlew test -Pbenchmark
+ * <p>
+ * Validar: antes el token se decodificaba tres veces por petición sin comprobar la firma,
+ * ahora se verifica una vez con el verificador creado al arrancar
+ * Generar: antes se calculaba la clave y el algoritmo en cada token, ahora se reutilizan
+ */
+class JwtServiceBenchmark {
+    private static final String SECRET = "MeGustanLosPepinosDeLeganesPorqueSonGrandesYHermososComoLosDeCarlosYSuHuerta!";
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 200_000;
+
+    private final JwtServiceImpl jwtService = new JwtServiceImpl(SECRET, 3600L, false);
+    private final User user = User.builder().id(1L).username("admin").build();
+    // Evita que el JIT elimine el trabajo medido
+    private long sink;
+
+    @Test
+    void validate_ThreeDecodes_VersusSingleVerify() {
+        String token = jwtService.generateToken(user);
+
+        Operation before = () -> {
+            // Filtro: extractUserName, isTokenValid: extractUserName y extractExpiration
+            String userName = JWT.decode(token).getSubject();
+            boolean valid = JWT.decode(token).getSubject().equals(userName)
+                    && !JWT.decode(token).getExpiresAt().before(new Date());
+            sink += valid ? 1 : 0;
+        };
+        Operation after = () -> sink += jwtService.verifyToken(token).username().length();
+
+        report("Validar token", before, after);
+        assertEquals("admin", jwtService.verifyToken(token).username());
+    }
+
+    @Test
+    void generate_AlgorithmPerToken_VersusCachedAlgorithm() {
+        Operation before = () -> {
+            Algorithm algorithm = Algorithm.HMAC512(Base64.getEncoder().encode(SECRET.getBytes()));
+            Date now = new Date();
+            Map<String, Object> header = new HashMap<>();
+            header.put("typ", "JWT");
+            sink += JWT.create()
+                    .withHeader(header)
+                    .withSubject(user.getUsername())
+                    .withIssuedAt(now)
+                    .withExpiresAt(new Date(now.getTime() + 3_600_000))
+                    .withClaim("extraClaims", new HashMap<>())
+                    .sign(algorithm)
+                    .length();
+        };
+        Operation after = () -> sink += jwtService.generateToken(user).length();
+
+        report("Generar token", before, after);
+        DecodedJWT decoded = JWT.decode(jwtService.generateToken(user));
+        assertEquals("admin", decoded.getSubject());
+    }
+
+    private void report(String name, Operation before, Operation after) {
+        run(before, WARMUP);
+        run(after, WARMUP);
+        double beforeNanos = measure(before);
+        double afterNanos = measure(after);
+        System.out.printf("%s (%d operaciones)%n", name, ITERATIONS);
+        System.out.printf("  Antes: %,.0f ns/op%n", beforeNanos);
+        System.out.printf("  Ahora: %,.0f ns/op (x%.2f)%n", afterNanos, beforeNanos / afterNanos);
+        System.out.printf("  (control: %d)%n", sink);
+    }
+
+    private double measure(Operation operation) {
+        long start = System.nanoTime();
+        run(operation, ITERATIONS);
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+    private void run(Operation operation, int times) {
+        for (int i = 0; i < times; i++) {
+            operation.run();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run();
+    }
+}
@@ -0,0 +1,106 @@
+package dev.joseluisgs.tiendaapidaw.rest.auth.services.jwt;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.RevokedUserVersions;
+import dev.joseluisgs.tiendaapidaw.rest.users.models.Role;
+import dev.joseluisgs.tiendaapidaw.rest.users.models.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceImplTest {
+    private static final String SECRET = "MeGustanLosPepinosDeLeganesPorqueSonGrandesYHermososComoLosDeCarlosYSuHuerta!";
+
+    private final JwtServiceImpl jwtService = new JwtServiceImpl(SECRET, 3600L, false);
+    private final User user = User.builder().id(1L).username("admin").roles(Set.of(Role.ADMIN)).build();
+
+    @Test
+    void verifyToken_GeneratedToken_ReturnsClaims() {
+        String token = jwtService.generateToken(user);
+
+        JwtClaims claims = jwtService.verifyToken(token);
+
+        assertAll(
+                () -> assertEquals("admin", claims.username()),
+                () -> assertNotNull(claims.issuedAt()),
+                () -> assertTrue(claims.expiresAt().after(new Date())),
+                () -> assertFalse(claims.isStateless())
+        );
+    }
+
+    @Test
+    void verifyToken_StatelessMode_ReturnsUserClaims() {
+        JwtServiceImpl statelessService = new JwtServiceImpl(SECRET, 3600L, true);
+        String token = statelessService.generateToken(user);
+
+        JwtClaims claims = statelessService.verifyToken(token);
+
+        assertAll(
+                () -> assertTrue(claims.isStateless()),
+                () -> assertEquals(1L, claims.userId()),
+                () -> assertEquals(List.of("ADMIN"), claims.roles()),
+                () -> assertEquals(RevokedUserVersions.versionOf(user), claims.version())
+        );
+    }
+
+    @Test
+    void verifyToken_OtherSecret_ThrowsSignatureVerificationException() {
+        String token = new JwtServiceImpl("OtroSecretoQueNoEsElDelServidor", 3600L, false).generateToken(user);
+
+        assertThrows(SignatureVerificationException.class, () -> jwtService.verifyToken(token));
+    }
+
+    @Test
+    void verifyToken_UnsignedToken_ThrowsJWTVerificationException() {
+        // Antes se aceptaba cualquier token bien formado porque solo se decodificaba
+        String token = JWT.create().withSubject("admin").sign(Algorithm.none());
+
+        assertAll(
+                () -> assertThrows(JWTVerificationException.class, () -> jwtService.verifyToken(token)),
+                () -> assertFalse(jwtService.isTokenValid(token, user))
+        );
+    }
+
+    @Test
+    void verifyToken_ExpiredToken_ThrowsTokenExpiredException() {
+        Algorithm algorithm = Algorithm.HMAC512(Base64.getEncoder().encode(SECRET.getBytes()));
+        String token = JWT.create()
+                .withSubject("admin")
+                .withExpiresAt(new Date(System.currentTimeMillis() - 60_000))
+                .sign(algorithm);
+
+        assertThrows(TokenExpiredException.class, () -> jwtService.verifyToken(token));
+    }
+
+    @Test
+    void isTokenValid_OtherUser_ReturnsFalse() {
+        String token = jwtService.generateToken(user);
+
+        assertAll(
+                () -> assertTrue(jwtService.isTokenValid(token, user)),
+                () -> assertFalse(jwtService.isTokenValid(token, User.builder().username("pepe").build()))
+        );
+    }
+
+    @Test
+    void mask_HidesToken() {
+        String token = jwtService.generateToken(user);
+
+        String masked = JwtServiceImpl.mask(token);
+
+        assertAll(
+                () -> assertFalse(masked.contains(token.substring(0, 10))),
+                () -> assertTrue(masked.endsWith(token.substring(token.length() - 6))),
+                () -> assertEquals("****", JwtServiceImpl.mask(null))
+        );
+    }
+}
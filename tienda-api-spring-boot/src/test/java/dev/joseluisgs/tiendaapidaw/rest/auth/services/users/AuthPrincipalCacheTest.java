@@ -0,0 +1,117 @@
+package dev.joseluisgs.tiendaapidaw.rest.auth.services.users;
+
+import dev.joseluisgs.tiendaapidaw.rest.users.exceptions.UserNotFound;
+import dev.joseluisgs.tiendaapidaw.rest.users.models.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthPrincipalCacheTest {
+    private final User user = User.builder().id(1L).username("admin").build();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, UserDetails> loader = username -> {
+        loads.incrementAndGet();
+        return user;
+    };
+
+    private static Date inOneHour() {
+        return new Date(System.currentTimeMillis() + 3_600_000);
+    }
+
+    @Test
+    void getOrLoad_SecondRequest_UsesCache() {
+        AuthPrincipalCache cache = new AuthPrincipalCache(60_000, 100);
+
+        UserDetails first = cache.getOrLoad("admin", inOneHour(), loader);
+        UserDetails second = cache.getOrLoad("admin", inOneHour(), loader);
+
+        assertAll(
+                () -> assertSame(user, first),
+                () -> assertSame(user, second),
+                () -> assertEquals(1, loads.get())
+        );
+    }
+
+    @Test
+    void getOrLoad_TtlZero_AlwaysLoads() {
+        AuthPrincipalCache cache = new AuthPrincipalCache(0, 100);
+
+        cache.getOrLoad("admin", inOneHour(), loader);
+        cache.getOrLoad("admin", inOneHour(), loader);
+
+        assertAll(
+                () -> assertEquals(2, loads.get()),
+                () -> assertEquals(0, cache.size())
+        );
+    }
+
+    @Test
+    void getOrLoad_TokenExpiresBeforeTtl_EntryExpiresWithToken() throws InterruptedException {
+        AuthPrincipalCache cache = new AuthPrincipalCache(60_000, 100);
+
+        cache.getOrLoad("admin", new Date(System.currentTimeMillis() + 50), loader);
+        Thread.sleep(100);
+        cache.getOrLoad("admin", inOneHour(), loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getOrLoad_ExpiredToken_NotCached() {
+        AuthPrincipalCache cache = new AuthPrincipalCache(60_000, 100);
+
+        cache.getOrLoad("admin", new Date(System.currentTimeMillis() - 1000), loader);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void getOrLoad_UserNotFound_PropagatesAndNotCached() {
+        AuthPrincipalCache cache = new AuthPrincipalCache(60_000, 100);
+
+        assertThrows(UserNotFound.class, () -> cache.getOrLoad("nadie", inOneHour(), username -> {
+            throw new UserNotFound("Usuario con username " + username + " no encontrado");
+        }));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidate_ReloadsUser() {
+        AuthPrincipalCache cache = new AuthPrincipalCache(60_000, 100);
+
+        cache.getOrLoad("admin", inOneHour(), loader);
+        cache.invalidate("admin");
+        cache.getOrLoad("admin", inOneHour(), loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidate_WhileLoading_DoesNotCacheStaleUser() {
+        AuthPrincipalCache cache = new AuthPrincipalCache(60_000, 100);
+
+        // El usuario se modifica mientras otra petición lo está leyendo de la base de datos
+        cache.getOrLoad("admin", inOneHour(), username -> {
+            cache.invalidate("admin");
+            return user;
+        });
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void getOrLoad_Full_EvictsToMaxSize() {
+        AuthPrincipalCache cache = new AuthPrincipalCache(60_000, 2);
+
+        cache.getOrLoad("uno", inOneHour(), loader);
+        cache.getOrLoad("dos", inOneHour(), loader);
+        cache.getOrLoad("tres", inOneHour(), loader);
+
+        assertTrue(cache.size() <= 2);
+    }
+}
@@ -0,0 +1,102 @@
+package dev.joseluisgs.tiendaapidaw.rest.auth.services.users;
+
+import dev.joseluisgs.tiendaapidaw.rest.users.models.User;
+import dev.joseluisgs.tiendaapidaw.rest.users.repositories.UserVersion;
+import dev.joseluisgs.tiendaapidaw.rest.users.repositories.UsersRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RevokedUserVersionsTest {
+    private final LocalDateTime updatedAt = LocalDateTime.of(2025, 1, 1, 10, 0);
+    private final User user = User.builder().id(1L).username("admin").updatedAt(updatedAt).build();
+    @Mock
+    private UsersRepository usersRepository;
+
+    private static UserVersion version(Long id, LocalDateTime updatedAt, boolean deleted) {
+        UserVersion version = mock(UserVersion.class);
+        when(version.getId()).thenReturn(id);
+        lenient().when(version.getUpdatedAt()).thenReturn(updatedAt);
+        when(version.getIsDeleted()).thenReturn(deleted);
+        return version;
+    }
+
+    @Test
+    void revoke_UpdatedUser_RevokesOlderTokens() {
+        RevokedUserVersions revoked = new RevokedUserVersions(usersRepository, true, 3600);
+        long oldVersion = RevokedUserVersions.versionOf(user);
+        user.setUpdatedAt(updatedAt.plusMinutes(5));
+
+        revoked.revoke(user);
+
+        assertAll(
+                () -> assertTrue(revoked.isRevoked(1L, oldVersion)),
+                () -> assertFalse(revoked.isRevoked(1L, RevokedUserVersions.versionOf(user))),
+                () -> assertFalse(revoked.isRevoked(2L, oldVersion))
+        );
+    }
+
+    @Test
+    void revokeAll_DeletedUser_RevokesEveryToken() {
+        RevokedUserVersions revoked = new RevokedUserVersions(usersRepository, true, 3600);
+
+        revoked.revokeAll(1L);
+
+        assertTrue(revoked.isRevoked(1L, Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    void revoke_OlderVersion_KeepsNewest() {
+        RevokedUserVersions revoked = new RevokedUserVersions(usersRepository, true, 3600);
+
+        revoked.revoke(1L, 200);
+        revoked.revoke(1L, 100);
+
+        assertTrue(revoked.isRevoked(1L, 150));
+    }
+
+    @Test
+    void refresh_ReadsChangedUsersFromDatabase() {
+        RevokedUserVersions revoked = new RevokedUserVersions(usersRepository, true, 3600);
+        LocalDateTime newer = updatedAt.plusMinutes(5);
+        List<UserVersion> changed = List.of(version(1L, newer, false), version(2L, newer, true));
+        when(usersRepository.findByUpdatedAtAfter(any(LocalDateTime.class))).thenReturn(changed);
+
+        revoked.refresh();
+
+        assertAll(
+                () -> assertTrue(revoked.isRevoked(1L, RevokedUserVersions.versionOf(user))),
+                () -> assertTrue(revoked.isRevoked(2L, Long.MAX_VALUE - 1)),
+                () -> assertEquals(2, revoked.size())
+        );
+    }
+
+    @Test
+    void refresh_Disabled_DoesNotQueryDatabase() {
+        RevokedUserVersions revoked = new RevokedUserVersions(usersRepository, false, 3600);
+
+        revoked.refresh();
+
+        verify(usersRepository, never()).findByUpdatedAtAfter(any());
+    }
+
+    @Test
+    void refresh_DatabaseError_KeepsRevocations() {
+        RevokedUserVersions revoked = new RevokedUserVersions(usersRepository, true, 3600);
+        revoked.revokeAll(1L);
+        when(usersRepository.findByUpdatedAtAfter(any(LocalDateTime.class))).thenThrow(new RuntimeException("Sin conexión"));
+
+        revoked.refresh();
+
+        assertTrue(revoked.isRevoked(1L, 0));
+    }
+}
@@ -0,0 +1,106 @@
+package dev.joseluisgs.tiendaapidaw.rest.productos.services;
+
+import dev.joseluisgs.tiendaapidaw.rest.productos.repositories.ProductosRepository;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.ImageVariantService;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.StorageService;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.StoredFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrphanImageCollectorTest {
+    private static final long DAY = 86_400_000;
+
+    @Mock
+    private StorageService storageService;
+    @Mock
+    private ImageVariantService imageVariantService;
+    @Mock
+    private ProductosRepository productosRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void collect_QuarantinesOldUnreferencedFiles() {
+        long now = System.currentTimeMillis();
+        when(productosRepository.streamAllImagenes()).thenReturn(Stream.of(
+                // Guardada con la URL completa
+                "http://localhost:3000/storage/1700000000000_usada.png",
+                "1700000000001_otra.png",
+                "https://via.placeholder.com/150"));
+        when(storageService.loadAll()).thenReturn(Stream.of(
+                Path.of("1700000000000_usada.png"),
+                Path.of("1700000000001_otra.png"),
+                Path.of("1700000000002_huerfana.png"),
+                Path.of("1700000000003_reciente.png")));
+        when(storageService.find("1700000000002_huerfana.png")).thenReturn(stored("1700000000002_huerfana.png", now - 2 * DAY));
+        when(storageService.find("1700000000003_reciente.png")).thenReturn(stored("1700000000003_reciente.png", now - 1000));
+        when(storageService.discard(anyString(), anyBoolean(), anyLong())).thenReturn(true);
+
+        OrphanImageCollector.OrphanCollectionReport report = collector(true).collect();
+
+        assertAll(
+                () -> assertEquals(4, report.scanned()),
+                () -> assertEquals(3, report.referenced()),
+                () -> assertEquals(1, report.orphans()),
+                () -> assertEquals(1, report.discarded())
+        );
+        verify(storageService).discard(eq("1700000000002_huerfana.png"), eq(true), longThat(cutoff -> cutoff <= now - DAY + 1000));
+        verify(imageVariantService).deleteVariants("1700000000002_huerfana.png");
+        verify(storageService, times(1)).discard(anyString(), anyBoolean(), anyLong());
+    }
+
+    @Test
+    void collect_WithoutQuarantine_Deletes() {
+        when(productosRepository.streamAllImagenes()).thenReturn(Stream.empty());
+        when(storageService.loadAll()).thenReturn(Stream.of(Path.of("huerfana.png")));
+        when(storageService.find("huerfana.png")).thenReturn(stored("huerfana.png", 0));
+        when(storageService.discard(anyString(), anyBoolean(), anyLong())).thenReturn(true);
+
+        collector(false).collect();
+
+        verify(storageService).discard(eq("huerfana.png"), eq(false), anyLong());
+    }
+
+    @Test
+    void collect_RenewedMeanwhile_KeepsVariants() {
+        when(productosRepository.streamAllImagenes()).thenReturn(Stream.empty());
+        when(storageService.loadAll()).thenReturn(Stream.of(Path.of("huerfana.png")));
+        when(storageService.find("huerfana.png")).thenReturn(stored("huerfana.png", 0));
+        // Se ha vuelto a subir entre el listado y el borrado
+        when(storageService.discard(anyString(), anyBoolean(), anyLong())).thenReturn(false);
+
+        OrphanImageCollector.OrphanCollectionReport report = collector(true).collect();
+
+        assertAll(
+                () -> assertEquals(1, report.orphans()),
+                () -> assertEquals(0, report.discarded())
+        );
+        verify(imageVariantService, never()).deleteVariants(anyString());
+    }
+
+    private OrphanImageCollector collector(boolean quarantine) {
+        return new OrphanImageCollector(storageService, imageVariantService, productosRepository, transactionManager,
+                false, 0, DAY, quarantine, 0);
+    }
+
+    private Optional<StoredFile> stored(String name, long lastModified) {
+        return Optional.of(new StoredFile(name, Path.of(name), 10, lastModified, "image/png"));
+    }
+}
@@ -13,6 +13,7 @@ import dev.joseluisgs.tiendaapidaw.rest.productos.exceptions.ProductoNotFound;
 import dev.joseluisgs.tiendaapidaw.rest.productos.mappers.ProductoMapper;
 import dev.joseluisgs.tiendaapidaw.rest.productos.models.Producto;
 import dev.joseluisgs.tiendaapidaw.rest.productos.repositories.ProductosRepository;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.ImageVariantService;
 import dev.joseluisgs.tiendaapidaw.rest.storage.services.StorageService;
 import dev.joseluisgs.tiendaapidaw.websockets.notifications.mapper.ProductoNotificationMapper;
 import dev.joseluisgs.tiendaapidaw.websockets.notifications.models.Notificacion;
@@ -98,6 +99,8 @@ private final ProductoResponse productoResponse2 = ProductoResponse.builder()
     @Mock
     private StorageService storageService;
     @Mock
+    private ImageVariantService imageVariantService;
+    @Mock
     private CategoriasRepository categoriasRepository;
     @Mock
     private ProductoMapper productoMapper;
@@ -496,6 +499,7 @@ private final ProductoResponse productoResponse2 = ProductoResponse.builder()
         verify(productosRepository, times(1)).save(any(Producto.class));
         verify(storageService, times(1)).delete(producto1.getImagen());
         verify(storageService, times(1)).store(multipartFile);
+        verify(imageVariantService, times(1)).generateAsync(imageUrl);
         verify(productoMapper, times(1)).toProductResponse(any(Producto.class));
     }
 }
@@ -1,5 +1,7 @@
 package dev.joseluisgs.tiendaapidaw.rest.users.services;
 
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.AuthPrincipalCache;
+import dev.joseluisgs.tiendaapidaw.rest.auth.services.users.RevokedUserVersions;
 import dev.joseluisgs.tiendaapidaw.rest.pedidos.repositories.PedidosRepository;
 import dev.joseluisgs.tiendaapidaw.rest.users.dto.UserInfoResponse;
 import dev.joseluisgs.tiendaapidaw.rest.users.dto.UserRequest;
@@ -40,6 +42,10 @@ class UsersServiceImplTest {
     private PedidosRepository pedidosRepository;
     @Mock
     private UsersMapper usersMapper;
+    @Mock
+    private AuthPrincipalCache principalCache;
+    @Mock
+    private RevokedUserVersions revokedUserVersions;
     @InjectMocks
     private UsersServiceImpl usersService;
 
@@ -168,6 +174,8 @@ class UsersServiceImplTest {
         verify(usersMapper, times(1)).toUser(userRequest, userId);
         verify(usersMapper, times(1)).toUserResponse(user);
         verify(usersRepository, times(1)).save(user);
+        verify(principalCache, times(2)).invalidate(user.getUsername());
+        verify(revokedUserVersions, times(1)).revoke(user);
     }
 
     @Test
@@ -179,6 +187,7 @@ class UsersServiceImplTest {
 
         // Act and Assert
         assertThrows(UserNameOrEmailExists.class, () -> usersService.update(userId, userRequest));
+        verify(principalCache, never()).invalidate(anyString());
     }
 
     @Test
@@ -204,6 +213,8 @@ class UsersServiceImplTest {
         // Verify
         verify(usersRepository, times(1)).delete(user);
         verify(pedidosRepository, times(1)).existsByIdUsuario(userId);
+        verify(principalCache, times(1)).invalidate(user.getUsername());
+        verify(revokedUserVersions, times(1)).revokeAll(userId);
     }
 
     @Test
@@ -222,6 +233,8 @@ class UsersServiceImplTest {
         // Verify
         verify(usersRepository, times(1)).updateIsDeletedToTrueById(userId);
         verify(pedidosRepository, times(1)).existsByIdUsuario(userId);
+        verify(principalCache, times(1)).invalidate(user.getUsername());
+        verify(revokedUserVersions, times(1)).revokeAll(userId);
     }
 
     @Test
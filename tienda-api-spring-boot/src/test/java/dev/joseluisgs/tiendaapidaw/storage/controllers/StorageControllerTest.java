@@ -2,23 +2,33 @@ package dev.joseluisgs.tiendaapidaw.storage.controllers;
 
 import dev.joseluisgs.tiendaapidaw.rest.storage.services.StorageService;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 
-import static org.junit.jupiter.api.Assertions.assertAll;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 
-@SpringBootTest
+// Tiempo de sobra para generar las versiones de las imágenes en la petición
+@SpringBootTest(properties = "upload.images.on-demand-timeout=5000")
 @AutoConfigureMockMvc
 public class StorageControllerTest {
 
@@ -27,6 +37,16 @@ public class StorageControllerTest {
     private MockMvc mockMvc;
     @MockBean
     private StorageService storageService;
+    @TempDir
+    Path tempDir;
+    // Las versiones de las imágenes se guardan de verdad bajo upload.root-location, en una carpeta nueva en cada ejecución
+    @TempDir
+    static Path rootLocation;
+
+    @DynamicPropertySource
+    static void storageProperties(DynamicPropertyRegistry registry) {
+        registry.add("upload.root-location", () -> rootLocation.toString());
+    }
 
     @Test
     public void testServeFile() throws Exception {
@@ -50,4 +70,154 @@ public class StorageControllerTest {
                 () -> assertEquals("Contenido del archivo", response.getContentAsString())
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void serveFile_TimestampedFile_ImmutableCacheAndEtag() throws Exception {
+        String filename = "1700000000000_producto.txt";
+        fileWith(filename, "0123456789");
+
+        MockHttpServletResponse response = mockMvc.perform(get("/storage/" + filename))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(HttpStatus.OK.value(), response.getStatus()),
+                () -> assertEquals("0123456789", response.getContentAsString()),
+                () -> assertEquals(10, response.getContentLength()),
+                () -> assertEquals("bytes", response.getHeader("Accept-Ranges")),
+                () -> assertEquals("public, max-age=31536000, immutable", response.getHeader("Cache-Control")),
+                () -> assertNotNull(response.getHeader("ETag")),
+                () -> assertNotNull(response.getHeader("Last-Modified"))
+        );
+    }
+
+    @Test
+    public void serveFile_NotTimestampedFile_Revalidates() throws Exception {
+        fileWith("logo.txt", "logo");
+
+        MockHttpServletResponse response = mockMvc.perform(get("/storage/logo.txt"))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(HttpStatus.OK.value(), response.getStatus()),
+                () -> assertEquals("no-cache", response.getHeader("Cache-Control"))
+        );
+    }
+
+    @Test
+    public void serveFile_IfNoneMatch_NotModified() throws Exception {
+        fileWith("logo.txt", "logo");
+        String etag = mockMvc.perform(get("/storage/logo.txt")).andReturn().getResponse().getHeader("ETag");
+
+        MockHttpServletResponse response = mockMvc.perform(get("/storage/logo.txt").header("If-None-Match", etag))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus()),
+                () -> assertEquals(etag, response.getHeader("ETag")),
+                () -> assertEquals("", response.getContentAsString())
+        );
+    }
+
+    @Test
+    public void serveFile_Range_PartialContent() throws Exception {
+        fileWith("logo.txt", "0123456789");
+
+        MockHttpServletResponse response = mockMvc.perform(get("/storage/logo.txt").header("Range", "bytes=2-5"))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus()),
+                () -> assertEquals("bytes 2-5/10", response.getHeader("Content-Range")),
+                () -> assertEquals(4, response.getContentLength()),
+                () -> assertEquals("2345", response.getContentAsString())
+        );
+    }
+
+    @Test
+    public void serveFile_SuffixRange_PartialContent() throws Exception {
+        fileWith("logo.txt", "0123456789");
+
+        MockHttpServletResponse response = mockMvc.perform(get("/storage/logo.txt").header("Range", "bytes=-3"))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus()),
+                () -> assertEquals("bytes 7-9/10", response.getHeader("Content-Range")),
+                () -> assertEquals("789", response.getContentAsString())
+        );
+    }
+
+    @Test
+    public void serveFile_RangeOutOfFile_NotSatisfiable() throws Exception {
+        fileWith("logo.txt", "0123456789");
+
+        MockHttpServletResponse response = mockMvc.perform(get("/storage/logo.txt").header("Range", "bytes=20-30"))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(), response.getStatus()),
+                () -> assertEquals("bytes */10", response.getHeader("Content-Range"))
+        );
+    }
+
+    @Test
+    public void serveFile_IfRangeChanged_FullContent() throws Exception {
+        fileWith("logo.txt", "0123456789");
+
+        MockHttpServletResponse response = mockMvc.perform(get("/storage/logo.txt")
+                        .header("Range", "bytes=2-5").header("If-Range", "\"otro\""))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(HttpStatus.OK.value(), response.getStatus()),
+                () -> assertEquals("0123456789", response.getContentAsString())
+        );
+    }
+
+    @Test
+    public void serveFile_Width_ServesResizedImage() throws Exception {
+        String filename = "1700000000001_miniatura.png";
+        Path file = tempDir.resolve(filename);
+        ImageIO.write(new BufferedImage(600, 300, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        when(storageService.loadAsResource(filename)).thenReturn(new FileSystemResource(file));
+        when(storageService.load(filename)).thenReturn(file);
+
+        MockHttpServletResponse response = mockMvc.perform(get("/storage/" + filename).param("w", "150"))
+                .andReturn().getResponse();
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getContentAsByteArray()));
+        assertAll(
+                // Generada en esta petición, no una que quedara de otra ejecución
+                () -> assertTrue(Files.exists(rootLocation.resolve(".variants").resolve("150").resolve(filename))),
+                () -> assertEquals(HttpStatus.OK.value(), response.getStatus()),
+                () -> assertEquals("image/png", response.getContentType()),
+                () -> assertEquals(150, image.getWidth()),
+                () -> assertEquals(75, image.getHeight()),
+                () -> assertEquals("public, max-age=31536000, immutable", response.getHeader("Cache-Control"))
+        );
+    }
+
+    @Test
+    public void serveFile_WidthFallsBackToOriginal_NotImmutable() throws Exception {
+        // Más estrecha que el ancho pedido: se sirve el original, que no es lo que tendrá esa URL más adelante
+        String filename = "1700000000002_estrecha.png";
+        Path file = tempDir.resolve(filename);
+        ImageIO.write(new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        when(storageService.loadAsResource(filename)).thenReturn(new FileSystemResource(file));
+        when(storageService.load(filename)).thenReturn(file);
+
+        MockHttpServletResponse response = mockMvc.perform(get("/storage/" + filename).param("w", "150"))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(HttpStatus.OK.value(), response.getStatus()),
+                () -> assertEquals(Files.size(file), response.getContentAsByteArray().length),
+                () -> assertEquals("no-cache", response.getHeader("Cache-Control"))
+        );
+    }
+
+    private void fileWith(String filename, String content) throws Exception {
+        Path file = Files.writeString(tempDir.resolve(filename), content);
+        when(storageService.loadAsResource(filename)).thenReturn(new FileSystemResource(file));
+    }
+}
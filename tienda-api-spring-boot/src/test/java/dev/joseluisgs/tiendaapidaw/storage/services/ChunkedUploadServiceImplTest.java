@@ -0,0 +1,182 @@
+package dev.joseluisgs.tiendaapidaw.storage.services;
+
+import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.StorageBadRequest;
+import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.StorageNotFound;
+import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.UploadInProgress;
+import dev.joseluisgs.tiendaapidaw.rest.storage.exceptions.UploadOffsetConflict;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.ChunkedUploadServiceImpl;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.FileSystemStorageService;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.HotFileCache;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.UploadSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedUploadServiceImplTest {
+    @TempDir
+    Path rootLocation;
+
+    private FileSystemStorageService storageService;
+    private ChunkedUploadServiceImpl chunkedUploadService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new FileSystemStorageService(rootLocation.toString(), false, false, false, new HotFileCache(0, 0));
+        storageService.init();
+        chunkedUploadService = new ChunkedUploadServiceImpl(storageService, 1024, 60_000);
+    }
+
+    @Test
+    void append_InOrder_CompletesWithAllContent() {
+        UploadSession session = chunkedUploadService.create("1", "foto.png", 10);
+
+        chunkedUploadService.append(session.id(), 0, chunk("01234"), 5);
+        UploadSession appended = chunkedUploadService.append(session.id(), 5, chunk("56789"), 5);
+        String stored = chunkedUploadService.complete(session.id(), storageService::store);
+
+        assertAll(
+                () -> assertTrue(appended.isComplete()),
+                () -> assertTrue(stored.endsWith("_foto.png")),
+                () -> assertEquals("0123456789", Files.readString(storageService.load(stored))),
+                () -> assertThrows(StorageNotFound.class, () -> chunkedUploadService.find(session.id()))
+        );
+    }
+
+    @Test
+    void append_WrongOffset_ConflictWithCurrentOffset() {
+        UploadSession session = chunkedUploadService.create("1", "foto.png", 10);
+        chunkedUploadService.append(session.id(), 0, chunk("01234"), 5);
+
+        var conflict = assertThrows(UploadOffsetConflict.class,
+                () -> chunkedUploadService.append(session.id(), 0, chunk("01234"), 5));
+
+        assertEquals(5, conflict.getOffset());
+    }
+
+    @Test
+    void append_InterruptedChunk_ResumesFromReceived() {
+        UploadSession session = chunkedUploadService.create("1", "foto.png", 10);
+
+        // Se anuncian 5 bytes pero la conexión se corta tras 3
+        UploadSession interrupted = chunkedUploadService.append(session.id(), 0, chunk("012"), 5);
+        chunkedUploadService.append(session.id(), 3, chunk("3456789"), 7);
+
+        assertAll(
+                () -> assertEquals(3, interrupted.offset()),
+                () -> assertTrue(chunkedUploadService.find(session.id()).isComplete())
+        );
+    }
+
+    @Test
+    void complete_Incomplete_Conflict() {
+        UploadSession session = chunkedUploadService.create("1", "foto.png", 10);
+        chunkedUploadService.append(session.id(), 0, chunk("01234"), 5);
+
+        assertThrows(UploadOffsetConflict.class, () -> chunkedUploadService.complete(session.id(), storageService::store));
+    }
+
+    @Test
+    void create_TooLarge_BadRequest() {
+        assertThrows(StorageBadRequest.class, () -> chunkedUploadService.create("1", "foto.png", 2048));
+    }
+
+    @Test
+    void find_InvalidId_NotFound() {
+        assertThrows(StorageNotFound.class, () -> chunkedUploadService.find("../../application.properties"));
+    }
+
+    @Test
+    void removeExpired_DeletesStaleUploads() throws Exception {
+        UploadSession stale = chunkedUploadService.create("1", "vieja.png", 10);
+        UploadSession active = chunkedUploadService.create("1", "nueva.png", 10);
+        Path part = rootLocation.resolve(".uploads").resolve(stale.id() + ".part");
+        Files.setLastModifiedTime(part, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+
+        chunkedUploadService.removeExpired();
+
+        assertAll(
+                () -> assertThrows(StorageNotFound.class, () -> chunkedUploadService.find(stale.id())),
+                () -> assertEquals(0, chunkedUploadService.find(active.id()).offset())
+        );
+    }
+
+    @Test
+    void abort_DeletesUpload() {
+        UploadSession session = chunkedUploadService.create("1", "foto.png", 10);
+
+        chunkedUploadService.abort(session.id());
+
+        assertThrows(StorageNotFound.class, () -> chunkedUploadService.find(session.id()));
+    }
+
+    @Test
+    void append_WhileAnotherRequestReads_InProgressWithoutWaiting() throws Exception {
+        UploadSession session = chunkedUploadService.create("1", "foto.png", 10);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Cliente lento: la primera petición se queda leyendo de la red
+        var slow = CompletableFuture.supplyAsync(() ->
+                chunkedUploadService.append(session.id(), 0, slowChunk("01234", reading, release), 5));
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        Path part = rootLocation.resolve(".uploads").resolve(session.id() + ".part");
+        Files.setLastModifiedTime(part, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+
+        try {
+            assertAll(
+                    () -> assertThrows(UploadInProgress.class,
+                            () -> chunkedUploadService.append(session.id(), 0, chunk("01234"), 5)),
+                    () -> assertThrows(UploadInProgress.class,
+                            () -> chunkedUploadService.complete(session.id(), storageService::store)),
+                    () -> assertThrows(UploadInProgress.class, () -> chunkedUploadService.abort(session.id()))
+            );
+            // La limpieza no borra una subida con una petición en curso aunque parezca abandonada
+            chunkedUploadService.removeExpired();
+        } finally {
+            release.countDown();
+        }
+
+        assertAll(
+                () -> assertEquals(5, slow.get(5, TimeUnit.SECONDS).offset()),
+                () -> assertEquals(5, chunkedUploadService.find(session.id()).offset()),
+                () -> assertEquals(10, chunkedUploadService.append(session.id(), 5, chunk("56789"), 5).offset())
+        );
+    }
+
+    private InputStream slowChunk(String content, CountDownLatch reading, CountDownLatch release) {
+        InputStream delegate = chunk(content);
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                return delegate.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                reading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return delegate.read(b, off, len);
+            }
+        };
+    }
+
+    private ByteArrayInputStream chunk(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,239 @@
+package dev.joseluisgs.tiendaapidaw.storage.services;
+
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.FileSystemStorageService;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.HotFileCache;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemStorageServiceTest {
+    @TempDir
+    Path rootLocation;
+
+    private FileSystemStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new FileSystemStorageService(rootLocation.toString(), true, false, false, new HotFileCache(0, 0));
+        storageService.init();
+    }
+
+    @Test
+    void store_SameContent_StoredOnce() throws Exception {
+        String first = storageService.store(image("proveedor.PNG", "imagen"));
+        String second = storageService.store(image("otra variante.png", "imagen"));
+
+        assertAll(
+                () -> assertEquals(first, second),
+                () -> assertTrue(first.matches("[0-9a-f]{64}\\.png")),
+                () -> assertEquals("imagen", Files.readString(rootLocation.resolve(first))),
+                () -> assertEquals(List.of(Path.of(first)), storageService.loadAll().toList())
+        );
+    }
+
+    @Test
+    void store_DifferentContent_DifferentFiles() {
+        String first = storageService.store(image("producto.png", "imagen 1"));
+        String second = storageService.store(image("producto.png", "imagen 2"));
+
+        assertAll(
+                () -> assertNotEquals(first, second),
+                () -> assertTrue(Files.exists(rootLocation.resolve(first))),
+                () -> assertTrue(Files.exists(rootLocation.resolve(second)))
+        );
+    }
+
+    @Test
+    void delete_WithReferences_KeepsFileUntilLastOne() {
+        String stored = storageService.store(image("producto.png", "imagen"));
+        storageService.store(image("producto.png", "imagen"));
+
+        storageService.delete(stored);
+        assertTrue(Files.exists(rootLocation.resolve(stored)));
+
+        // Con la URL completa también, se borra por el nombre del fichero
+        storageService.delete("http://localhost:3000/storage/" + stored);
+        assertFalse(Files.exists(rootLocation.resolve(stored)));
+    }
+
+    @Test
+    void store_NoTempFilesLeft() throws Exception {
+        storageService.store(image("producto.png", "imagen"));
+        storageService.store(image("producto.png", "imagen"));
+
+        try (var temps = Files.list(rootLocation.resolve(".tmp"))) {
+            assertEquals(0, temps.count());
+        }
+    }
+
+    @Test
+    void storePath_MovesFileAndSharesContent() throws Exception {
+        String fromMultipart = storageService.store(image("producto.png", "imagen"));
+        Path part = storageService.workDirectory(".uploads").resolve("subida.part");
+        Files.writeString(part, "imagen");
+
+        String fromPath = storageService.store(part, "grande.png");
+
+        assertAll(
+                () -> assertEquals(fromMultipart, fromPath),
+                () -> assertFalse(Files.exists(part)),
+                () -> assertEquals(List.of(Path.of(fromPath)), storageService.loadAll().toList())
+        );
+    }
+
+    @Test
+    void delete_TimestampedFile_DeletedDirectly() throws Exception {
+        Path legacy = Files.writeString(rootLocation.resolve("1700000000000_producto.png"), "imagen");
+
+        storageService.delete(legacy.getFileName().toString());
+
+        assertFalse(Files.exists(legacy));
+    }
+
+    @Test
+    void store_Sharded_StoredInHashSubdirectory() throws Exception {
+        FileSystemStorageService sharded = shardedService(false);
+
+        String stored = sharded.store(image("producto.png", "imagen"));
+
+        StoredFile file = sharded.find(stored).orElseThrow();
+        assertAll(
+                () -> assertFalse(Files.exists(rootLocation.resolve(stored))),
+                () -> assertEquals(rootLocation, file.path().getParent().getParent().getParent()),
+                () -> assertTrue(file.path().getParent().getFileName().toString().matches("[0-9a-f]{2}")),
+                () -> assertEquals(6, file.size()),
+                () -> assertEquals("image/png", file.contentType()),
+                () -> assertEquals("imagen", sharded.loadAsResource(stored).getContentAsString(StandardCharsets.UTF_8)),
+                () -> assertEquals(List.of(Path.of(stored)), sharded.loadAll().toList())
+        );
+
+        sharded.delete(stored);
+        assertAll(
+                () -> assertFalse(Files.exists(file.path())),
+                () -> assertTrue(sharded.find(stored).isEmpty()),
+                () -> assertEquals(0, sharded.loadAll().count())
+        );
+    }
+
+    @Test
+    void init_IndexesExistingFiles() throws Exception {
+        storageService.store(image("producto.png", "imagen 1"));
+        storageService.store(image("otro.png", "imagen 2"));
+
+        FileSystemStorageService restarted = new FileSystemStorageService(rootLocation.toString(), true, false, false, new HotFileCache(0, 0));
+        restarted.init();
+
+        assertEquals(2, restarted.loadAll().count());
+    }
+
+    @Test
+    void load_ShardedWithoutMigration_FindsFlatFiles() throws Exception {
+        Files.writeString(rootLocation.resolve("1700000000000_producto.png"), "imagen");
+
+        FileSystemStorageService sharded = shardedService(false);
+
+        assertAll(
+                () -> assertEquals(rootLocation.resolve("1700000000000_producto.png"), sharded.load("1700000000000_producto.png")),
+                () -> assertTrue(sharded.find("1700000000000_producto.png").isPresent())
+        );
+    }
+
+    @Test
+    void init_ShardedMigrate_MovesFlatFilesAndReferences() throws Exception {
+        String stored = storageService.store(image("producto.png", "imagen"));
+        storageService.store(image("producto.png", "imagen"));
+
+        FileSystemStorageService sharded = shardedService(true);
+
+        Path migrated = sharded.load(stored);
+        assertAll(
+                () -> assertFalse(Files.exists(rootLocation.resolve(stored))),
+                () -> assertFalse(Files.exists(rootLocation.resolve(".refs").resolve(stored))),
+                () -> assertTrue(Files.exists(migrated)),
+                () -> assertNotEquals(rootLocation, migrated.getParent())
+        );
+
+        // Las dos referencias se han migrado con el fichero
+        sharded.delete(stored);
+        assertTrue(Files.exists(migrated));
+        sharded.delete(stored);
+        assertFalse(Files.exists(migrated));
+    }
+
+    @Test
+    void discard_Quarantine_MovesFileAndDropsReferences() throws Exception {
+        String stored = storageService.store(image("producto.png", "imagen"));
+        storageService.store(image("producto.png", "imagen"));
+
+        storageService.discard(stored, true);
+
+        assertAll(
+                () -> assertFalse(Files.exists(rootLocation.resolve(stored))),
+                () -> assertTrue(Files.exists(rootLocation.resolve(".orphans").resolve(stored))),
+                () -> assertFalse(Files.exists(rootLocation.resolve(".refs").resolve(stored))),
+                () -> assertTrue(storageService.find(stored).isEmpty()),
+                () -> assertEquals(0, storageService.loadAll().count())
+        );
+    }
+
+    @Test
+    void discard_StoredAgainAfterCutoff_KeepsFile() throws Exception {
+        String stored = storageService.store(image("producto.png", "imagen"));
+        Files.setLastModifiedTime(rootLocation.resolve(stored), FileTime.fromMillis(0));
+        long cutoff = System.currentTimeMillis() - 1000;
+
+        // El recolector lo ha dado por huérfano, pero se vuelve a subir antes de quitarlo
+        storageService.store(image("producto.png", "imagen"));
+        boolean discarded = storageService.discard(stored, true, cutoff);
+
+        assertAll(
+                () -> assertFalse(discarded),
+                () -> assertTrue(Files.exists(rootLocation.resolve(stored))),
+                () -> assertTrue(storageService.find(stored).isPresent())
+        );
+    }
+
+    @Test
+    void discard_OlderThanCutoff_Discards() throws Exception {
+        String stored = storageService.store(image("producto.png", "imagen"));
+        Files.setLastModifiedTime(rootLocation.resolve(stored), FileTime.fromMillis(0));
+        Files.setLastModifiedTime(rootLocation.resolve(".refs").resolve(stored), FileTime.fromMillis(0));
+
+        boolean discarded = storageService.discard(stored, false, System.currentTimeMillis() - 1000);
+
+        assertAll(
+                () -> assertTrue(discarded),
+                () -> assertFalse(Files.exists(rootLocation.resolve(stored)))
+        );
+    }
+
+    @Test
+    void store_SameContent_RenewsModificationTime() throws Exception {
+        String stored = storageService.store(image("producto.png", "imagen"));
+        Files.setLastModifiedTime(rootLocation.resolve(stored), FileTime.fromMillis(0));
+
+        storageService.store(image("producto.png", "imagen"));
+
+        assertTrue(storageService.find(stored).orElseThrow().lastModified() > 0);
+    }
+
+    private FileSystemStorageService shardedService(boolean migrate) {
+        FileSystemStorageService sharded = new FileSystemStorageService(rootLocation.toString(), true, true, migrate, new HotFileCache(0, 0));
+        sharded.init();
+        return sharded;
+    }
+
+    private MockMultipartFile image(String filename, String content) {
+        return new MockMultipartFile("file", filename, "image/png", content.getBytes());
+    }
+}
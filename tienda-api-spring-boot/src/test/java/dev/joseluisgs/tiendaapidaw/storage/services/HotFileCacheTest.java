@@ -0,0 +1,152 @@
+package dev.joseluisgs.tiendaapidaw.storage.services;
+
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.HotFileCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotFileCacheTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void get_SecondTime_ServedFromMemory() throws Exception {
+        HotFileCache cache = new HotFileCache(1024, 100);
+        Path file = Files.writeString(tempDir.resolve("logo.png"), "0123456789");
+
+        HotFileCache.CachedFile first = cache.get(file, () -> "image/png");
+        // Aunque se borre del disco se sigue sirviendo hasta que se invalida
+        Files.delete(file);
+        HotFileCache.CachedFile second = cache.get(file, () -> "image/png");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write(second, out, 2, 4);
+        HotFileCache.HotFileCacheStats stats = cache.getStats();
+        assertAll(
+                () -> assertSame(first, second),
+                () -> assertEquals(10, second.size()),
+                () -> assertEquals("image/png", second.contentType()),
+                () -> assertEquals(HotFileCache.etagOf(10, second.lastModified()), second.etag()),
+                () -> assertEquals("2345", out.toString()),
+                () -> assertEquals(1, stats.hits()),
+                () -> assertEquals(1, stats.misses()),
+                () -> assertEquals(0.5, stats.hitRatio()),
+                () -> assertEquals(4, stats.bytesServed()),
+                () -> assertEquals(10, stats.usedBytes())
+        );
+    }
+
+    @Test
+    void get_LargerThanThreshold_NotCached() throws Exception {
+        HotFileCache cache = new HotFileCache(1024, 5);
+        Path file = Files.writeString(tempDir.resolve("grande.png"), "0123456789");
+
+        assertAll(
+                () -> assertNull(cache.get(file, () -> "image/png")),
+                () -> assertEquals(0, cache.getStats().entries())
+        );
+    }
+
+    @Test
+    void get_LargerThanThreshold_NotCountedInStats() throws Exception {
+        HotFileCache cache = new HotFileCache(1024, 5);
+        Path file = Files.writeString(tempDir.resolve("grande.png"), "0123456789");
+
+        cache.get(file, () -> "image/png");
+        cache.get(file, () -> "image/png");
+
+        HotFileCache.HotFileCacheStats stats = cache.getStats();
+        assertAll(
+                () -> assertEquals(0, stats.hits()),
+                () -> assertEquals(0, stats.misses()),
+                () -> assertEquals(0, stats.hitRatio())
+        );
+    }
+
+    @Test
+    void invalidate_LargerThanThreshold_ChecksAgain() throws Exception {
+        HotFileCache cache = new HotFileCache(1024, 5);
+        Path file = Files.writeString(tempDir.resolve("logo.png"), "0123456789");
+        cache.get(file, () -> "image/png");
+
+        // Se ha vuelto a guardar más pequeño, ya cabe
+        Files.writeString(file, "0123");
+        cache.invalidate(file);
+
+        assertNotNull(cache.get(file, () -> "image/png"));
+    }
+
+    @Test
+    void get_EvictedWhileInUse_StillWritable() throws Exception {
+        HotFileCache cache = new HotFileCache(15, 100);
+        Path a = Files.writeString(tempDir.resolve("a.png"), "0123456789");
+        Path b = Files.writeString(tempDir.resolve("b.png"), "abcdefghij");
+
+        // a se está enviando cuando b lo saca de la caché
+        HotFileCache.CachedFile inUse = cache.get(a, () -> "image/png");
+        HotFileCache.CachedFile other = cache.get(b, () -> "image/png");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write(inUse, out, 0, inUse.size());
+        cache.release(inUse);
+        cache.release(other);
+        assertAll(
+                () -> assertEquals("0123456789", out.toString()),
+                () -> assertEquals(1, cache.getStats().evictions()),
+                () -> assertEquals(1, cache.getStats().entries())
+        );
+    }
+
+    @Test
+    void get_Disabled_NotCached() throws Exception {
+        HotFileCache cache = new HotFileCache(0, 100);
+        Path file = Files.writeString(tempDir.resolve("logo.png"), "0123456789");
+
+        assertNull(cache.get(file, () -> "image/png"));
+    }
+
+    @Test
+    void get_OverBudget_EvictsLeastRecentlyUsed() throws Exception {
+        HotFileCache cache = new HotFileCache(25, 100);
+        Path a = Files.writeString(tempDir.resolve("a.png"), "0123456789");
+        Path b = Files.writeString(tempDir.resolve("b.png"), "0123456789");
+        Path c = Files.writeString(tempDir.resolve("c.png"), "0123456789");
+
+        HotFileCache.CachedFile cachedA = cache.get(a, () -> "image/png");
+        HotFileCache.CachedFile cachedB = cache.get(b, () -> "image/png");
+        // a se usa después que b, así b es el más antiguo
+        cache.get(a, () -> "image/png");
+        cache.get(c, () -> "image/png");
+
+        assertAll(
+                () -> assertEquals(2, cache.getStats().entries()),
+                () -> assertEquals(20, cache.getStats().usedBytes()),
+                () -> assertEquals(1, cache.getStats().evictions()),
+                () -> assertSame(cachedA, cache.get(a, () -> "image/png")),
+                () -> assertNotSame(cachedB, cache.get(b, () -> "image/png"))
+        );
+    }
+
+    @Test
+    void invalidate_ReloadsNewContent() throws Exception {
+        HotFileCache cache = new HotFileCache(1024, 100);
+        Path file = Files.writeString(tempDir.resolve("logo.png"), "antes");
+        cache.get(file, () -> "image/png");
+
+        Files.writeString(file, "despues!");
+        cache.invalidate(file);
+        HotFileCache.CachedFile reloaded = cache.get(file, () -> "image/png");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write(reloaded, out, 0, reloaded.size());
+        assertAll(
+                () -> assertEquals("despues!", out.toString()),
+                () -> assertEquals(8, cache.getStats().usedBytes())
+        );
+    }
+}
@@ -0,0 +1,222 @@
+package dev.joseluisgs.tiendaapidaw.storage.services;
+
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.HotFileCache;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.ImageVariantServiceImpl;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.StorageService;
+import dev.joseluisgs.tiendaapidaw.rest.storage.services.StoredFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageVariantServiceImplTest {
+    @TempDir
+    Path rootLocation;
+
+    private StorageService storageService;
+    private ImageVariantServiceImpl imageVariantService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = mock(StorageService.class);
+        when(storageService.load(anyString())).thenAnswer(invocation -> rootLocation.resolve(invocation.<String>getArgument(0)));
+        when(storageService.loadAsResource(anyString()))
+                .thenAnswer(invocation -> new FileSystemResource(rootLocation.resolve(invocation.<String>getArgument(0))));
+        when(storageService.find(anyString())).thenAnswer(invocation -> {
+            Path file = rootLocation.resolve(invocation.<String>getArgument(0));
+            return Files.exists(file)
+                    ? Optional.of(new StoredFile(file.getFileName().toString(), file, Files.size(file), 0, "image/png"))
+                    : Optional.empty();
+        });
+        imageVariantService = new ImageVariantServiceImpl(storageService, new HotFileCache(0, 0), rootLocation.toString(),
+                new int[]{600, 150, 300}, 0.8f, 1, 10, 5_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageVariantService.shutdown();
+    }
+
+    @Test
+    void loadVariant_RoundsUpToConfiguredWidth() throws Exception {
+        image("producto.png", 800, 400);
+
+        Resource variant = imageVariantService.loadVariant("producto.png", 120);
+
+        BufferedImage result = ImageIO.read(variant.getFile());
+        assertAll(
+                () -> assertEquals(rootLocation.resolve(".variants/150/producto.png"), variant.getFile().toPath()),
+                () -> assertEquals(150, result.getWidth()),
+                () -> assertEquals(75, result.getHeight())
+        );
+    }
+
+    @Test
+    void loadVariant_Jpeg_Recompressed() throws Exception {
+        image("producto.jpg", 1000, 1000);
+
+        Resource variant = imageVariantService.loadVariant("producto.jpg", 300);
+
+        assertAll(
+                () -> assertEquals(300, ImageIO.read(variant.getFile()).getWidth()),
+                () -> assertTrue(variant.contentLength() < Files.size(rootLocation.resolve("producto.jpg")))
+        );
+    }
+
+    @Test
+    void loadVariant_WiderThanConfigured_ReturnsOriginal() throws Exception {
+        image("producto.png", 800, 400);
+
+        Resource variant = imageVariantService.loadVariant("producto.png", 1000);
+
+        assertEquals(rootLocation.resolve("producto.png"), variant.getFile().toPath());
+    }
+
+    @Test
+    void loadVariant_OriginalNarrower_ReturnsOriginal() throws Exception {
+        image("producto.png", 100, 100);
+
+        Resource variant = imageVariantService.loadVariant("producto.png", 150);
+
+        assertAll(
+                () -> assertEquals(rootLocation.resolve("producto.png"), variant.getFile().toPath()),
+                () -> assertFalse(Files.exists(rootLocation.resolve(".variants/150/producto.png")))
+        );
+    }
+
+    @Test
+    void loadVariant_OriginalNarrower_IsRemembered() throws Exception {
+        image("producto.png", 100, 100);
+
+        imageVariantService.loadVariant("producto.png", 150);
+        imageVariantService.loadVariant("producto.png", 150);
+
+        // Solo se abre el original la primera vez
+        verify(storageService, times(1)).load("producto.png");
+    }
+
+    @Test
+    void loadVariant_UnreadableImage_IsRemembered() throws Exception {
+        Files.writeString(rootLocation.resolve("roto.png"), "no es una imagen");
+
+        Resource first = imageVariantService.loadVariant("roto.png", 150);
+        Resource second = imageVariantService.loadVariant("roto.png", 150);
+
+        assertAll(
+                () -> assertEquals(rootLocation.resolve("roto.png"), first.getFile().toPath()),
+                () -> assertEquals(rootLocation.resolve("roto.png"), second.getFile().toPath()),
+                () -> verify(storageService, times(1)).load("roto.png")
+        );
+    }
+
+    @Test
+    void loadVariant_NotReadyInTime_ServesOriginalAndKeepsGenerating() throws Exception {
+        // Sin espera: la petición no se bloquea generando la versión
+        imageVariantService.shutdown();
+        imageVariantService = new ImageVariantServiceImpl(storageService, new HotFileCache(0, 0), rootLocation.toString(),
+                new int[]{150}, 0.8f, 1, 10, 0);
+        image("producto.png", 2000, 2000);
+
+        Resource first = imageVariantService.loadVariant("producto.png", 150);
+
+        Path variant = rootLocation.resolve(".variants/150/producto.png");
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!Files.exists(variant) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Resource second = imageVariantService.loadVariant("producto.png", 150);
+        assertAll(
+                () -> assertEquals(rootLocation.resolve("producto.png"), first.getFile().toPath()),
+                () -> assertEquals(variant, second.getFile().toPath())
+        );
+    }
+
+    @Test
+    void isVariant_OnlyForGeneratedVariants() throws Exception {
+        image("producto.png", 800, 400);
+
+        Resource variant = imageVariantService.loadVariant("producto.png", 150);
+        Resource original = imageVariantService.loadVariant("producto.png", 1000);
+
+        assertAll(
+                () -> assertTrue(imageVariantService.isVariant(variant)),
+                () -> assertFalse(imageVariantService.isVariant(original))
+        );
+    }
+
+    @Test
+    void loadVariant_NotAnImage_ReturnsOriginal() throws Exception {
+        Files.writeString(rootLocation.resolve("fichero.txt"), "texto");
+
+        Resource variant = imageVariantService.loadVariant("fichero.txt", 150);
+
+        assertEquals(rootLocation.resolve("fichero.txt"), variant.getFile().toPath());
+    }
+
+    @Test
+    void generateAsync_GeneratesAllWidths() throws Exception {
+        image("producto.png", 800, 400);
+
+        imageVariantService.generateAsync("http://localhost:3000/storage/producto.png");
+
+        for (int width : new int[]{150, 300, 600}) {
+            Path variant = rootLocation.resolve(".variants/" + width + "/producto.png");
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!Files.exists(variant) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(width, ImageIO.read(variant.toFile()).getWidth());
+        }
+    }
+
+    @Test
+    void deleteVariants_OriginalDeleted_RemovesVariants() throws Exception {
+        image("producto.png", 800, 400);
+        imageVariantService.loadVariant("producto.png", 150);
+
+        Files.delete(rootLocation.resolve("producto.png"));
+        imageVariantService.deleteVariants("producto.png");
+
+        assertFalse(Files.exists(rootLocation.resolve(".variants/150/producto.png")));
+    }
+
+    @Test
+    void deleteVariants_OriginalStillUsed_KeepsVariants() {
+        image("producto.png", 800, 400);
+        imageVariantService.loadVariant("producto.png", 150);
+
+        imageVariantService.deleteVariants("producto.png");
+
+        assertTrue(Files.exists(rootLocation.resolve(".variants/150/producto.png")));
+    }
+
+    private void image(String filename, int width, int height) {
+        try {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    image.setRGB(x, y, (x * 31 + y * 17) & 0xFFFFFF);
+                }
+            }
+            String extension = filename.substring(filename.lastIndexOf('.') + 1);
+            ImageIO.write(image, extension.equals("jpg") ? "jpeg" : extension, rootLocation.resolve(filename).toFile());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}